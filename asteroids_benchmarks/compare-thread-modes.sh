@@ -0,0 +1,41 @@
+#!/bin/bash
+
+# Runs the same LoadGenerator load against the backend on platform threads
+# and then on virtual threads, and prints both reports.
+#
+# Build both modules first (mvn -DskipTests install in asteroids_local_backend,
+# mvn package here), then run from anywhere with Java 21 on the PATH:
+#
+#   ./compare-thread-modes.sh [LoadGenerator options...]
+#
+# The defaults run 500 players next to 1000 clients waiting on the database.
+# Point SPRING_DATASOURCE_URL at a slow or unreachable database to see how
+# each mode copes with requests stuck in JDBC.
+
+set -e
+
+DIR="$(cd "$(dirname "$0")" && pwd)"
+BACKEND="$DIR/../asteroids_local_backend"
+SERVER_JAR="$BACKEND/target/asteroids_local_backend-0.0.1-SNAPSHOT-exec.jar"
+PORT="${PORT:-8089}"
+ARGS=("$@")
+if [ ${#ARGS[@]} -eq 0 ]; then
+    ARGS=(--sessions 500 --db-sessions 1000 --duration 30 --ramp 5)
+fi
+
+for VIRTUAL in false true; do
+    echo "== spring.threads.virtual.enabled=$VIRTUAL"
+    # The game reads its level data relative to the working directory
+    (cd "$BACKEND" && exec java -jar "$SERVER_JAR" --server.port="$PORT" \
+        --spring.threads.virtual.enabled="$VIRTUAL" > "$DIR/target/server-virtual-$VIRTUAL.log" 2>&1) &
+    SERVER=$!
+    trap 'kill $SERVER 2>/dev/null || true' EXIT
+    until curl -s "http://localhost:$PORT/api/serverStats" > /dev/null; do
+        sleep 1
+    done
+    java -cp "$DIR/target/benchmarks.jar" com.pluto.benchmark.LoadGenerator \
+        --url "http://localhost:$PORT" "${ARGS[@]}"
+    kill $SERVER
+    wait $SERVER 2>/dev/null || true
+    echo
+done
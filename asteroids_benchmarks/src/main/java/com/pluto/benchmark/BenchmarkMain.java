@@ -0,0 +1,41 @@
+package com.pluto.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of benchmarks.jar. It accepts the usual JMH command line
+ * options, but always attaches the GC profiler so that every run reports the
+ * allocation rate next to ns/op, and writes the results as JSON to
+ * jmh-result.json unless another result file is given. The JSON file is meant
+ * to be kept per commit to track the baseline.
+ */
+public class BenchmarkMain {
+    /* Default file the results are written to */
+    private static final String RESULT_FILE = "jmh-result.json";
+
+    /**
+     * Runs the benchmarks selected on the command line, or all of them.
+     *
+     * @param args - JMH command line options, e.g. "GameUpdateBenchmark -p enemies=1000"
+     */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions cmdOptions = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .parent(cmdOptions)
+                .addProfiler(GCProfiler.class);
+        if (!cmdOptions.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!cmdOptions.getResult().hasValue()) {
+            options.result(RESULT_FILE);
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,66 @@
+package com.pluto.benchmark;
+
+import java.util.SplittableRandom;
+
+import com.pluto.game.Spaceship;
+
+/**
+ * Decides which inputs a simulated player holds on each frame.
+ */
+enum BotPolicy {
+    /* Holds nothing, like a player who left the game open */
+    IDLE {
+        @Override
+        int inputs(int frame, SplittableRandom random, int previous) {
+            return 0;
+        }
+    },
+
+    /* Turns and shoots on every frame, the busiest steady game */
+    SPIN {
+        @Override
+        int inputs(int frame, SplittableRandom random, int previous) {
+            return Spaceship.Input.LEFT.bit() | Spaceship.Input.SHOOT.bit();
+        }
+    },
+
+    /* Holds a random set of inputs, changed about twice a second at 60 fps */
+    RANDOM {
+        @Override
+        int inputs(int frame, SplittableRandom random, int previous) {
+            if (frame % 30 != 0) {
+                return previous;
+            }
+            return random.nextInt(1 << Spaceship.Input.values().length);
+        }
+    };
+
+    /**
+     * Returns the inputs for a frame.
+     *
+     * @param frame    - the index of the frame in the session
+     * @param random   - the session's random generator
+     * @param previous - the inputs of the previous frame
+     * @return - the input bitmask
+     */
+    abstract int inputs(int frame, SplittableRandom random, int previous);
+
+    /**
+     * Formats an input bitmask as the inputs parameter of /api/updateGame.
+     *
+     * @param inputs - the input bitmask
+     * @return - the input names, comma separated
+     */
+    static String format(int inputs) {
+        StringBuilder names = new StringBuilder();
+        for (Spaceship.Input input : Spaceship.Input.values()) {
+            if (input.isIn(inputs)) {
+                if (names.length() > 0) {
+                    names.append(',');
+                }
+                names.append(input.name());
+            }
+        }
+        return names.toString();
+    }
+}
@@ -0,0 +1,116 @@
+package com.pluto.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.pluto.game.Asteroid;
+import com.pluto.game.Bullet;
+import com.pluto.game.EntityStore;
+import com.pluto.game.Spaceship;
+
+/**
+ * Measures the per-entity primitives of a frame: the exact hitbox test of
+ * SpawnableEntity.collidesWith and SpawnableEntity.rotate. Rotating only
+ * changes the orientation; the hitbox circles are placed by the first
+ * collision test after it, which is measured by rotateAndCollideShip.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityBenchmark {
+    /* A 60 fps frame rotation at one radian per second */
+    private static final float ROTATION = 1.0f / 60;
+
+    /* The player, whose hitbox has six circles */
+    private Spaceship ship;
+
+    /* A large asteroid overlapping the player */
+    private Asteroid touching;
+
+    /* A large asteroid far away from the player */
+    private Asteroid distant;
+
+    /* A bullet inside the touching asteroid */
+    private Bullet bullet;
+
+    /**
+     * Places the entities. The ship starts at the centre of the screen.
+     */
+    @Setup
+    public void setUp() {
+        EntityStore store = new EntityStore();
+        ship = new Spaceship(store);
+        touching = new Asteroid(store, 600, 500, 0, 0, 0, Asteroid.AsteroidSize.LARGE, 0);
+        distant = new Asteroid(store, 100, 100, 0, 0, 0, Asteroid.AsteroidSize.LARGE, 0);
+        bullet = new Bullet(store, 620, 500, 0, 1);
+    }
+
+    /**
+     * Tests the six ship circles against an asteroid they overlap. Returns
+     * as soon as the first overlapping pair is found.
+     */
+    @Benchmark
+    public boolean collidesWithHit() {
+        return ship.collidesWith(touching);
+    }
+
+    /**
+     * Tests the six ship circles against an asteroid they miss, which has to
+     * check every pair.
+     */
+    @Benchmark
+    public boolean collidesWithMiss() {
+        return ship.collidesWith(distant);
+    }
+
+    /**
+     * Tests a single circle bullet against an asteroid, the most common pair
+     * in a frame.
+     */
+    @Benchmark
+    public boolean collidesWithBullet() {
+        return bullet.collidesWith(touching);
+    }
+
+    /**
+     * Rotates the ship.
+     */
+    @Benchmark
+    public void rotateShip() {
+        ship.rotate(ROTATION);
+    }
+
+    /**
+     * Rotates an asteroid, as every asteroid does every frame.
+     */
+    @Benchmark
+    public void rotateAsteroid() {
+        touching.rotate(ROTATION);
+    }
+
+    /**
+     * Rotates the ship and tests it against an asteroid it misses, as a
+     * turning player does every frame. The test places the six circles at
+     * the new orientation, with one cosine and sine.
+     *
+     * @return - whether they collide, so the test cannot be optimised away
+     */
+    @Benchmark
+    public boolean rotateAndCollideShip() {
+        ship.rotate(ROTATION);
+        return ship.collidesWith(distant);
+    }
+}
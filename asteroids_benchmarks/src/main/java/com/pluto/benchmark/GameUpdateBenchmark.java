@@ -0,0 +1,72 @@
+package com.pluto.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.pluto.game.GameManager;
+import com.pluto.game.Spaceship;
+
+/**
+ * Measures one frame of GameManager.update for worlds of different sizes,
+ * with the collision grid turned on and off.
+ *
+ * The world is rebuilt before each iteration and then keeps evolving, so the
+ * enemy count is the count at the start of an iteration. Asteroids split and
+ * aliens shoot as they would in a real game.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameUpdateBenchmark {
+    /* A 60 fps frame */
+    private static final float DT = 1.0f / 60;
+
+    /* The player turns and shoots every frame so that bullets hit enemies */
+    private static final int INPUTS = Spaceship.Input.LEFT.bit() | Spaceship.Input.SHOOT.bit();
+
+    /* Number of enemies spawned before the iteration starts */
+    @Param({ "10", "100", "1000", "10000" })
+    public int enemies;
+
+    /* Whether collisions go through the spatial grid or brute force */
+    @Param({ "true", "false" })
+    public boolean spatialHash;
+
+    /* The game being updated */
+    private GameManager game;
+
+    /**
+     * Builds a fresh world of the requested size.
+     */
+    @Setup(Level.Iteration)
+    public void setUp() {
+        game = Worlds.create(enemies);
+        game.setUseSpatialHash(spatialHash);
+    }
+
+    /**
+     * Advances the game by one frame.
+     *
+     * @return - the enemy count, so the frame cannot be optimised away
+     */
+    @Benchmark
+    public int update() {
+        game.update(DT, INPUTS);
+        return game.getEnemyCount();
+    }
+}
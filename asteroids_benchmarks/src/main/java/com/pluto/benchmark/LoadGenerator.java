@@ -0,0 +1,405 @@
+package com.pluto.benchmark;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import com.pluto.game.Difficulty;
+import com.pluto.game.GameManager;
+
+/**
+ * Drives many simulated players at once and reports how the game keeps up.
+ * Every player runs on its own virtual thread, so thousands of sessions cost
+ * a few carrier threads.
+ *
+ * Usage: java -cp target/benchmarks.jar com.pluto.benchmark.LoadGenerator
+ * [--mode http|inprocess] [--url URL] [--sessions N] [--duration S]
+ * [--ramp S] [--rate HZ] [--policy idle|spin|random] [--seed N]
+ * [--db-sessions N] [--db-path PATH]
+ *
+ * In http mode every player starts a game with /api/newGame and then polls
+ * /api/updateGame at the given rate, like the browser client does; latency is
+ * the round trip of one poll. In inprocess mode every player steps its own
+ * GameManager at the given rate without a server; latency is the time of one
+ * update. Players are started evenly over the ramp-up time.
+ *
+ * In http mode, --db-sessions also starts N clients that call an endpoint
+ * waiting on the database (--db-path, /api/getProfiles by default) in a loop
+ * for the whole run. Their latency and errors are reported separately, so a
+ * run shows whether slow database calls hold up game frames, e.g. with the
+ * backend on platform and on virtual threads.
+ *
+ * Prints one line every 5 seconds with the frames per second, the latency
+ * percentiles and the errors of that interval, then a summary of the whole
+ * run with the GC pauses of this JVM (and of the server in http mode, read
+ * from /api/serverStats).
+ */
+public class LoadGenerator {
+    /* Seconds between two progress lines */
+    private static final int REPORT_SECONDS = 5;
+
+    /* Settings of the run */
+    private final boolean http;
+    private final String url;
+    private final int sessions;
+    private final int durationSeconds;
+    private final int rampSeconds;
+    private final int rate;
+    private final BotPolicy policy;
+    private final long seed;
+    private final int dbSessions;
+    private final String dbPath;
+
+    /* Shared by every player in http mode */
+    private final HttpClient client;
+
+    /* Latencies of the whole run and of the current interval */
+    private final LatencyHistogram total = new LatencyHistogram();
+    private final AtomicReference<LatencyHistogram> interval = new AtomicReference<LatencyHistogram>(
+            new LatencyHistogram());
+
+    /* Number of failed requests or updates, overall and in the current interval */
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong intervalErrors = new AtomicLong();
+
+    /* Latencies and number of failures of the database clients */
+    private final LatencyHistogram dbTotal = new LatencyHistogram();
+    private final AtomicLong dbErrors = new AtomicLong();
+
+    /* Number of players currently running */
+    private final AtomicInteger active = new AtomicInteger();
+
+    /* Tells the players to stop */
+    private volatile boolean stopped;
+
+    private LoadGenerator(boolean http, String url, int sessions, int durationSeconds, int rampSeconds, int rate,
+            BotPolicy policy, long seed, int dbSessions, String dbPath) {
+        this.http = http;
+        this.url = url;
+        this.sessions = sessions;
+        this.durationSeconds = durationSeconds;
+        this.rampSeconds = rampSeconds;
+        this.rate = rate;
+        this.policy = policy;
+        this.seed = seed;
+        this.dbSessions = http ? dbSessions : 0;
+        this.dbPath = dbPath;
+        this.client = http ? HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build() : null;
+    }
+
+    /**
+     * Runs the load generator.
+     *
+     * @param args - the options
+     */
+    public static void main(String[] args) throws Exception {
+        boolean http = true;
+        String url = "http://localhost:8080";
+        int sessions = 1000;
+        int duration = 60;
+        int ramp = 10;
+        int rate = 60;
+        BotPolicy policy = BotPolicy.RANDOM;
+        long seed = Worlds.SEED;
+        int dbSessions = 0;
+        String dbPath = "/api/getProfiles?username=load";
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--mode":
+                    http = args[++i].equals("http");
+                    break;
+                case "--url":
+                    url = args[++i];
+                    break;
+                case "--sessions":
+                    sessions = Integer.parseInt(args[++i]);
+                    break;
+                case "--duration":
+                    duration = Integer.parseInt(args[++i]);
+                    break;
+                case "--ramp":
+                    ramp = Integer.parseInt(args[++i]);
+                    break;
+                case "--rate":
+                    rate = Integer.parseInt(args[++i]);
+                    break;
+                case "--policy":
+                    policy = BotPolicy.valueOf(args[++i].toUpperCase(Locale.ROOT));
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--db-sessions":
+                    dbSessions = Integer.parseInt(args[++i]);
+                    break;
+                case "--db-path":
+                    dbPath = args[++i];
+                    break;
+                default:
+                    System.err.println("Usage: LoadGenerator [--mode http|inprocess] [--url URL] [--sessions N]"
+                            + " [--duration S] [--ramp S] [--rate HZ] [--policy idle|spin|random] [--seed N]"
+                            + " [--db-sessions N] [--db-path PATH]");
+                    System.exit(1);
+            }
+        }
+        new LoadGenerator(http, url, sessions, duration, Math.min(ramp, duration), rate, policy, seed,
+                dbSessions, dbPath).run();
+    }
+
+    /**
+     * Starts the players, reports while they run and prints the summary.
+     */
+    private void run() throws Exception {
+        System.out.printf(Locale.ROOT,
+                "mode=%s sessions=%d db_sessions=%d duration=%ds ramp=%ds rate=%dHz policy=%s cores=%d%n",
+                http ? "http" : "inprocess", sessions, dbSessions, durationSeconds, rampSeconds, rate,
+                policy.name().toLowerCase(Locale.ROOT), Runtime.getRuntime().availableProcessors());
+        String serverGcBefore = http ? serverGc() : null;
+        long gcCountBefore = gcCount();
+        long gcMillisBefore = gcMillis();
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+        ExecutorService players = Executors.newVirtualThreadPerTaskExecutor();
+        for (int i = 0; i < dbSessions; i++) {
+            players.submit(() -> queryDatabase(end));
+        }
+        Thread starter = Thread.ofVirtual().start(() -> {
+            long step = sessions > 1 ? TimeUnit.SECONDS.toNanos(rampSeconds) / (sessions - 1) : 0;
+            for (int i = 0; i < sessions && !stopped; i++) {
+                long startAt = start + i * step;
+                sleepUntil(startAt);
+                int id = i;
+                players.submit(() -> play(id, end));
+            }
+        });
+
+        System.out.println("elapsed_s,active,frames_per_s,latency_us_p50,latency_us_p99,latency_us_p999,"
+                + "latency_us_max,errors");
+        for (long next = start + TimeUnit.SECONDS.toNanos(REPORT_SECONDS); next <= end;
+                next += TimeUnit.SECONDS.toNanos(REPORT_SECONDS)) {
+            sleepUntil(next);
+            LatencyHistogram last = interval.getAndSet(new LatencyHistogram());
+            System.out.printf(Locale.ROOT, "%d,%d,%.0f,%d,%d,%d,%d,%d%n",
+                    TimeUnit.NANOSECONDS.toSeconds(next - start), active.get(),
+                    last.count() / (double) REPORT_SECONDS, last.percentile(50), last.percentile(99),
+                    last.percentile(99.9), last.max(), intervalErrors.getAndSet(0));
+        }
+        sleepUntil(end);
+        stopped = true;
+        starter.join();
+        players.shutdown();
+        players.awaitTermination(1, TimeUnit.MINUTES);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long requests = total.count() + errors.get();
+        System.out.println();
+        System.out.printf(Locale.ROOT, "frames=%d frames_per_s=%.0f%n", total.count(), total.count() / seconds);
+        System.out.printf(Locale.ROOT, "latency_us p50=%d p99=%d p999=%d max=%d%n", total.percentile(50),
+                total.percentile(99), total.percentile(99.9), total.max());
+        System.out.printf(Locale.ROOT, "errors=%d error_rate=%.4f%%%n", errors.get(),
+                requests == 0 ? 0 : 100.0 * errors.get() / requests);
+        System.out.printf(Locale.ROOT, "client_gc pauses=%d pause_ms=%d%n", gcCount() - gcCountBefore,
+                gcMillis() - gcMillisBefore);
+        if (dbSessions > 0) {
+            long calls = dbTotal.count() + dbErrors.get();
+            System.out.printf(Locale.ROOT, "db_calls=%d db_latency_us p50=%d p99=%d max=%d db_error_rate=%.4f%%%n",
+                    calls, dbTotal.percentile(50), dbTotal.percentile(99), dbTotal.max(),
+                    calls == 0 ? 0 : 100.0 * dbErrors.get() / calls);
+        }
+        if (http) {
+            System.out.println("server_gc before=" + serverGcBefore + " after=" + serverGc());
+        }
+    }
+
+    /**
+     * Plays one session until the end of the run.
+     *
+     * @param id  - the index of the player, used for its user name and seed
+     * @param end - System.nanoTime() at which to stop
+     */
+    private void play(int id, long end) {
+        active.incrementAndGet();
+        try {
+            SplittableRandom random = new SplittableRandom(seed + id);
+            String username = "bot" + id;
+            GameManager game = null;
+            if (http) {
+                while (!stopped && !frame("/api/newGame?username=" + username + "&profile_name=load"
+                        + "&difficulty=MEDIUM&seed=" + (seed + id))) {
+                    sleepUntil(System.nanoTime() + TimeUnit.SECONDS.toNanos(1));
+                }
+            } else {
+                game = new GameManager(Difficulty.MEDIUM, seed + id);
+            }
+            long period = TimeUnit.SECONDS.toNanos(1) / rate;
+            float dt = 1f / rate;
+            int inputs = 0;
+            long next = System.nanoTime();
+            for (int frame = 0; !stopped && next < end; frame++) {
+                inputs = policy.inputs(frame, random, inputs);
+                if (http) {
+                    frame("/api/updateGame?username=" + username + "&profile_name=load&inputs="
+                            + BotPolicy.format(inputs));
+                } else {
+                    long frameStart = System.nanoTime();
+                    try {
+                        game.update(dt, inputs);
+                        record(System.nanoTime() - frameStart);
+                    } catch (RuntimeException e) {
+                        fail();
+                    }
+                    if (!game.is_running) {
+                        game = new GameManager(Difficulty.MEDIUM, random.nextLong());
+                    }
+                }
+                // Keep the rate even when a frame ran late, without bursting to catch up
+                next = Math.max(next + period, System.nanoTime());
+                sleepUntil(next);
+            }
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+
+    /**
+     * Calls the database endpoint back to back until the end of the run.
+     *
+     * @param end - System.nanoTime() at which to stop
+     */
+    private void queryDatabase(long end) {
+        while (!stopped && System.nanoTime() < end) {
+            long nanos = request(dbPath);
+            if (nanos < 0) {
+                dbErrors.incrementAndGet();
+            } else {
+                dbTotal.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+            }
+        }
+    }
+
+    /**
+     * Sends one game request to the server and records its round trip.
+     *
+     * @param path - the path and query of the request
+     * @return - whether the server answered with a successful response
+     */
+    private boolean frame(String path) {
+        long nanos = request(path);
+        if (nanos < 0) {
+            fail();
+            return false;
+        }
+        record(nanos);
+        return true;
+    }
+
+    /**
+     * Sends one GET request to the server.
+     *
+     * @param path - the path and query of the request
+     * @return - the round trip in nanoseconds, -1 if the request failed
+     */
+    private long request(String path) {
+        long start = System.nanoTime();
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(url + path))
+                    .timeout(Duration.ofSeconds(10))
+                    .GET()
+                    .build();
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200 || response.body().contains("\"success\":\"false\"")) {
+                return -1;
+            }
+            return System.nanoTime() - start;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private void record(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        total.record(micros);
+        interval.get().record(micros);
+    }
+
+    private void fail() {
+        errors.incrementAndGet();
+        intervalErrors.incrementAndGet();
+    }
+
+    /**
+     * Returns the "gc" section of the server's /api/serverStats, or an empty
+     * string if the server did not answer.
+     */
+    private String serverGc() {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(url + "/api/serverStats"))
+                    .timeout(Duration.ofSeconds(10))
+                    .build();
+            String body = client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+            int gc = body.indexOf("\"gc\":");
+            if (gc < 0) {
+                return "";
+            }
+            int close = body.indexOf('}', gc);
+            return close < 0 ? "" : body.substring(gc + 5, close + 1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "";
+        } catch (Exception e) {
+            return "";
+        }
+    }
+
+    /**
+     * Returns the number of collections of this JVM so far.
+     */
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    /**
+     * Returns the time spent collecting garbage by this JVM so far.
+     */
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return millis;
+    }
+
+    /**
+     * Parks the current thread until System.nanoTime() reaches the deadline.
+     */
+    private static void sleepUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.pluto.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import com.pluto.game.GameManager;
+import com.pluto.game.ReplayLog;
+
+/**
+ * Replays recorded games through GameManager without a server, as fast as
+ * possible, and reports how long every frame took. Logs are recorded by the
+ * backend when asteroids.replay.dir is set.
+ *
+ * Usage: java -cp target/benchmarks.jar com.pluto.benchmark.ReplayRunner
+ * [--threads N] [--frames DIR] [--warmup N] LOG_OR_DIR...
+ *
+ * Prints one line per log with the final score and level and the frame time
+ * percentiles. With --frames, the time of every frame is also written to
+ * DIR/NAME.csv. Logs are replayed on N threads in parallel; --warmup replays
+ * every log N times first so that the timed run is JIT compiled.
+ */
+public class ReplayRunner {
+    /**
+     * The outcome of replaying one log.
+     */
+    private static class Result {
+        private final Path log;
+        private final int frames;
+        private final float gameSeconds;
+        private final long wallNanos;
+        private final long[] frameNanos;
+        private final int score;
+        private final int level;
+
+        private Result(Path log, int frames, float gameSeconds, long wallNanos, long[] frameNanos, int score,
+                int level) {
+            this.log = log;
+            this.frames = frames;
+            this.gameSeconds = gameSeconds;
+            this.wallNanos = wallNanos;
+            this.frameNanos = frameNanos;
+            this.score = score;
+            this.level = level;
+        }
+    }
+
+    /**
+     * Replays the given logs.
+     *
+     * @param args - the options and the logs or directories of logs
+     */
+    public static void main(String[] args) throws Exception {
+        int threads = 1;
+        int warmup = 0;
+        Path framesDir = null;
+        List<Path> logs = new ArrayList<Path>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(args[++i]);
+                    break;
+                case "--frames":
+                    framesDir = Paths.get(args[++i]);
+                    Files.createDirectories(framesDir);
+                    break;
+                default:
+                    addLogs(Paths.get(args[i]), logs);
+            }
+        }
+        if (logs.isEmpty()) {
+            System.err.println("Usage: ReplayRunner [--threads N] [--frames DIR] [--warmup N] LOG_OR_DIR...");
+            System.exit(1);
+        }
+
+        List<ReplayLog> replays = new ArrayList<ReplayLog>();
+        for (Path log : logs) {
+            replays.add(ReplayLog.read(log));
+        }
+        for (int round = 0; round < warmup; round++) {
+            for (ReplayLog replay : replays) {
+                replay.replay(replay.newGame());
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Result>> futures = new ArrayList<Future<Result>>();
+            for (int i = 0; i < logs.size(); i++) {
+                Path log = logs.get(i);
+                ReplayLog replay = replays.get(i);
+                futures.add(executor.submit(() -> run(log, replay)));
+            }
+            System.out.println("log,frames,game_s,wall_ms,speedup,frame_us_p50,frame_us_p99,frame_us_max,score,level");
+            for (Future<Result> future : futures) {
+                Result result = future.get();
+                print(result);
+                if (framesDir != null) {
+                    writeFrames(result, framesDir.resolve(result.log.getFileName() + ".csv"));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Adds a log, or every .replay file in a directory.
+     */
+    private static void addLogs(Path path, List<Path> logs) throws IOException {
+        if (!Files.isDirectory(path)) {
+            logs.add(path);
+            return;
+        }
+        try (Stream<Path> files = Files.list(path)) {
+            files.filter(file -> file.toString().endsWith(".replay")).sorted().forEach(logs::add);
+        }
+    }
+
+    /**
+     * Replays one log, timing every frame.
+     */
+    private static Result run(Path log, ReplayLog replay) {
+        GameManager game = replay.newGame();
+        int frames = replay.getFrameCount();
+        long[] frameNanos = new long[frames];
+        float gameSeconds = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < frames; i++) {
+            long frameStart = System.nanoTime();
+            game.update(replay.getDt(i), replay.getInputs(i));
+            frameNanos[i] = System.nanoTime() - frameStart;
+            gameSeconds += replay.getDt(i);
+        }
+        long wallNanos = System.nanoTime() - start;
+        return new Result(log, frames, gameSeconds, wallNanos, frameNanos, game.getScore(), game.getLevel());
+    }
+
+    /**
+     * Prints the summary line of a replay.
+     */
+    private static void print(Result result) {
+        long[] sorted = result.frameNanos.clone();
+        Arrays.sort(sorted);
+        double wallSeconds = result.wallNanos / 1e9;
+        System.out.printf("%s,%d,%.1f,%.1f,%.0f,%.1f,%.1f,%.1f,%d,%d%n",
+                result.log.getFileName(), result.frames, result.gameSeconds, wallSeconds * 1000,
+                wallSeconds == 0 ? 0 : result.gameSeconds / wallSeconds,
+                percentile(sorted, 0.5) / 1e3, percentile(sorted, 0.99) / 1e3,
+                (sorted.length == 0 ? 0 : sorted[sorted.length - 1]) / 1e3,
+                result.score, result.level);
+    }
+
+    /**
+     * Writes the time of every frame of a replay as csv.
+     */
+    private static void writeFrames(Result result, Path file) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            out.write("frame,nanos\n");
+            for (int i = 0; i < result.frameNanos.length; i++) {
+                out.write(i + "," + result.frameNanos[i] + "\n");
+            }
+        }
+    }
+
+    /**
+     * Returns a percentile of sorted values.
+     */
+    private static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) (fraction * sorted.length))];
+    }
+}
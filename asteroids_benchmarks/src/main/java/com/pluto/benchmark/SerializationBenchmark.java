@@ -0,0 +1,55 @@
+package com.pluto.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.pluto.game.GameManager;
+
+/**
+ * Measures GameManager.toJson, which runs once per frame for every player.
+ * The world is not updated between calls, so every call serialises the same
+ * state.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+    /* Number of enemies in the serialised world */
+    @Param({ "10", "100", "1000", "10000" })
+    public int enemies;
+
+    /* The game being serialised */
+    private GameManager game;
+
+    /**
+     * Builds a world of the requested size.
+     */
+    @Setup
+    public void setUp() {
+        game = Worlds.create(enemies);
+    }
+
+    /**
+     * Serialises the whole game state.
+     *
+     * @return - the json string
+     */
+    @Benchmark
+    public String toJson() {
+        return game.toJson();
+    }
+}
@@ -0,0 +1,36 @@
+package com.pluto.benchmark;
+
+import com.pluto.game.Difficulty;
+import com.pluto.game.EnemyType;
+import com.pluto.game.GameManager;
+
+/**
+ * Builds games with a chosen number of enemies for the benchmarks.
+ */
+final class Worlds {
+    /* Every world starts from the same seed, so runs are comparable */
+    static final long SEED = 20250101L;
+
+    private Worlds() {
+    }
+
+    /**
+     * Creates a MEDIUM game and tops it up to the given number of enemies.
+     * Roughly a tenth of the enemies are comets and a tenth are aliens, the
+     * rest are large asteroids. The same enemy count always gives the same
+     * world.
+     *
+     * @param enemies - the number of enemies the world should hold
+     * @return - the new game
+     */
+    static GameManager create(int enemies) {
+        GameManager game = new GameManager(Difficulty.MEDIUM, SEED);
+        int missing = Math.max(0, enemies - game.getEnemyCount());
+        int comets = missing / 10;
+        int aliens = missing / 10;
+        game.spawnEnemies(EnemyType.COMET, comets);
+        game.spawnEnemies(EnemyType.ALIEN, aliens);
+        game.spawnEnemies(EnemyType.ASTEROID, missing - comets - aliens);
+        return game;
+    }
+}
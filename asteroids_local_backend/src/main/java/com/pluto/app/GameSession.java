@@ -0,0 +1,358 @@
+package com.pluto.app;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+import com.pluto.game.GameManager;
+import com.pluto.game.SnapshotEncoder;
+import com.pluto.game.Spaceship;
+
+/**
+ * A game that is stepped by the server. It binds one GameManager to a player
+ * and buffers the player's inputs between two ticks of the GameTickScheduler,
+ * so the simulation always advances by the same fixed time step no matter how
+ * often, or how late, the client reports its inputs.
+ *
+ * Inputs arrive on request threads while ticks run on a scheduler thread, so
+ * every method touching the game is synchronized on the session.
+ */
+class GameSession {
+    /*
+     * A polled session that has not been polled for this long is paused, so
+     * that a paused or closed browser tab does not keep playing.
+     */
+    private static final long POLL_TIMEOUT_NANOS = 250_000_000L;
+
+    /* The game bound to this session */
+    private final GameManager gameManager;
+
+    /*
+     * Receives the game state after every tick, as json or as a binary
+     * snapshot. Both are null if the client polls the state instead.
+     */
+    private final Consumer<String> frameSink;
+    private final Consumer<byte[]> snapshotSink;
+
+    /* Encodes binary snapshots for this session's client */
+    private final SnapshotEncoder snapshotEncoder = new SnapshotEncoder();
+
+    /* Sequence number of the latest snapshot the client acknowledged */
+    private int acknowledged;
+
+    /* Movement inputs currently held down by the player, as a bitmask */
+    private int heldInputs;
+
+    /*
+     * Number of shots requested since the last tick. Shooting is a one-shot
+     * input, so a tap between two ticks is never lost.
+     */
+    private int queuedShots;
+
+    /* System.nanoTime() of the last poll of a polled session */
+    private long lastPollNanos;
+
+    /* Whether the client paused the game, which then skips its ticks */
+    private boolean paused;
+
+    /* Whether the final frame of a finished game has already been sent */
+    private boolean finalFrameSent;
+
+    /* Index of the scheduler shard stepping this session, -1 if none */
+    volatile int shard = -1;
+
+    /* System.nanoTime() of the last request from the client */
+    private volatile long lastAccessNanos;
+
+    /* Called when the registry evicts this session, may be null */
+    private volatile Runnable onEvicted;
+
+    /**
+     * Constructor for a GameSession whose state is polled by the client.
+     *
+     * @param gameManager - the game bound to this session
+     */
+    GameSession(GameManager gameManager) {
+        this(gameManager, null);
+    }
+
+    /**
+     * Constructor for a GameSession that pushes its state to the client.
+     *
+     * @param gameManager - the game bound to this session
+     * @param frameSink   - receives the json game state after every tick,
+     *                    null if the state is polled instead
+     */
+    GameSession(GameManager gameManager, Consumer<String> frameSink) {
+        this(gameManager, frameSink, null);
+    }
+
+    /**
+     * Creates a GameSession that pushes its state to the client as binary
+     * snapshots, each relative to the latest snapshot the client acknowledged.
+     *
+     * @param gameManager  - the game bound to this session
+     * @param snapshotSink - receives the encoded snapshot after every tick
+     * @return - the new session
+     */
+    static GameSession withSnapshots(GameManager gameManager, Consumer<byte[]> snapshotSink) {
+        return new GameSession(gameManager, null, snapshotSink);
+    }
+
+    private GameSession(GameManager gameManager, Consumer<String> frameSink, Consumer<byte[]> snapshotSink) {
+        this.gameManager = gameManager;
+        this.frameSink = frameSink;
+        this.snapshotSink = snapshotSink;
+        this.lastPollNanos = System.nanoTime();
+        this.lastAccessNanos = lastPollNanos;
+    }
+
+    /**
+     * Records that the client used this session, which keeps it from being
+     * evicted as idle. A session pushing its state is also touched by every
+     * tick, since its client may only listen.
+     */
+    void touch() {
+        lastAccessNanos = System.nanoTime();
+    }
+
+    /**
+     * Returns when the client last used this session.
+     *
+     * @return - the System.nanoTime() of the last use
+     */
+    long getLastAccessNanos() {
+        return lastAccessNanos;
+    }
+
+    /**
+     * Sets what to do when the registry evicts this session, e.g. closing the
+     * connection that plays it.
+     *
+     * @param onEvicted - called once on eviction
+     */
+    void setOnEvicted(Runnable onEvicted) {
+        this.onEvicted = onEvicted;
+    }
+
+    /**
+     * Notifies the session that the registry dropped it.
+     */
+    void evicted() {
+        Runnable callback = onEvicted;
+        if (callback != null) {
+            callback.run();
+        }
+    }
+
+    /**
+     * Starts recording the game to a replay log. Must be called before the
+     * first tick.
+     *
+     * @param file - the log file to create
+     * @throws IOException - if the file cannot be created
+     */
+    synchronized void startRecording(Path file) throws IOException {
+        gameManager.startRecording(file);
+    }
+
+    /**
+     * Stops recording the game, if it is recorded.
+     */
+    synchronized void stopRecording() {
+        gameManager.stopRecording();
+    }
+
+    /**
+     * Estimates the heap memory held by this session.
+     *
+     * @return - the estimated size of this session in bytes
+     */
+    synchronized long estimateMemoryBytes() {
+        return gameManager.estimateMemoryBytes();
+    }
+
+    /**
+     * Records that an input was pressed. SHOOT fires once per press, the
+     * other inputs stay active until they are released.
+     *
+     * @param input - the pressed input
+     */
+    synchronized void press(Spaceship.Input input) {
+        if (input == Spaceship.Input.SHOOT) {
+            queuedShots++;
+        } else {
+            heldInputs |= input.bit();
+        }
+    }
+
+    /**
+     * Records that an input was released.
+     *
+     * @param input - the released input
+     */
+    synchronized void release(Spaceship.Input input) {
+        heldInputs &= ~input.bit();
+    }
+
+    /**
+     * Records the latest snapshot the client received. Later snapshots only
+     * hold what changed since it. Acknowledgements of snapshots that were
+     * never sent are clamped to the last snapshot sent.
+     *
+     * @param sequence - the sequence number of the snapshot
+     */
+    synchronized void acknowledge(int sequence) {
+        sequence = Math.min(sequence, snapshotEncoder.getSequence());
+        if (sequence > acknowledged) {
+            acknowledged = sequence;
+        }
+    }
+
+    /**
+     * Pauses or resumes the game. A paused game is not stepped and sends no
+     * frames.
+     *
+     * @param paused - whether the game is paused
+     */
+    synchronized void setPaused(boolean paused) {
+        this.paused = paused;
+    }
+
+    /**
+     * Returns the inputs the next tick will play, including a queued shot.
+     *
+     * @return - the inputs as a bitmask
+     */
+    synchronized int getInputs() {
+        return queuedShots > 0 ? heldInputs | Spaceship.Input.SHOOT.bit() : heldInputs;
+    }
+
+    /**
+     * Returns the latest snapshot the client acknowledged.
+     *
+     * @return - its sequence number, 0 if none
+     */
+    synchronized int getAcknowledged() {
+        return acknowledged;
+    }
+
+    /**
+     * Replaces the held inputs with the inputs reported by a poll, and
+     * returns the current game state. SHOOT in the inputs fires once.
+     *
+     * @param inputs - the inputs the player is holding, as a bitmask
+     * @return - the json game state
+     */
+    synchronized String poll(int inputs) {
+        holdInputs(inputs);
+        return gameManager.toJson();
+    }
+
+    /**
+     * Replaces the held inputs with the inputs reported by a client that
+     * receives the game state from the frame sink. SHOOT in the inputs fires
+     * once.
+     *
+     * @param inputs - the inputs the player is holding, as a bitmask
+     */
+    synchronized void hold(int inputs) {
+        holdInputs(inputs);
+    }
+
+    /**
+     * Replaces the held inputs with the inputs reported by a poll, and
+     * returns the current game state as a binary snapshot.
+     *
+     * @see SnapshotEncoder - for the snapshot layout
+     *
+     * @param inputs       - the inputs the player is holding, as a bitmask
+     * @param acknowledged - the latest snapshot the client received, 0 if none
+     * @return - the encoded snapshot
+     */
+    synchronized byte[] pollSnapshot(int inputs, int acknowledged) {
+        holdInputs(inputs);
+        acknowledge(acknowledged);
+        return gameManager.toSnapshot(snapshotEncoder, this.acknowledged);
+    }
+
+    /**
+     * Replaces the held inputs with the given inputs and marks the session as
+     * polled. SHOOT in the inputs fires once.
+     */
+    private void holdInputs(int inputs) {
+        lastPollNanos = System.nanoTime();
+        heldInputs = inputs & ~Spaceship.Input.SHOOT.bit();
+        if (Spaceship.Input.SHOOT.isIn(inputs) && queuedShots == 0) {
+            queuedShots = 1;
+        }
+    }
+
+    /**
+     * Returns the current game state.
+     *
+     * @return - the json game state
+     */
+    synchronized String toJson() {
+        return gameManager.toJson();
+    }
+
+    /**
+     * Advances the game by one fixed time step using the inputs buffered since
+     * the last tick, then hands the new state to the frame sink if there is
+     * one. Does nothing while the game is paused, or while a polled session is
+     * not being polled.
+     *
+     * @param dt       - the fixed time step in seconds
+     * @param nowNanos - the current System.nanoTime()
+     */
+    void tick(float dt, long nowNanos) {
+        boolean polled = frameSink == null && snapshotSink == null;
+        if (!polled) {
+            // The connection is open as long as the session is registered
+            lastAccessNanos = nowNanos;
+        }
+        String frame = null;
+        byte[] snapshot = null;
+        synchronized (this) {
+            if (!gameManager.is_running) {
+                if (polled || finalFrameSent) {
+                    return;
+                }
+                finalFrameSent = true;
+            } else {
+                if (paused || polled && nowNanos - lastPollNanos > POLL_TIMEOUT_NANOS) {
+                    return;
+                }
+                gameManager.update(dt, drainInputs());
+                if (polled) {
+                    return;
+                }
+            }
+            if (snapshotSink != null) {
+                snapshot = gameManager.toSnapshot(snapshotEncoder, acknowledged);
+            } else {
+                frame = gameManager.toJson();
+            }
+        }
+        // Send outside of the lock so that a slow client never blocks inputs
+        if (snapshot != null) {
+            snapshotSink.accept(snapshot);
+        } else {
+            frameSink.accept(frame);
+        }
+    }
+
+    /**
+     * Returns the input bitmask for the next tick and consumes one queued
+     * shot.
+     */
+    private int drainInputs() {
+        int inputs = heldInputs;
+        if (queuedShots > 0) {
+            inputs |= Spaceship.Input.SHOOT.bit();
+            queuedShots--;
+        }
+        return inputs;
+    }
+}
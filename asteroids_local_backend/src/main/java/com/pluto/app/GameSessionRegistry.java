@@ -0,0 +1,396 @@
+package com.pluto.app;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Holds the game session of every player, keyed by "username profile_name".
+ * It is shared by all request threads, so the sessions are split across
+ * shards that are each guarded by their own lock; two players only contend
+ * when their keys land on the same shard.
+ *
+ * Sessions are evicted when their client has not used them for the idle
+ * timeout, where a session pushing its state counts as used while it is
+ * ticked. The session limit holds across all shards: when a new session
+ * exceeds it, the least recently used session of the new session's shard is
+ * evicted, or of the next shard holding another session. Registered sessions
+ * are stepped by the GameTickScheduler until they are replaced, removed or
+ * evicted.
+ */
+@Component
+public class GameSessionRegistry {
+    /* Number of independently locked shards */
+    private static final int SHARDS = 16;
+
+    /* Steps the registered sessions */
+    private final GameTickScheduler tickScheduler;
+
+    /* Records new sessions to replay logs if enabled */
+    private final ReplayRecorder replays;
+
+    /**
+     * The sessions of one shard, guarded by locking the shard.
+     */
+    private static final class Shard {
+        /* In access order, so that iteration starts at the least recently used */
+        private final LinkedHashMap<String, GameSession> sessions = new LinkedHashMap<String, GameSession>(16,
+                0.75f, true);
+    }
+
+    /* The shards, indexed by the hash of the player key */
+    private final Shard[] shards;
+
+    /* Most sessions held at once, across all shards */
+    private final int maxSessions;
+
+    /* Number of sessions across all shards */
+    private final AtomicInteger sessionCount = new AtomicInteger();
+
+    /* How long a session may go unused before it is evicted */
+    private final long idleTimeoutNanos;
+
+    /* Number of sessions evicted for being idle or for the session limit */
+    private final AtomicLong idleEvictions = new AtomicLong();
+    private final AtomicLong capacityEvictions = new AtomicLong();
+
+    /* Periodically evicts idle sessions */
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "game-session-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Constructor for the GameSessionRegistry. Starts sweeping idle sessions.
+     *
+     * @param tickScheduler      - the scheduler stepping the sessions
+     * @param replays            - records new sessions to replay logs
+     * @param maxSessions        - the most sessions held at once
+     * @param idleTimeoutSeconds - how long a session may go unused
+     */
+    @Autowired
+    public GameSessionRegistry(GameTickScheduler tickScheduler, ReplayRecorder replays,
+            @Value("${asteroids.sessions.max:10000}") int maxSessions,
+            @Value("${asteroids.sessions.idleTimeoutSeconds:600}") int idleTimeoutSeconds) {
+        if (maxSessions <= 0 || idleTimeoutSeconds <= 0) {
+            throw new IllegalArgumentException("Session limits must be positive");
+        }
+        this.tickScheduler = tickScheduler;
+        this.replays = replays;
+        this.maxSessions = maxSessions;
+        this.idleTimeoutNanos = TimeUnit.SECONDS.toNanos(idleTimeoutSeconds);
+        this.shards = new Shard[SHARDS];
+        for (int i = 0; i < SHARDS; i++) {
+            shards[i] = new Shard();
+        }
+        long sweepMillis = Math.min(30_000L, idleTimeoutSeconds * 1000L / 4 + 1);
+        sweeper.scheduleWithFixedDelay(this::evictIdle, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Constructor for a GameSessionRegistry that records no replays.
+     *
+     * @param tickScheduler      - the scheduler stepping the sessions
+     * @param maxSessions        - the most sessions held at once
+     * @param idleTimeoutSeconds - how long a session may go unused
+     */
+    public GameSessionRegistry(GameTickScheduler tickScheduler, int maxSessions, int idleTimeoutSeconds) {
+        this(tickScheduler, new ReplayRecorder(""), maxSessions, idleTimeoutSeconds);
+    }
+
+    /**
+     * Returns the session of a player and marks it as used.
+     *
+     * @param key - "username profile_name"
+     * @return - the session, or null if the player has none
+     */
+    GameSession get(String key) {
+        Shard shard = shards[shardIndex(key)];
+        GameSession session;
+        synchronized (shard) {
+            session = shard.sessions.get(key);
+        }
+        if (session != null) {
+            session.touch();
+        }
+        return session;
+    }
+
+    /**
+     * Returns the session of a player, creating and registering one if the
+     * player has none. The session is created and starts recording outside of
+     * the shard lock; concurrent calls for the same player may each create
+     * one, but only the first is registered and the others are discarded.
+     *
+     * @param key     - "username profile_name"
+     * @param factory - creates the session if there is none
+     * @return - the session of the player
+     */
+    GameSession getOrCreate(String key, Supplier<GameSession> factory) {
+        int index = shardIndex(key);
+        Shard shard = shards[index];
+        GameSession session;
+        synchronized (shard) {
+            session = shard.sessions.get(key);
+        }
+        if (session == null) {
+            GameSession created = factory.get();
+            replays.start(created);
+            synchronized (shard) {
+                session = shard.sessions.get(key);
+                if (session == null) {
+                    session = created;
+                    insert(shard, key, session);
+                }
+            }
+            if (session == created) {
+                enforceLimit(index, created);
+            } else {
+                created.stopRecording();
+            }
+        }
+        session.touch();
+        return session;
+    }
+
+    /**
+     * Registers the session of a player, replacing any previous session.
+     *
+     * @param key     - "username profile_name"
+     * @param session - the new session
+     */
+    void put(String key, GameSession session) {
+        int index = shardIndex(key);
+        Shard shard = shards[index];
+        GameSession previous;
+        replays.start(session);
+        synchronized (shard) {
+            previous = shard.sessions.remove(key);
+            if (previous != null) {
+                sessionCount.decrementAndGet();
+            }
+            insert(shard, key, session);
+        }
+        session.touch();
+        drop(previous);
+        enforceLimit(index, session);
+    }
+
+    /**
+     * Removes the session of a player if it is the given session. Does nothing
+     * if the player has since started another session.
+     *
+     * @param key     - "username profile_name"
+     * @param session - the session to remove
+     */
+    void remove(String key, GameSession session) {
+        Shard shard = shards[shardIndex(key)];
+        boolean removed;
+        synchronized (shard) {
+            removed = shard.sessions.remove(key, session);
+            if (removed) {
+                sessionCount.decrementAndGet();
+            }
+        }
+        if (removed) {
+            tickScheduler.unregister(session);
+            session.stopRecording();
+        }
+    }
+
+    /**
+     * Returns the number of live sessions.
+     *
+     * @return - the number of sessions across all shards
+     */
+    public int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                size += shard.sessions.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Estimates the heap memory held by all live sessions.
+     *
+     * @return - the estimated size of all sessions in bytes
+     */
+    public long estimateMemoryBytes() {
+        long bytes = 0;
+        for (GameSession session : snapshot()) {
+            bytes += session.estimateMemoryBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Converts the registry statistics to a json formatted string.
+     *
+     * @return - a json object with the following attributes:
+     *         sessions - int, live sessions
+     *         max_sessions - int
+     *         memory_bytes - int, estimated heap held by the sessions
+     *         idle_evictions - int
+     *         capacity_evictions - int
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"sessions\":").append(size()).append(",")
+                .append("\"max_sessions\":").append(maxSessions).append(",")
+                .append("\"memory_bytes\":").append(estimateMemoryBytes()).append(",")
+                .append("\"idle_evictions\":").append(idleEvictions.get()).append(",")
+                .append("\"capacity_evictions\":").append(capacityEvictions.get())
+                .append("}");
+        return json.toString();
+    }
+
+    /**
+     * Evicts every session that has not been used for the idle timeout.
+     */
+    void evictIdle() {
+        long now = System.nanoTime();
+        List<GameSession> evicted = new ArrayList<GameSession>();
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                Iterator<GameSession> iterator = shard.sessions.values().iterator();
+                while (iterator.hasNext()) {
+                    GameSession session = iterator.next();
+                    if (now - session.getLastAccessNanos() > idleTimeoutNanos) {
+                        iterator.remove();
+                        sessionCount.decrementAndGet();
+                        evicted.add(session);
+                    }
+                }
+            }
+        }
+        idleEvictions.addAndGet(evicted.size());
+        for (GameSession session : evicted) {
+            drop(session);
+        }
+    }
+
+    /**
+     * Stops sweeping when the application shuts down, and closes the replay
+     * logs of the live sessions so that no recorded update is lost.
+     */
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+        for (GameSession session : snapshot()) {
+            session.stopRecording();
+        }
+    }
+
+    /**
+     * Adds a session to a locked shard and starts ticking it. Its recording
+     * must already have started, before the first tick, outside of the lock.
+     * The caller enforces the session limit once it has released the lock.
+     */
+    private void insert(Shard shard, String key, GameSession session) {
+        shard.sessions.put(key, session);
+        sessionCount.incrementAndGet();
+        tickScheduler.register(session);
+    }
+
+    /**
+     * Evicts least recently used sessions while there are more than the
+     * session limit, starting at the given shard and moving on to the next
+     * shard once it holds no other session. Each eviction first takes one off
+     * the session count, so that concurrent callers never evict more sessions
+     * than the limit requires.
+     *
+     * @param first - the index of the shard to evict from first
+     * @param keep  - the new session, which is never evicted
+     */
+    private void enforceLimit(int first, GameSession keep) {
+        for (int i = 0; i < SHARDS; i++) {
+            Shard shard = shards[(first + i) & (SHARDS - 1)];
+            while (true) {
+                int count = sessionCount.get();
+                if (count <= maxSessions) {
+                    return;
+                }
+                if (!sessionCount.compareAndSet(count, count - 1)) {
+                    continue;
+                }
+                GameSession evicted = removeEldest(shard, keep);
+                if (evicted == null) {
+                    // Nothing to evict here, give the count back and move on
+                    sessionCount.incrementAndGet();
+                    break;
+                }
+                capacityEvictions.incrementAndGet();
+                drop(evicted);
+            }
+        }
+    }
+
+    /**
+     * Removes the least recently used session of a shard other than the given
+     * one, without touching the session count.
+     *
+     * @return - the removed session, or null if the shard holds no other
+     */
+    private GameSession removeEldest(Shard shard, GameSession keep) {
+        synchronized (shard) {
+            Iterator<GameSession> iterator = shard.sessions.values().iterator();
+            while (iterator.hasNext()) {
+                GameSession session = iterator.next();
+                if (session != keep) {
+                    iterator.remove();
+                    return session;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stops ticking a session that left the registry and notifies it.
+     */
+    private void drop(GameSession session) {
+        if (session != null) {
+            tickScheduler.unregister(session);
+            session.stopRecording();
+            session.evicted();
+        }
+    }
+
+    /**
+     * Returns a copy of every live session.
+     */
+    private List<GameSession> snapshot() {
+        List<GameSession> sessions = new ArrayList<GameSession>();
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                sessions.addAll(shard.sessions.values());
+            }
+        }
+        return sessions;
+    }
+
+    /**
+     * Returns the index of the shard holding the given key.
+     */
+    private static int shardIndex(String key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (SHARDS - 1);
+    }
+}
@@ -0,0 +1,281 @@
+package com.pluto.app;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Component;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.pluto.game.Difficulty;
+import com.pluto.game.GameManager;
+import com.pluto.game.Spaceship;
+
+/**
+ * Streams a game over a WebSocket on localhost:8080/api/gameSocket. It is the
+ * persistent alternative to polling /api/updateGame every frame: the game is
+ * created once when the socket opens, the client only sends its input
+ * changes, and the server pushes the game state after every tick of the
+ * GameTickScheduler.
+ *
+ * The socket is opened with the same parameters as /api/newGame:
+ * ws://localhost:8080/api/gameSocket?username=...&profile_name=...&difficulty=MEDIUM
+ *
+ * Messages from the client are text of the form:
+ * +INPUT - the input was pressed, e.g. "+UP". SHOOT fires once per press.
+ * -INPUT - the input was released, e.g. "-LEFT"
+ * new    - starts a new game on the same socket
+ * pause  - stops stepping the game until "resume"
+ * resume - steps the game again
+ * ack N  - the client received the binary snapshot with sequence number N
+ * where INPUT is one of UP, LEFT, RIGHT, SHOOT. Unknown messages are ignored.
+ *
+ * Messages from the server are the same json game state that
+ * /api/updateGame returns. If the socket is opened with format=binary, they
+ * are instead binary snapshots holding only what changed since the last
+ * acknowledged snapshot, see SnapshotEncoder. Once the game is over, the
+ * final state is sent a single time.
+ *
+ * A player has one game at a time: opening a socket ends the player's
+ * previous game, and the socket is closed when its game is ended elsewhere or
+ * is evicted to make room for other games. While the socket is open its game
+ * is never evicted as idle, even if the client sends nothing.
+ */
+@Component
+public class GameSocketHandler extends TextWebSocketHandler {
+    /* Limits for a client that does not keep up with the frames */
+    private static final int SEND_TIME_LIMIT_MILLIS = 1000;
+    private static final int SEND_BUFFER_LIMIT_BYTES = 512 * 1024;
+
+    /* Open connections and their games, keyed by WebSocket session id */
+    private final Map<String, Connection> connections = new ConcurrentHashMap<String, Connection>();
+
+    /* Holds the games of all players, which steps and evicts them */
+    private final GameSessionRegistry gameSessions;
+
+    /**
+     * A WebSocket together with the game it plays.
+     */
+    private class Connection {
+        /* The socket, decorated so that it can be sent to safely */
+        private final WebSocketSession socket;
+
+        /* The game played over the socket */
+        private volatile GameSession game;
+
+        /* The player key "username profile_name" of the game */
+        private final String key;
+
+        /* The difficulty the socket was opened with */
+        private final Difficulty difficulty;
+
+        /* Whether the game state is sent as binary snapshots */
+        private final boolean binary;
+
+        private Connection(WebSocketSession socket, String key, Difficulty difficulty, boolean binary) {
+            this.socket = socket;
+            this.key = key;
+            this.difficulty = difficulty;
+            this.binary = binary;
+        }
+
+        /**
+         * Replaces the game of this connection with a new one. Any other game
+         * of the same player, over REST or another socket, is ended.
+         */
+        private void startGame() {
+            GameSession previous = game;
+            if (previous != null) {
+                // Replacing our own game must not close this socket
+                previous.setOnEvicted(null);
+            }
+            GameManager gameManager = new GameManager(difficulty);
+            GameSession next = binary
+                    ? GameSession.withSnapshots(gameManager, snapshot -> send(new BinaryMessage(snapshot)))
+                    : new GameSession(gameManager, frame -> send(new TextMessage(frame)));
+            next.setOnEvicted(this::evicted);
+            game = next;
+            gameSessions.put(key, next);
+        }
+
+        /**
+         * Sends a frame to the client. A client that cannot be sent to is
+         * disconnected, so it cannot stall the other games of its shard.
+         *
+         * @param frame - the game state
+         */
+        private void send(WebSocketMessage<?> frame) {
+            if (!socket.isOpen()) {
+                return;
+            }
+            try {
+                socket.sendMessage(frame);
+            } catch (Exception e) {
+                close();
+                closeSocket(CloseStatus.SESSION_NOT_RELIABLE);
+            }
+        }
+
+        /**
+         * Closes the socket once the registry has dropped its game, because
+         * it was evicted or the player started another one.
+         */
+        private void evicted() {
+            connections.remove(socket.getId());
+            closeSocket(CloseStatus.GOING_AWAY.withReason("Game ended by the server"));
+        }
+
+        /**
+         * Removes the game of this connection from the registry.
+         */
+        private void close() {
+            connections.remove(socket.getId());
+            gameSessions.remove(key, game);
+        }
+
+        /**
+         * Closes the socket, ignoring errors from sockets that are already
+         * broken.
+         */
+        private void closeSocket(CloseStatus status) {
+            try {
+                socket.close(status);
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+    }
+
+    /**
+     * Constructor for the GameSocketHandler.
+     *
+     * @param gameSessions - the registry holding every player's game
+     */
+    public GameSocketHandler(GameSessionRegistry gameSessions) {
+        this.gameSessions = gameSessions;
+    }
+
+    /**
+     * Creates the game of a newly opened socket.
+     *
+     * @param session - the opened socket
+     */
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws IOException {
+        MultiValueMap<String, String> params = UriComponentsBuilder.fromUri(session.getUri())
+                .build().getQueryParams();
+        Difficulty difficulty = parseDifficulty(params.getFirst("difficulty"));
+        if (difficulty == null) {
+            session.close(CloseStatus.BAD_DATA.withReason("Invalid difficulty"));
+            return;
+        }
+        WebSocketSession socket = new ConcurrentWebSocketSessionDecorator(session,
+                SEND_TIME_LIMIT_MILLIS, SEND_BUFFER_LIMIT_BYTES);
+        String key = Objects.toString(params.getFirst("username"), "") + " "
+                + Objects.toString(params.getFirst("profile_name"), "");
+        boolean binary = "binary".equals(params.getFirst("format"));
+        Connection connection = new Connection(socket, key, difficulty, binary);
+        connections.put(session.getId(), connection);
+        connection.startGame();
+    }
+
+    /**
+     * Applies an input change, restart or pause sent by the client.
+     *
+     * @param session - the socket the message arrived on
+     * @param message - the message
+     */
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+        Connection connection = connections.get(session.getId());
+        if (connection == null) {
+            return;
+        }
+        connection.game.touch();
+        String payload = message.getPayload().trim();
+        if (payload.equals("new")) {
+            connection.startGame();
+            return;
+        }
+        if (payload.equals("pause") || payload.equals("resume")) {
+            connection.game.setPaused(payload.equals("pause"));
+            return;
+        }
+        if (payload.startsWith("ack ")) {
+            try {
+                connection.game.acknowledge(Integer.parseInt(payload.substring(4).trim()));
+            } catch (NumberFormatException e) {
+                // Ignored like any other unknown message
+            }
+            return;
+        }
+        if (payload.length() < 2) {
+            return;
+        }
+        Spaceship.Input input = parseInput(payload.substring(1));
+        if (input == null) {
+            return;
+        }
+        if (payload.charAt(0) == '+') {
+            connection.game.press(input);
+        } else if (payload.charAt(0) == '-') {
+            connection.game.release(input);
+        }
+    }
+
+    /**
+     * Drops the game of a closed socket.
+     *
+     * @param session - the closed socket
+     * @param status  - the reason it was closed
+     */
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        Connection connection = connections.get(session.getId());
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Parses a difficulty name without throwing.
+     *
+     * @param name - the name, MEDIUM if null
+     * @return - the difficulty, or null if the name is not a difficulty
+     */
+    static Difficulty parseDifficulty(String name) {
+        if (name == null) {
+            return Difficulty.MEDIUM;
+        }
+        for (Difficulty difficulty : Difficulty.values()) {
+            if (difficulty.name().equals(name)) {
+                return difficulty;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parses an input name without throwing.
+     *
+     * @param name - the name of the input
+     * @return - the input, or null if the name is not an input
+     */
+    private static Spaceship.Input parseInput(String name) {
+        for (Spaceship.Input input : Spaceship.Input.values()) {
+            if (input.name().equals(name)) {
+                return input;
+            }
+        }
+        return null;
+    }
+}
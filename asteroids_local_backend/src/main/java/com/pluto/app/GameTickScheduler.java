@@ -0,0 +1,202 @@
+package com.pluto.app;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Steps every active game on the server at a fixed rate, so the simulation no
+ * longer depends on how often clients poll or on the dt they report.
+ *
+ * Sessions are split across shards, one per core by default. Each shard is a
+ * single thread that ticks all of its sessions in turn, so the number of
+ * threads stays bounded however many games are running. The time each shard
+ * takes per tick is recorded, which tells how many sessions a core can carry
+ * before ticks start to overrun.
+ */
+@Component
+public class GameTickScheduler {
+    /* The ticks per second and the matching fixed time step */
+    private final int tickRate;
+    private final float dt;
+
+    /* The shards sessions are spread across */
+    private final Shard[] shards;
+
+    /**
+     * A thread ticking a group of sessions.
+     */
+    private class Shard implements Runnable {
+        /* Sessions stepped by this shard */
+        private final List<GameSession> sessions = new CopyOnWriteArrayList<GameSession>();
+
+        /* Duration of each tick of this shard */
+        private final TickHistogram tickMicros = new TickHistogram();
+
+        /* Number of ticks that took longer than the tick period */
+        private final AtomicLong overruns = new AtomicLong();
+
+        /* The thread running the ticks */
+        private final ScheduledExecutorService executor;
+
+        private Shard(int index) {
+            executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "game-tick-" + index);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        /**
+         * Ticks every session of the shard once.
+         */
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            for (GameSession session : sessions) {
+                try {
+                    session.tick(dt, start);
+                } catch (RuntimeException e) {
+                    // Never let one broken game stop the others
+                    sessions.remove(session);
+                    e.printStackTrace();
+                }
+            }
+            long micros = (System.nanoTime() - start) / 1000;
+            tickMicros.record(micros);
+            if (micros > 1_000_000L / tickRate) {
+                overruns.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Constructor for the GameTickScheduler. Starts ticking right away.
+     *
+     * @param tickRate - the number of ticks per second
+     * @param shards   - the number of shards, or 0 for one per core
+     */
+    public GameTickScheduler(
+            @Value("${asteroids.tick.rate:60}") int tickRate,
+            @Value("${asteroids.tick.shards:0}") int shards) {
+        if (tickRate <= 0) {
+            throw new IllegalArgumentException("Tick rate must be positive");
+        }
+        this.tickRate = tickRate;
+        this.dt = 1.0f / tickRate;
+        if (shards <= 0) {
+            shards = Runtime.getRuntime().availableProcessors();
+        }
+        this.shards = new Shard[shards];
+        long periodMicros = 1_000_000L / tickRate;
+        for (int i = 0; i < shards; i++) {
+            this.shards[i] = new Shard(i);
+            this.shards[i].executor.scheduleAtFixedRate(this.shards[i], periodMicros, periodMicros,
+                    TimeUnit.MICROSECONDS);
+        }
+    }
+
+    /**
+     * Starts ticking a session on the shard with the fewest sessions.
+     *
+     * @param session - the session to tick
+     */
+    void register(GameSession session) {
+        int best = 0;
+        for (int i = 1; i < shards.length; i++) {
+            if (shards[i].sessions.size() < shards[best].sessions.size()) {
+                best = i;
+            }
+        }
+        session.shard = best;
+        shards[best].sessions.add(session);
+    }
+
+    /**
+     * Stops ticking a session. Does nothing if it is not being ticked.
+     *
+     * @param session - the session to stop ticking
+     */
+    void unregister(GameSession session) {
+        int shard = session.shard;
+        if (shard >= 0) {
+            shards[shard].sessions.remove(session);
+            session.shard = -1;
+        }
+    }
+
+    /**
+     * Returns the number of sessions being ticked.
+     *
+     * @return - the number of sessions across all shards
+     */
+    public int getSessionCount() {
+        int count = 0;
+        for (Shard shard : shards) {
+            count += shard.sessions.size();
+        }
+        return count;
+    }
+
+    /**
+     * Converts the tick statistics to a json formatted string.
+     *
+     * @return - a json object with the following attributes:
+     *         tick_rate - int, ticks per second
+     *         shards - int
+     *         sessions - int, sessions across all shards
+     *         shard_sessions - array of int, sessions per shard
+     *         ticks - int, ticks run across all shards
+     *         overruns - int, ticks that took longer than the tick period
+     *         tick_micros - the tick duration of a shard in microseconds:
+     *           p50, p90, p99, p999, max - int
+     */
+    public String toJson() {
+        TickHistogram merged = new TickHistogram();
+        long overruns = 0;
+        StringBuilder shardSessions = new StringBuilder("[");
+        for (int i = 0; i < shards.length; i++) {
+            merged.add(shards[i].tickMicros);
+            overruns += shards[i].overruns.get();
+            if (i > 0) {
+                shardSessions.append(",");
+            }
+            shardSessions.append(shards[i].sessions.size());
+        }
+        shardSessions.append("]");
+
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"tick_rate\":").append(tickRate).append(",")
+                .append("\"shards\":").append(shards.length).append(",")
+                .append("\"sessions\":").append(getSessionCount()).append(",")
+                .append("\"shard_sessions\":").append(shardSessions).append(",")
+                .append("\"ticks\":").append(merged.count()).append(",")
+                .append("\"overruns\":").append(overruns).append(",")
+                .append("\"tick_micros\":{")
+                .append("\"p50\":").append(merged.percentile(50)).append(",")
+                .append("\"p90\":").append(merged.percentile(90)).append(",")
+                .append("\"p99\":").append(merged.percentile(99)).append(",")
+                .append("\"p999\":").append(merged.percentile(99.9)).append(",")
+                .append("\"max\":").append(merged.max())
+                .append("}}");
+        return json.toString();
+    }
+
+    /**
+     * Stops every shard when the application shuts down.
+     */
+    @PreDestroy
+    public void shutdown() {
+        for (Shard shard : shards) {
+            shard.executor.shutdownNow();
+        }
+    }
+}
@@ -1,15 +1,22 @@
 package com.pluto.app;
 
-import java.util.HashMap;
-import java.sql.ResultSet;
-import java.sql.SQLException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.CompletableFuture;
 
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import com.pluto.database.Authenticator;
 import com.pluto.database.DatabaseClient;
+import com.pluto.database.LeaderboardCache;
+import com.pluto.database.ScoreIngestionQueue;
+import com.pluto.database.ScoreUpload;
 import com.pluto.game.Difficulty;
 import com.pluto.game.GameManager;
 import com.pluto.game.Spaceship;
 
+import jakarta.servlet.http.HttpServletResponse;
+
 /**
  * A controller class for the local backend. It handles HTTP requests from the
  * front end using RestAPI and the Spring Boot framework. By default, it
@@ -38,15 +45,54 @@ public class LocalController {
             "^[a-zA-Z0-9-=\\[\\]\\\\;',.\\/!@#$%^&*()_+{}|:\"<>?`~]{4,32}$";
 
     /**
-     * Stores all the game managers for each user. The key is "username
+     * Stores the game session of each user. The key is "username
      * profile_name"
-     * and the value is the GameManager object.
+     * and the value is the GameSession playing that user's game.
+     */
+    private final GameSessionRegistry gameSessions;
+
+    /**
+     * The client to the user database, shared by all requests.
+     */
+    private final DatabaseClient dbClient;
+
+    /**
+     * Checks and hashes passwords off the request threads.
+     */
+    private final Authenticator authenticator;
+
+    /**
+     * The leaderboards kept in memory, updated after every stored score.
+     */
+    private final LeaderboardCache leaderboardCache;
+
+    /**
+     * The queue uploaded scores wait in until they are stored.
+     */
+    private final ScoreIngestionQueue scoreQueue;
+
+    /**
+     * Constructor for the LocalController.
+     *
+     * @param gameSessions     - the registry holding every user's game session
+     * @param dbClient         - the client to the user database
+     * @param authenticator    - logs users in and registers them
+     * @param leaderboardCache - the leaderboards kept in memory
+     * @param scoreQueue       - the queue uploaded scores are stored from
      */
-    private HashMap<String, GameManager> gameManagers = new HashMap<String, GameManager>();
+    public LocalController(GameSessionRegistry gameSessions, DatabaseClient dbClient,
+            Authenticator authenticator, LeaderboardCache leaderboardCache, ScoreIngestionQueue scoreQueue) {
+        this.gameSessions = gameSessions;
+        this.dbClient = dbClient;
+        this.authenticator = authenticator;
+        this.leaderboardCache = leaderboardCache;
+        this.scoreQueue = scoreQueue;
+    }
 
     /**
      * This method handles user login requests on localhost:8080/api/login.
-     * Response messages are sent in a json format.
+     * Response messages are sent in a json format. The password is checked
+     * off the request thread, and the response is sent once it is done.
      * 
      * @see generateResponse - for json response format
      *
@@ -59,31 +105,30 @@ public class LocalController {
      */
     @CrossOrigin(origins = "*")
     @GetMapping("/login")
-    public String login(
+    public CompletableFuture<String> login(
             @RequestParam(value = "name", defaultValue = "") String name,
             @RequestParam(value = "pass", defaultValue = "") String pass) {
 
         // Check that name and pass are of valid format
         if (!name.matches(USERNAME_FORMAT))
-            return generateResponse(false, "Username is invalid");
+            return CompletableFuture.completedFuture(generateResponse(false, "Username is invalid"));
         if (!pass.matches(PASSWORD_FORMAT))
-            return generateResponse(false, "Password is invalid");
+            return CompletableFuture.completedFuture(generateResponse(false, "Password is invalid"));
 
-        // TODO: rewrite condition block as try-catch block for checking dbClient
-        // creation errors
-        DatabaseClient dbClient = new DatabaseClient();
-        String error = dbClient.loginUser(name, pass);
-        if (error.equals("")) {
-            return generateResponse(true);
-        } else {
-            return generateResponse(false, error);
-        }
+        return authenticator.login(name, pass).thenApply(error -> {
+            if (error.equals("")) {
+                return generateResponse(true);
+            } else {
+                return generateResponse(false, error);
+            }
+        });
     }
 
     /**
      * This method handles user registration requests on
      * localhost:8080/api/register.
-     * Response messages are sent in a json format.
+     * Response messages are sent in a json format. The password is hashed
+     * off the request thread, and the response is sent once it is done.
      * 
      * @see generateResponse - for json response format
      * 
@@ -96,25 +141,23 @@ public class LocalController {
      */
     @CrossOrigin(origins = "*")
     @GetMapping("/register")
-    public String register(
+    public CompletableFuture<String> register(
             @RequestParam(value = "name", defaultValue = "") String name,
             @RequestParam(value = "pass", defaultValue = "") String pass) {
 
         // Check that name and pass are of valid format
         if (!name.matches(USERNAME_FORMAT))
-            return generateResponse(false, "Username is invalid");
+            return CompletableFuture.completedFuture(generateResponse(false, "Username is invalid"));
         if (!pass.matches(PASSWORD_FORMAT))
-            return generateResponse(false, "Password is invalid");
+            return CompletableFuture.completedFuture(generateResponse(false, "Password is invalid"));
 
-        // TODO: rewrite condition block as try-catch block for checking dbClient
-        // creation errors
-        DatabaseClient dbClient = new DatabaseClient();
-        String error = dbClient.createUser(name, pass);
-        if (error.equals("")) {
-            return generateResponse(true);
-        } else {
-            return generateResponse(false, error);
-        }
+        return authenticator.register(name, pass).thenApply(error -> {
+            if (error.equals("")) {
+                return generateResponse(true);
+            } else {
+                return generateResponse(false, error);
+            }
+        });
     }
 
     /**
@@ -141,9 +184,6 @@ public class LocalController {
         if (!profile_name.matches(USERNAME_FORMAT))
             return generateResponse(false, "Profile name is invalid");
 
-        // TODO: rewrite condition block as try-catch block for checking dbClient
-        // creation errors
-        DatabaseClient dbClient = new DatabaseClient();
         String error = dbClient.createProfile(username, profile_name);
         if (error.equals("")) {
             return generateResponse(true);
@@ -178,11 +218,9 @@ public class LocalController {
         if (!new_profile_name.matches(USERNAME_FORMAT))
             return generateResponse(false, "New profile name is invalid");
 
-        // TODO: rewrite condition block as try-catch block for checking dbClient
-        // creation errors
-        DatabaseClient dbClient = new DatabaseClient();
         String error = dbClient.renameProfile(username, profile_name, new_profile_name);
         if (error.equals("")) {
+            leaderboardCache.invalidate();
             return generateResponse(true);
         } else {
             return generateResponse(false, error);
@@ -209,11 +247,9 @@ public class LocalController {
             @RequestParam(value = "username", defaultValue = "") String username,
             @RequestParam(value = "profile_name", defaultValue = "") String profile_name) {
 
-        // TODO: rewrite condition block as try-catch block for checking dbClient
-        // creation errors
-        DatabaseClient dbClient = new DatabaseClient();
         String error = dbClient.deleteProfile(username, profile_name);
         if (error.equals("")) {
+            leaderboardCache.invalidate();
             return generateResponse(true);
         } else {
             return generateResponse(false, error);
@@ -239,9 +275,6 @@ public class LocalController {
     public String getProfiles(
             @RequestParam(value = "username", defaultValue = "") String username) {
 
-        // TODO: rewrite condition block as try-catch block for checking dbClient
-        // creation errors
-        DatabaseClient dbClient = new DatabaseClient();
         String[] profiles = dbClient.getProfiles(username);
         if (profiles != null) {
             // Converts the array of profiles into a JSON formatted string
@@ -263,14 +296,16 @@ public class LocalController {
 
     /**
     * Handles requests related to the leaderboard.
-    * This method fetches the top scores from the database view `Leaderboard`
-    * and returns them in JSON format. The scores can be sorted by 'score', 'level', 
+    * This method streams the top scores from the in-memory leaderboards into
+    * the response in JSON format; the database is only read the first time a
+    * leaderboard is requested. The scores can be sorted by 'score', 'level', 
     * or 'duration_secodns'. The scores can be filtered by difficulty. The difficulty
     * can be "EASY", "MEDIUM", "HARD" or "ALL". The default is "ALL".
     *
     * @param limit The number of top scores to fetch (default is 10).
-    * @return A JSON-formatted string containing the top scores or an error message.
-    * The JSON has the following attributes:
+    * @param response The response the JSON is written to.
+    * The response is a JSON-formatted string containing the top scores or an
+    * error message. The JSON has the following attributes:
     * success - boolean
     * error - string
     * leaderboard - a list of scores
@@ -284,46 +319,41 @@ public class LocalController {
     */
     @CrossOrigin(origins = "*")
     @GetMapping("/leaderboard")
-    public String getLeaderboard(
+    public void getLeaderboard(
             @RequestParam(value = "limit", defaultValue = "10") int limit,
             @RequestParam(value = "score", defaultValue = "score") String score,
-            @RequestParam(value = "difficulty", defaultValue = "ALL") String difficulty) {
+            @RequestParam(value = "difficulty", defaultValue = "ALL") String difficulty,
+            HttpServletResponse response) throws IOException {
         score = score.toLowerCase();
-        DatabaseClient dbClient = new DatabaseClient();
-        // Fetch top scores ordered by highest Score
-        ResultSet rs = dbClient.fetchTopScores(limit, score, difficulty); 
-        if (rs == null) {
-            return generateResponse(false, "Failed to fetch leaderboard");
-        }
-        StringBuilder jsonResult = new StringBuilder("{\"leaderboard\":[");
-
-        try {
-            boolean first = true;
-            while (rs.next()) {
-                if (!first) {
-                    jsonResult.append(",");
-                }
-                jsonResult.append("{")
-                        .append("\"user\":\"").append(rs.getString("user_name")).append("\",")
-                        .append("\"profile\":\"").append(rs.getString("profile_name")).append("\",")
-                        .append("\"score\":").append(rs.getInt("score")).append(",")
-                        .append("\"level\":").append(rs.getInt("level")).append(",")
-                        .append("\"duration\":").append(rs.getInt("duration_seconds")).append(",")
-                        .append("\"time\":\"").append(rs.getTimestamp("time_played")).append("\"")
-                        .append("}");
-                first = false;
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        PrintWriter out = response.getWriter();
+        out.write("{\"leaderboard\":[");
+        boolean[] first = { true };
+        String error = leaderboardCache.streamTopScores(limit, score, difficulty, entry -> {
+            if (!first[0]) {
+                out.write(",");
             }
-            jsonResult.append("], \"success\":true, \"error\":\"\"}");
-            return jsonResult.toString();
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return generateResponse(false, "Failed to fetch leaderboard");
+            entry.appendJson(out);
+            first[0] = false;
+        });
+        if (error.equals("")) {
+            out.write("], \"success\":true, \"error\":\"\"}");
+        } else if (!response.isCommitted()) {
+            // Nothing was sent yet, so replace the partial list by the error
+            response.resetBuffer();
+            out.write(generateResponse(false, "Failed to fetch leaderboard"));
+        } else {
+            out.write("], \"success\":false, \"error\":\"Failed to fetch leaderboard\"}");
         }
     }
 
     /**
     * Handles requests for uploading a new game score.
-    * This method inserts a new score record into the `Scores` table.
+    * The user and profile are checked first, from the cached ids when they
+    * are known, and "User does not exist" or "Profile does not exist" is
+    * returned if either is missing. The score is then queued and later
+    * inserted into the `Scores` table, so success means the score was
+    * accepted. An error is returned when the queue is full.
     *
     * @param username The username of the player.
     * @param profile_name The profile name of the player.
@@ -348,8 +378,10 @@ public class LocalController {
         if (!(difficulty.equals("EASY") || difficulty.equals("MEDIUM") || difficulty.equals("HARD"))) {
             return generateResponse(false, "Invalid difficulty");
         }
-        DatabaseClient dbClient = new DatabaseClient();
-        String error = dbClient.uploadScore(username, profile_name, difficulty, score, level, duration);
+        String error = dbClient.checkProfile(username, profile_name);
+        if (error.equals("")) {
+            error = scoreQueue.submit(new ScoreUpload(username, profile_name, difficulty, score, level, duration));
+        }
 
         if (error.equals("")) {
             return generateResponse(true);
@@ -381,7 +413,6 @@ public class LocalController {
             @RequestParam("username") String username,
             @RequestParam("profile_name") String profile_name,
             @RequestParam(value = "difficulty", defaultValue = "ALL") String difficulty) {
-        DatabaseClient dbClient = new DatabaseClient();
         int[] stats = dbClient.getStats(username, profile_name, difficulty);
         if (stats == null) {
             return generateResponse(false, "Failed to fetch profile statistics");
@@ -402,35 +433,50 @@ public class LocalController {
      * @param username     - the login name of the user
      * @param profile_name - the name of the profile
      * @param difficulty  - the difficulty of the game, can be "EASY", "MEDIUM" or "HARD"
+     * @param seed         - the seed of the game's random generator, random if
+     *                     empty. The same seed, difficulty and inputs replay
+     *                     the same game.
      * @return - a json formatted confirmation or error of the new game request
      * The json has the following attributes:
      * success - boolean
      * error - string
+     * seed - string, the seed of the game. Sent as a string because a long
+     *        does not fit in a JavaScript number.
      */
     @CrossOrigin(origins = "*")
     @GetMapping("/newGame")
     public String newGame(
             @RequestParam(value = "username", defaultValue = "") String username,
             @RequestParam(value = "profile_name", defaultValue = "") String profile_name,
-            @RequestParam(value = "difficulty", defaultValue = "MEDIUM") String difficulty) {
-        String key = username + " " + profile_name;
-        if (gameManagers.containsKey(key)) {
-            gameManagers.remove(key);
+            @RequestParam(value = "difficulty", defaultValue = "MEDIUM") String difficulty,
+            @RequestParam(value = "seed", defaultValue = "") String seed) {
+        GameManager gameManager;
+        if (seed.equals("")) {
+            gameManager = new GameManager(Difficulty.valueOf(difficulty));
+        } else {
+            try {
+                gameManager = new GameManager(Difficulty.valueOf(difficulty), Long.parseLong(seed));
+            } catch (NumberFormatException e) {
+                return generateResponse(false, "Invalid seed");
+            }
         }
-        gameManagers.put(key, new GameManager(Difficulty.valueOf(difficulty)));
-        return generateResponse(true);
+        String key = username + " " + profile_name;
+        gameSessions.put(key, new GameSession(gameManager));
+        return "{\"success\":\"true\",\"error\":\"\",\"seed\":\"" + gameManager.getSeed() + "\"}";
     }
 
     /**
      * This method handles game update requests on localhost:8080/api/updateGame.
-     * This method should be called every frame. The time returned is the amount of
-     * time the game has been running for in seconds using dt.
+     * This method should be called every frame. The game itself is stepped by
+     * the server at a fixed rate; this call reports the inputs the player is
+     * holding and returns the latest game state. A game that is not polled for
+     * a moment is paused until the next call.
      * Response messages are sent in a json format.
      * 
-     * @param dt           - the time in seconds since the last update
+     * @param dt           - unused, kept for older clients
      * @param username     - the login name of the user
      * @param profile_name - the name of the profile
-     * @param inputs       - the player inputs
+     * @param inputs       - the player inputs, e.g. "UP,SHOOT"; unknown names are ignored
      * @param difficulty   - the difficulty of the game, can be "EASY", "MEDIUM" or "HARD"
      * @return - a json formatted game state
      * 
@@ -484,33 +530,49 @@ public class LocalController {
             @RequestParam(value = "difficulty", defaultValue = "MEDIUM") String difficulty) {
         // Check that the game manager exists, if not create a new one
         String key = username + " " + profile_name;
-        if (!gameManagers.containsKey(key)) {
-            gameManagers.put(key, new GameManager(Difficulty.valueOf(difficulty)));
-            return gameManagers.get(key).toJson();
+        GameSession session = gameSessions.get(key);
+        if (session == null) {
+            session = gameSessions.getOrCreate(key,
+                    () -> new GameSession(new GameManager(Difficulty.valueOf(difficulty))));
+            return session.toJson();
         }
 
-        // Parse the inputs
-        String[] inputStrings = inputs.trim().split(",");
-        if (inputs.equals("")) {
-            inputStrings = new String[0];
-        } else {
-            inputStrings = inputs.split(",");
-        }
-        // Check if the game is running
-        GameManager gameManager = gameManagers.get(key);
-        if (!gameManager.is_running) {
-            return gameManager.toJson();
-        }
-        // Call the update method and return the game state
-        Spaceship.Input[] input = new Spaceship.Input[inputStrings.length];
-        for (int i = 0; i < inputStrings.length; i++) {
-            input[i] = Spaceship.Input.valueOf(inputStrings[i]);
-            //System.out.println("input");
-            //System.out.println(input[i].toString()); 
-        }
-        gameManager.update(dt, input);
+        // Buffer the inputs for the next tick and return the game state
+        return session.poll(Spaceship.Input.parseMask(inputs));
+    }
 
-        return gameManager.toJson();
+    /**
+     * This method handles binary game update requests on
+     * localhost:8080/api/updateGame?format=binary.
+     * It works like the json updateGame, but returns the game state as a
+     * compact binary snapshot that only holds the entities that were added,
+     * removed or changed since the snapshot the client acknowledged.
+     * 
+     * @see com.pluto.game.SnapshotEncoder - for the snapshot layout
+     * 
+     * @param dt           - unused, kept for older clients
+     * @param username     - the login name of the user
+     * @param profile_name - the name of the profile
+     * @param inputs       - the player inputs
+     * @param difficulty   - the difficulty of the game, can be "EASY", "MEDIUM" or "HARD"
+     * @param ack          - the sequence number of the latest snapshot the client
+     *                     received, 0 to get a full snapshot
+     * @return - the encoded snapshot
+     */
+    @CrossOrigin(origins = "*")
+    @GetMapping(value = "/updateGame", params = "format=binary",
+            produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public byte[] updateGameSnapshot(
+            @RequestParam(value = "dt", defaultValue = "0") float dt,
+            @RequestParam(value = "username", defaultValue = "") String username,
+            @RequestParam(value = "profile_name", defaultValue = "") String profile_name,
+            @RequestParam(value = "inputs", defaultValue = "") String inputs,
+            @RequestParam(value = "difficulty", defaultValue = "MEDIUM") String difficulty,
+            @RequestParam(value = "ack", defaultValue = "0") int ack) {
+        String key = username + " " + profile_name;
+        GameSession session = gameSessions.getOrCreate(key,
+                () -> new GameSession(new GameManager(Difficulty.valueOf(difficulty))));
+        return session.pollSnapshot(Spaceship.Input.parseMask(inputs), ack);
     }
 
     /**
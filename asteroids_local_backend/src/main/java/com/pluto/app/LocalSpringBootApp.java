@@ -7,9 +7,10 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  * This class contains code for starting the Spring Boot Framework and
  * Application Web Server for the local backend. It handles the configuration
  * of Spring Beans, manages command-line arguments, and launches the
- * application.
+ * application. Components are picked up from every com.pluto package, e.g.
+ * the DatabaseClient in com.pluto.database.
  */
-@SpringBootApplication
+@SpringBootApplication(scanBasePackages = "com.pluto")
 public class LocalSpringBootApp {
     /**
      * Starts the Spring Boot Framework and Web Server for the local backend on
@@ -0,0 +1,375 @@
+package com.pluto.app;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import com.pluto.database.LeaderboardCache;
+import com.pluto.database.LeaderboardRowHandler;
+import com.pluto.game.Difficulty;
+import com.pluto.game.GameManager;
+import com.pluto.game.Spaceship;
+
+import jakarta.annotation.PreDestroy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+/**
+ * A non-blocking variant of the game endpoints, served by Reactor Netty on
+ * its own port (asteroids.reactive.port, off when 0) next to the servlet
+ * endpoints on 8080. Requests are handled on a few event-loop threads, so an
+ * open connection costs no thread while it waits, and one node can hold many
+ * thousands of connected players.
+ *
+ * The endpoints share the GameSessionRegistry with LocalController, so a game
+ * started on one port can be played on the other:
+ * /api/newGame     - as LocalController.newGame
+ * /api/updateGame  - as LocalController.updateGame
+ *                    Polling waits on the game's lock, which a tick may
+ *                    hold, and registering a new game may open its replay
+ *                    log, so both run on a scheduler, never on the event loop.
+ * /api/leaderboard - as LocalController.getLeaderboard. Reading a board
+ *                    that is not loaded yet waits on the database, so every
+ *                    read runs on a bounded scheduler, never on the event loop.
+ * /api/gameStream  - starts a new game, with the same parameters as
+ *                    /api/newGame, and streams its json state after every
+ *                    tick as server-sent events. A client that falls behind
+ *                    misses frames rather than queueing them. The stream ends
+ *                    when the game is ended elsewhere or is evicted to make
+ *                    room for other games.
+ * /api/gameInputs  - reports the inputs held in a streamed game, with the
+ *                    username, profile_name and inputs of /api/updateGame.
+ *                    Like polling, it waits on the game's lock, so it runs
+ *                    on the same scheduler.
+ */
+@Component
+public class ReactiveGameServer {
+    /**
+     * Streams the top entries of a leaderboard, @see LeaderboardCache.
+     */
+    @FunctionalInterface
+    interface Leaderboard {
+        /**
+         * @param n          - number of entries
+         * @param score      - the column to sort by
+         * @param difficulty - the difficulty to filter by
+         * @param handler    - receives the entries, best first
+         * @return - Empty string if successful, error message otherwise
+         */
+        String streamTopScores(int n, String score, String difficulty, LeaderboardRowHandler handler)
+                throws IOException;
+    }
+
+    /* Holds the games of all players */
+    private final GameSessionRegistry gameSessions;
+
+    /* The leaderboards, read off the event loop */
+    private final Leaderboard leaderboard;
+
+    /* Runs the work that may block on the database */
+    private final Scheduler dbScheduler;
+
+    /*
+     * Creates, polls and removes games, which may block on their locks or
+     * their replay files
+     */
+    private final Scheduler sessionScheduler;
+
+    /* The endpoints */
+    private final RouterFunction<ServerResponse> routes;
+
+    /* The running server, null if the reactive endpoints are off */
+    private DisposableServer server;
+
+    /* Number of open game streams and of frames a slow client missed */
+    private final AtomicInteger streams = new AtomicInteger();
+    private final AtomicLong droppedFrames = new AtomicLong();
+
+    /* Number of requests rejected because their scheduler was full */
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * Constructor for the ReactiveGameServer. Starts serving on the given
+     * port unless it is 0.
+     *
+     * @param gameSessions      - the registry holding every player's game
+     * @param leaderboardCache  - the leaderboards kept in memory
+     * @param port              - the port to serve on, 0 to serve nothing
+     * @param dbThreads         - the most threads waiting on the database
+     * @param dbQueueCapacity   - the most reads waiting for one of them
+     */
+    @Autowired
+    public ReactiveGameServer(GameSessionRegistry gameSessions, LeaderboardCache leaderboardCache,
+            @Value("${asteroids.reactive.port:0}") int port,
+            @Value("${asteroids.reactive.dbThreads:10}") int dbThreads,
+            @Value("${asteroids.reactive.dbQueueCapacity:1000}") int dbQueueCapacity) {
+        this(gameSessions, leaderboardCache::streamTopScores, dbThreads, dbQueueCapacity);
+        if (port > 0) {
+            server = HttpServer.create()
+                    .port(port)
+                    .handle(new ReactorHttpHandlerAdapter(RouterFunctions.toHttpHandler(routes)))
+                    .bindNow();
+        }
+    }
+
+    /**
+     * Constructor for a ReactiveGameServer that does not serve, so that its
+     * routes can be called directly.
+     *
+     * @param gameSessions    - the registry holding every player's game
+     * @param leaderboard     - streams the leaderboards
+     * @param dbThreads       - the most threads waiting on the database
+     * @param dbQueueCapacity - the most reads waiting for one of them
+     */
+    ReactiveGameServer(GameSessionRegistry gameSessions, Leaderboard leaderboard, int dbThreads,
+            int dbQueueCapacity) {
+        if (dbThreads <= 0 || dbQueueCapacity <= 0) {
+            throw new IllegalArgumentException("Database scheduler limits must be positive");
+        }
+        this.gameSessions = gameSessions;
+        this.leaderboard = leaderboard;
+        this.dbScheduler = Schedulers.newBoundedElastic(dbThreads, dbQueueCapacity, "reactive-db", 60, true);
+        this.sessionScheduler = Schedulers.boundedElastic();
+        this.routes = RouterFunctions.route()
+                .GET("/api/newGame", this::newGame)
+                .GET("/api/updateGame", this::updateGame)
+                .GET("/api/leaderboard", this::leaderboard)
+                .GET("/api/gameStream", this::gameStream)
+                .GET("/api/gameInputs", this::gameInputs)
+                .build();
+    }
+
+    /**
+     * Returns the endpoints of the server.
+     *
+     * @return - the router of every reactive endpoint
+     */
+    RouterFunction<ServerResponse> routes() {
+        return routes;
+    }
+
+    /**
+     * Converts the server statistics to a json formatted string.
+     *
+     * @return - a json object with the following attributes:
+     *         port - int, the port served on, 0 if off
+     *         streams - int, open game streams
+     *         dropped_frames - int, frames a slow client missed
+     *         rejected - int, requests rejected as busy
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"port\":").append(server == null ? 0 : server.port()).append(",")
+                .append("\"streams\":").append(streams.get()).append(",")
+                .append("\"dropped_frames\":").append(droppedFrames.get()).append(",")
+                .append("\"rejected\":").append(rejected.get())
+                .append("}");
+        return json.toString();
+    }
+
+    /**
+     * Stops serving when the application shuts down.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (server != null) {
+            server.disposeNow();
+        }
+        dbScheduler.dispose();
+    }
+
+    /**
+     * Starts a new game, @see LocalController.newGame. The game is created on
+     * the session scheduler.
+     */
+    private Mono<ServerResponse> newGame(ServerRequest request) {
+        Difficulty difficulty = GameSocketHandler.parseDifficulty(request.queryParam("difficulty").orElse(null));
+        if (difficulty == null) {
+            return json(generateResponse(false, "Invalid difficulty"));
+        }
+        String seed = request.queryParam("seed").orElse("");
+        Long parsedSeed = null;
+        if (!seed.equals("")) {
+            try {
+                parsedSeed = Long.parseLong(seed);
+            } catch (NumberFormatException e) {
+                return json(generateResponse(false, "Invalid seed"));
+            }
+        }
+        String key = keyOf(request);
+        Long gameSeed = parsedSeed;
+        return offLoop(() -> {
+            GameManager gameManager = gameSeed == null
+                    ? new GameManager(difficulty)
+                    : new GameManager(difficulty, gameSeed);
+            gameSessions.put(key, new GameSession(gameManager));
+            return "{\"success\":\"true\",\"error\":\"\",\"seed\":\"" + gameManager.getSeed() + "\"}";
+        });
+    }
+
+    /**
+     * Reports the held inputs and returns the game state, @see
+     * LocalController.updateGame. Runs on the session scheduler, which also
+     * creates a missing game.
+     */
+    private Mono<ServerResponse> updateGame(ServerRequest request) {
+        String key = keyOf(request);
+        int inputs = Spaceship.Input.parseMask(request.queryParam("inputs").orElse(""));
+        Difficulty difficulty = GameSocketHandler.parseDifficulty(request.queryParam("difficulty").orElse(null));
+        return offLoop(() -> {
+            GameSession session = gameSessions.get(key);
+            if (session != null) {
+                return session.poll(inputs);
+            }
+            if (difficulty == null) {
+                return generateResponse(false, "Invalid difficulty");
+            }
+            return gameSessions.getOrCreate(key, () -> new GameSession(new GameManager(difficulty))).toJson();
+        });
+    }
+
+    /**
+     * Returns the top entries of a leaderboard, @see
+     * LocalController.getLeaderboard. Runs on the database scheduler.
+     */
+    private Mono<ServerResponse> leaderboard(ServerRequest request) {
+        int limit;
+        try {
+            limit = Integer.parseInt(request.queryParam("limit").orElse("10"));
+        } catch (NumberFormatException e) {
+            return json(generateResponse(false, "Invalid limit"));
+        }
+        String score = request.queryParam("score").orElse("score").toLowerCase();
+        String difficulty = request.queryParam("difficulty").orElse("ALL");
+        return Mono.fromCallable(() -> {
+            StringBuilder json = new StringBuilder("{\"leaderboard\":[");
+            String error = leaderboard.streamTopScores(limit, score, difficulty, entry -> {
+                if (json.charAt(json.length() - 1) != '[') {
+                    json.append(",");
+                }
+                entry.appendJson(json);
+            });
+            if (!error.equals("")) {
+                return generateResponse(false, "Failed to fetch leaderboard");
+            }
+            return json.append("], \"success\":true, \"error\":\"\"}").toString();
+        }).subscribeOn(dbScheduler)
+                .onErrorResume(RejectedExecutionException.class, e -> {
+                    rejected.incrementAndGet();
+                    return Mono.just(generateResponse(false, "Server is busy, please try again"));
+                })
+                .onErrorResume(IOException.class,
+                        e -> Mono.just(generateResponse(false, "Failed to fetch leaderboard")))
+                .flatMap(this::json);
+    }
+
+    /**
+     * Starts a new game and streams its state after every tick. The game is
+     * registered on the session scheduler when the client subscribes, and
+     * removed there when it disconnects.
+     */
+    private Mono<ServerResponse> gameStream(ServerRequest request) {
+        Difficulty difficulty = GameSocketHandler.parseDifficulty(request.queryParam("difficulty").orElse(null));
+        if (difficulty == null) {
+            return json(generateResponse(false, "Invalid difficulty"));
+        }
+        String key = keyOf(request);
+        // Best effort: a frame is dropped for a subscriber that has no demand
+        Sinks.Many<String> frames = Sinks.many().multicast().directBestEffort();
+        GameSession session = new GameSession(new GameManager(difficulty), frame -> {
+            if (frames.tryEmitNext(frame) == Sinks.EmitResult.FAIL_OVERFLOW) {
+                droppedFrames.incrementAndGet();
+            }
+        });
+        session.setOnEvicted(frames::tryEmitComplete);
+        Flux<String> stream = Flux.defer(() -> {
+            streams.incrementAndGet();
+            gameSessions.put(key, session);
+            return frames.asFlux();
+        }).subscribeOn(sessionScheduler).doFinally(signal -> {
+            streams.decrementAndGet();
+            session.setOnEvicted(null);
+            // A disconnect is signalled on the event loop
+            sessionScheduler.schedule(() -> gameSessions.remove(key, session));
+        });
+        return ok().contentType(MediaType.TEXT_EVENT_STREAM).body(stream, String.class);
+    }
+
+    /**
+     * Reports the inputs held in a streamed game. Runs on the session
+     * scheduler.
+     */
+    private Mono<ServerResponse> gameInputs(ServerRequest request) {
+        String key = keyOf(request);
+        int inputs = Spaceship.Input.parseMask(request.queryParam("inputs").orElse(""));
+        return offLoop(() -> {
+            GameSession session = gameSessions.get(key);
+            if (session == null) {
+                return generateResponse(false, "No game to send inputs to");
+            }
+            session.hold(inputs);
+            return generateResponse(true, "");
+        });
+    }
+
+    /**
+     * Runs work that may block on the session scheduler and responds with the
+     * json it returns, or with an error if the scheduler is full.
+     */
+    private Mono<ServerResponse> offLoop(Callable<String> work) {
+        return Mono.fromCallable(work).subscribeOn(sessionScheduler)
+                .onErrorResume(RejectedExecutionException.class, e -> {
+                    rejected.incrementAndGet();
+                    return Mono.just(generateResponse(false, "Server is busy, please try again"));
+                })
+                .flatMap(this::json);
+    }
+
+    /**
+     * Returns the player key "username profile_name" of a request.
+     */
+    private static String keyOf(ServerRequest request) {
+        return request.queryParam("username").orElse("") + " " + request.queryParam("profile_name").orElse("");
+    }
+
+    /**
+     * Starts a successful response that, like the servlet endpoints, may be
+     * read from any origin.
+     */
+    private static ServerResponse.BodyBuilder ok() {
+        return ServerResponse.ok().header("Access-Control-Allow-Origin", "*");
+    }
+
+    /**
+     * Responds with a json body.
+     */
+    private Mono<ServerResponse> json(String body) {
+        return ok().contentType(MediaType.APPLICATION_JSON).bodyValue(body);
+    }
+
+    /**
+     * Generates a JSON formatted string representing a response message,
+     * @see LocalController.generateResponse.
+     */
+    private static String generateResponse(boolean status, String errorMsg) {
+        return "{\"success\":\"" + status + "\","
+                + "\"error\":\"" + errorMsg + "\"}";
+    }
+}
@@ -0,0 +1,55 @@
+package com.pluto.app;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records every new game to a replay log when asteroids.replay.dir is set,
+ * so that slow or buggy sessions can be replayed offline, e.g. with the
+ * ReplayRunner of the benchmarks. Recording is off by default.
+ *
+ * @see com.pluto.game.ReplayLog - for the log format
+ */
+@Component
+public class ReplayRecorder {
+    /* The directory the logs are written to, null if recording is off */
+    private final Path directory;
+
+    /* Makes the names of logs created in the same millisecond unique */
+    private final AtomicLong counter = new AtomicLong();
+
+    /**
+     * Constructor for the ReplayRecorder.
+     *
+     * @param directory - the directory to write the logs to, empty to record
+     *                  nothing
+     */
+    public ReplayRecorder(@Value("${asteroids.replay.dir:}") String directory) {
+        this.directory = directory.isEmpty() ? null : Paths.get(directory);
+    }
+
+    /**
+     * Starts recording a session that has not been stepped yet, if recording
+     * is on. A log that cannot be created is skipped, the game is unaffected.
+     *
+     * @param session - the new session
+     */
+    void start(GameSession session) {
+        if (directory == null) {
+            return;
+        }
+        Path file = directory.resolve(System.currentTimeMillis() + "-" + counter.incrementAndGet() + ".replay");
+        try {
+            Files.createDirectories(directory);
+            session.startRecording(file);
+        } catch (IOException | IllegalStateException e) {
+            System.out.println("Could not record the game to " + file + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.pluto.app;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.pluto.database.Authenticator;
+import com.pluto.database.DatabaseClient;
+import com.pluto.database.LeaderboardCache;
+import com.pluto.database.ScoreIngestionQueue;
+
+/**
+ * A controller reporting how the local backend is performing, for sizing and
+ * monitoring. All requests are located on localhost:8080/api/
+ */
+@RestController
+@RequestMapping("/api")
+public class ServerStatsController {
+    /* Steps the games and records how long it takes */
+    private final GameTickScheduler tickScheduler;
+
+    /* Holds the game sessions */
+    private final GameSessionRegistry gameSessions;
+
+    /* The client to the user database and its connection pool */
+    private final DatabaseClient dbClient;
+
+    /* Checks and hashes passwords */
+    private final Authenticator authenticator;
+
+    /* The leaderboards kept in memory */
+    private final LeaderboardCache leaderboardCache;
+
+    /* The queue uploaded scores wait in */
+    private final ScoreIngestionQueue scoreQueue;
+
+    /* Serves the non-blocking game endpoints */
+    private final ReactiveGameServer reactiveServer;
+
+    /**
+     * Constructor for the ServerStatsController.
+     *
+     * @param tickScheduler    - the scheduler stepping the games
+     * @param gameSessions     - the registry holding the game sessions
+     * @param dbClient         - the client to the user database
+     * @param authenticator    - checks and hashes passwords
+     * @param leaderboardCache - the leaderboards kept in memory
+     * @param scoreQueue       - the queue uploaded scores wait in
+     * @param reactiveServer   - serves the non-blocking game endpoints
+     */
+    public ServerStatsController(GameTickScheduler tickScheduler, GameSessionRegistry gameSessions,
+            DatabaseClient dbClient, Authenticator authenticator, LeaderboardCache leaderboardCache,
+            ScoreIngestionQueue scoreQueue, ReactiveGameServer reactiveServer) {
+        this.tickScheduler = tickScheduler;
+        this.gameSessions = gameSessions;
+        this.dbClient = dbClient;
+        this.authenticator = authenticator;
+        this.leaderboardCache = leaderboardCache;
+        this.scoreQueue = scoreQueue;
+        this.reactiveServer = reactiveServer;
+    }
+
+    /**
+     * This method reports server statistics on
+     * localhost:8080/api/serverStats.
+     *
+     * @return - a json formatted report with the following attributes:
+     * success - boolean
+     * error - string
+     * tick - the game tick statistics, @see GameTickScheduler.toJson()
+     * sessions - the session statistics, @see GameSessionRegistry.toJson()
+     * database - the connection pool metrics, @see DatabaseClient.poolStatsJson()
+     * auth - the password hashing statistics, @see Authenticator.toJson()
+     * leaderboard - the leaderboard cache statistics, @see LeaderboardCache.toJson()
+     * scores - the score queue statistics, @see ScoreIngestionQueue.toJson()
+     * reactive - the reactive endpoint statistics, @see ReactiveGameServer.toJson()
+     * gc - the garbage collections of the server since it started
+     *    collections - int, number of collections
+     *    pause_millis - int, total time spent collecting
+     */
+    @CrossOrigin(origins = "*")
+    @GetMapping("/serverStats")
+    public String serverStats() {
+        StringBuilder json = new StringBuilder("{\"success\":true, \"error\":\"\"");
+        json.append(", \"tick\":").append(tickScheduler.toJson());
+        json.append(", \"sessions\":").append(gameSessions.toJson());
+        json.append(", \"database\":").append(dbClient.poolStatsJson());
+        json.append(", \"auth\":").append(authenticator.toJson());
+        json.append(", \"leaderboard\":").append(leaderboardCache.toJson());
+        json.append(", \"scores\":").append(scoreQueue.toJson());
+        json.append(", \"reactive\":").append(reactiveServer.toJson());
+        json.append(", \"gc\":").append(gcJson());
+        json.append("}");
+        return json.toString();
+    }
+
+    /**
+     * Sums the collections of every garbage collector of this JVM.
+     */
+    private static String gcJson() {
+        long collections = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            // -1 if a collector does not report it
+            collections += Math.max(0, collector.getCollectionCount());
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return "{\"collections\":" + collections + ",\"pause_millis\":" + millis + "}";
+    }
+}
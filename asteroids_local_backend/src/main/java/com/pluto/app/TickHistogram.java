@@ -0,0 +1,122 @@
+package com.pluto.app;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations in microseconds with a fixed memory footprint.
+ * Durations are counted in log-linear buckets: every power of two is split
+ * into SUB_BUCKETS equal buckets, so a reported percentile is within about
+ * 12% of the true value. Recording never allocates and may happen on one
+ * thread while another thread reads percentiles.
+ */
+class TickHistogram {
+    /* Number of buckets each power of two is split into */
+    private static final int SUB_BUCKETS = 8;
+
+    /* Number of powers of two covered, up to about 2^31 microseconds */
+    private static final int MAGNITUDES = 32;
+
+    /* Number of recorded durations in each bucket */
+    private final AtomicLongArray counts = new AtomicLongArray(MAGNITUDES * SUB_BUCKETS);
+
+    /* Number of recorded durations and the largest one */
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a duration.
+     *
+     * @param micros - the duration in microseconds
+     */
+    void record(long micros) {
+        if (micros < 0) {
+            micros = 0;
+        }
+        counts.incrementAndGet(bucketOf(micros));
+        total.incrementAndGet();
+        max.accumulateAndGet(micros, Math::max);
+    }
+
+    /**
+     * Adds every duration recorded by another histogram to this one.
+     *
+     * @param other - the histogram to add
+     */
+    void add(TickHistogram other) {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.addAndGet(i, other.counts.get(i));
+        }
+        total.addAndGet(other.total.get());
+        max.accumulateAndGet(other.max.get(), Math::max);
+    }
+
+    /**
+     * Returns the number of recorded durations.
+     *
+     * @return - the number of recorded durations
+     */
+    long count() {
+        return total.get();
+    }
+
+    /**
+     * Returns the largest recorded duration.
+     *
+     * @return - the largest duration in microseconds, 0 if none was recorded
+     */
+    long max() {
+        return max.get();
+    }
+
+    /**
+     * Returns an upper bound of the given percentile of the recorded
+     * durations.
+     *
+     * @param percentile - the percentile, between 0 and 100
+     * @return - the upper bound of the bucket holding the percentile in
+     *         microseconds, 0 if nothing was recorded
+     */
+    long percentile(double percentile) {
+        long recorded = total.get();
+        if (recorded == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(recorded * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Returns the index of the bucket counting the given duration.
+     */
+    private static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(micros);
+        // The sub bucket is given by the bits just below the highest one
+        int sub = (int) (micros >>> (magnitude - 3)) & (SUB_BUCKETS - 1);
+        int bucket = (magnitude - 2) * SUB_BUCKETS + sub;
+        return Math.min(bucket, MAGNITUDES * SUB_BUCKETS - 1);
+    }
+
+    /**
+     * Returns the largest duration counted by the given bucket.
+     */
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int magnitude = bucket / SUB_BUCKETS + 2;
+        int sub = bucket % SUB_BUCKETS;
+        long width = 1L << (magnitude - 3);
+        return (1L << magnitude) + (sub + 1) * width - 1;
+    }
+}
@@ -0,0 +1,36 @@
+package com.pluto.app;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+/**
+ * Registers the WebSocket endpoints of the local backend.
+ */
+@Configuration
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+    /* Streams games to clients, see GameSocketHandler for the protocol */
+    private final GameSocketHandler gameSocketHandler;
+
+    /**
+     * Constructor for the WebSocketConfig.
+     *
+     * @param gameSocketHandler - the handler of /api/gameSocket
+     */
+    public WebSocketConfig(GameSocketHandler gameSocketHandler) {
+        this.gameSocketHandler = gameSocketHandler;
+    }
+
+    /**
+     * Registers /api/gameSocket. Like the REST endpoints, it accepts any
+     * origin.
+     *
+     * @param registry - the registry to add the handler to
+     */
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(gameSocketHandler, "/api/gameSocket").setAllowedOrigins("*");
+    }
+}
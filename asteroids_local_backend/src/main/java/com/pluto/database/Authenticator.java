@@ -0,0 +1,286 @@
+package com.pluto.database;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.mindrot.jbcrypt.BCrypt;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Logs users in and registers them, running the BCrypt work on a small,
+ * bounded pool of its own. Each hash costs tens of milliseconds of CPU, so a
+ * burst of logins would otherwise hold the request threads that serve game
+ * frames. When the pool and its queue are full, requests are rejected at once
+ * with a busy error instead of queueing up.
+ *
+ * Passwords are hashed with the configured cost. A user whose stored hash has
+ * a different cost is rehashed with the configured one after a successful
+ * login, so changing the cost takes effect as users log in.
+ */
+@Component
+public class Authenticator {
+    /* The error for a wrong user name or password */
+    private static final String INCORRECT = "Username or password is incorrect";
+
+    /* The error when the pool is full */
+    private static final String BUSY = "Server is busy, please try again";
+
+    /* The client the password hashes are stored with */
+    private final DatabaseClient dbClient;
+
+    /* The threads the hashes are computed on */
+    private final ThreadPoolExecutor executor;
+
+    /* The BCrypt cost (log2 rounds) new hashes are made with */
+    private final int cost;
+
+    /* Number of hashes computed, and their total and longest time */
+    private final AtomicLong hashes = new AtomicLong();
+    private final AtomicLong hashNanos = new AtomicLong();
+    private final AtomicLong maxHashNanos = new AtomicLong();
+
+    /* Number of database calls, and their total and longest time */
+    private final AtomicLong dbCalls = new AtomicLong();
+    private final AtomicLong dbNanos = new AtomicLong();
+    private final AtomicLong maxDbNanos = new AtomicLong();
+
+    /* Number of requests rejected for a full pool, and of hashes upgraded */
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong rehashes = new AtomicLong();
+
+    /**
+     * Constructor for the Authenticator.
+     *
+     * @param dbClient      - the client the password hashes are stored with
+     * @param threads       - threads computing hashes, 0 for half the cores
+     * @param queueCapacity - the most requests waiting for a thread
+     * @param cost          - the BCrypt cost of new hashes, 4 to 31
+     */
+    @Autowired
+    public Authenticator(DatabaseClient dbClient,
+            @Value("${asteroids.auth.threads:0}") int threads,
+            @Value("${asteroids.auth.queueCapacity:64}") int queueCapacity,
+            @Value("${asteroids.auth.bcryptCost:10}") int cost) {
+        if (cost < 4 || cost > 31) {
+            throw new IllegalArgumentException("The BCrypt cost must be between 4 and 31");
+        }
+        if (threads <= 0) {
+            // Leave the other half of the cores to the game ticks
+            threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        }
+        this.dbClient = dbClient;
+        this.cost = cost;
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "password-hasher-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Logs a user in. The password hash is fetched on the calling thread and
+     * checked on the pool.
+     *
+     * @param username - username of the User
+     * @param password - password of the User
+     * @return - completes with an error message, which is empty if the login
+     *         succeeded
+     */
+    public CompletableFuture<String> login(String username, String password) {
+        long start = System.nanoTime();
+        String storedHash = dbClient.getPasswordHash(username);
+        recordDb(start);
+        if (storedHash == null) {
+            return CompletableFuture.completedFuture("Error logging in");
+        }
+        if (storedHash.equals("")) {
+            return CompletableFuture.completedFuture(INCORRECT);
+        }
+        return submit(() -> {
+            if (!checkPassword(password, storedHash)) {
+                return INCORRECT;
+            }
+            if (costOf(storedHash) != cost) {
+                String rehashed = hash(password);
+                String error = store(() -> dbClient.updatePasswordHash(username, rehashed));
+                if (error.equals("")) {
+                    rehashes.incrementAndGet();
+                } else {
+                    // The old hash still works, so the login succeeds anyway
+                    System.out.println("Could not rehash the password of " + username + ": " + error);
+                }
+            }
+            return "";
+        });
+    }
+
+    /**
+     * Registers a user. Taken user names are rejected on the calling thread,
+     * before any hashing; the password is hashed and the user inserted on the
+     * pool.
+     *
+     * @param username - username of the new User
+     * @param password - password of the new User
+     * @return - completes with an error message, which is empty if the user
+     *         was created
+     */
+    public CompletableFuture<String> register(String username, String password) {
+        long start = System.nanoTime();
+        String storedHash = dbClient.getPasswordHash(username);
+        recordDb(start);
+        if (storedHash == null) {
+            return CompletableFuture.completedFuture("Error creating user");
+        }
+        if (!storedHash.equals("")) {
+            return CompletableFuture.completedFuture("User already exists");
+        }
+        return submit(() -> {
+            String hashedPassword = hash(password);
+            return store(() -> dbClient.insertUser(username, hashedPassword));
+        });
+    }
+
+    /**
+     * Converts the authentication statistics to a json formatted string.
+     *
+     * @return - a json object with the following attributes:
+     *         cost - int, the BCrypt cost of new hashes
+     *         threads - int, threads computing hashes
+     *         queue_depth - int, requests waiting for a thread
+     *         rejected - int, requests rejected because the pool was full
+     *         hashes - int, hashes computed or checked
+     *         hash_millis_avg - float, mean time to compute a hash
+     *         hash_millis_max - float, longest time to compute a hash
+     *         db_calls - int, database calls made
+     *         db_millis_avg - float, mean time of a database call
+     *         db_millis_max - float, longest time of a database call
+     *         rehashes - int, stored hashes upgraded to the configured cost
+     */
+    public String toJson() {
+        long hashCount = hashes.get();
+        long dbCount = dbCalls.get();
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"cost\":").append(cost).append(",")
+                .append("\"threads\":").append(executor.getMaximumPoolSize()).append(",")
+                .append("\"queue_depth\":").append(executor.getQueue().size()).append(",")
+                .append("\"rejected\":").append(rejected.get()).append(",")
+                .append("\"hashes\":").append(hashCount).append(",")
+                .append("\"hash_millis_avg\":").append(hashCount == 0 ? 0 : hashNanos.get() / hashCount / 1e6)
+                .append(",")
+                .append("\"hash_millis_max\":").append(maxHashNanos.get() / 1e6).append(",")
+                .append("\"db_calls\":").append(dbCount).append(",")
+                .append("\"db_millis_avg\":").append(dbCount == 0 ? 0 : dbNanos.get() / dbCount / 1e6).append(",")
+                .append("\"db_millis_max\":").append(maxDbNanos.get() / 1e6).append(",")
+                .append("\"rehashes\":").append(rehashes.get())
+                .append("}");
+        return json.toString();
+    }
+
+    /**
+     * Stops the hashing threads.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Reads the cost a BCrypt hash was made with, e.g. 10 for "$2a$10$...".
+     *
+     * @param hash - the hash
+     * @return - the cost, or -1 if the hash is malformed
+     */
+    static int costOf(String hash) {
+        if (hash.length() < 7 || hash.charAt(0) != '$' || hash.charAt(6) != '$') {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(hash.substring(4, 6));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Runs a task on the pool, or rejects it at once if the pool is full.
+     */
+    private CompletableFuture<String> submit(Supplier<String> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            return CompletableFuture.completedFuture(BUSY);
+        }
+    }
+
+    /**
+     * Hashes a password with the configured cost and records the time.
+     */
+    private String hash(String password) {
+        long start = System.nanoTime();
+        try {
+            return BCrypt.hashpw(password, BCrypt.gensalt(cost));
+        } finally {
+            recordHash(start);
+        }
+    }
+
+    /**
+     * Checks a password against a stored hash and records the time. A
+     * malformed hash matches no password.
+     */
+    private boolean checkPassword(String password, String storedHash) {
+        long start = System.nanoTime();
+        try {
+            return BCrypt.checkpw(password, storedHash);
+        } catch (IllegalArgumentException e) {
+            return false;
+        } finally {
+            recordHash(start);
+        }
+    }
+
+    /**
+     * Runs a database call and records the time.
+     */
+    private String store(Supplier<String> call) {
+        long start = System.nanoTime();
+        try {
+            return call.get();
+        } finally {
+            recordDb(start);
+        }
+    }
+
+    /**
+     * Records a hash that started at the given time.
+     */
+    private void recordHash(long start) {
+        long elapsed = System.nanoTime() - start;
+        hashes.incrementAndGet();
+        hashNanos.addAndGet(elapsed);
+        maxHashNanos.accumulateAndGet(elapsed, Math::max);
+    }
+
+    /**
+     * Records a database call that started at the given time.
+     */
+    private void recordDb(long start) {
+        long elapsed = System.nanoTime() - start;
+        dbCalls.incrementAndGet();
+        dbNanos.addAndGet(elapsed);
+        maxDbNanos.accumulateAndGet(elapsed, Math::max);
+    }
+}
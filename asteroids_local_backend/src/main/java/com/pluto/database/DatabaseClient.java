@@ -1,37 +1,201 @@
 package com.pluto.database;
 
+import java.io.IOException;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
 import org.mindrot.jbcrypt.BCrypt;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 
 /**
- * This client class contains static methods to interact with the MySQL
- * database to fetch and create user data.
+ * This client class contains methods to interact with the MySQL database to
+ * fetch and create user data.
+ *
+ * It is a Spring singleton backed by a connection pool, configured by the
+ * spring.datasource properties in application.properties. Every method borrows
+ * a connection from the pool and returns it when done, so requests no longer
+ * pay for a TCP and authentication handshake each.
  */
+@Component
 public class DatabaseClient {
-    private String url;
-    private String dbPass;
-    private String dbUser;
+    /* The pool connections are borrowed from */
+    private final DataSource dataSource;
+
+    /*
+     * Adds one game to the statistics of a profile, for its difficulty and for
+     * the ALL rollup. The parameters are profile_id, difficulty, score, level
+     * and duration, once for each row.
+     */
+    private static final String UPSERT_PROFILE_STATS =
+            "INSERT INTO ProfileStats " +
+                "(profile_id, difficulty, highest_score, highest_level, longest_duration, total_games) " +
+            "VALUES (?, ?, ?, ?, ?, 1), (?, ?, ?, ?, ?, 1) " +
+            "ON DUPLICATE KEY UPDATE " +
+                "highest_score = GREATEST(highest_score, VALUES(highest_score)), " +
+                "highest_level = GREATEST(highest_level, VALUES(highest_level)), " +
+                "longest_duration = GREATEST(longest_duration, VALUES(longest_duration)), " +
+                "total_games = total_games + 1";
+
+    /*
+     * The statistics of a profile for one difficulty. The parameters are
+     * difficulty, user_name and profile_name. A profile without games has no
+     * statistics row yet, which reads as zeros.
+     */
+    static final String STATS_QUERY =
+            "SELECT COALESCE(ps.highest_score, 0) AS highest_score, " +
+                   "COALESCE(ps.highest_level, 0) AS highest_level, " +
+                   "COALESCE(ps.longest_duration, 0) AS highest_duration, " +
+                   "COALESCE(ps.total_games, 0) AS games_played " +
+                "FROM Users u " +
+                "JOIN Profiles p ON p.user_id = u.user_id " +
+                "LEFT JOIN ProfileStats ps " +
+                    "ON ps.profile_id = p.profile_id AND ps.difficulty = ? " +
+                "WHERE u.user_name = ? AND p.profile_name = ?";
+
+    /*
+     * Returned by uploadScores when the database could not be reached, so the
+     * scores can be kept and uploaded again later.
+     */
+    public static final String UNAVAILABLE = "Database unavailable";
+
+    /* Number of connections borrowed, and the total and longest wait for one */
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    /*
+     * The ids of users by user name, and of profiles by "user_id
+     * profile_name". Names are resolved on nearly every call and rarely
+     * change, so they are only looked up again when they expire or are
+     * removed by renameProfile, deleteProfile or createUser.
+     */
+    private final IdCache userIds;
+    private final IdCache profileIds;
 
     /**
-     * Constructor for the DatabaseClient. Note that url is meant to be a
-     * jdbc connection to a MySql database. An example url would be
-     * "jdbc:mysql://localhost:53346" which is the default.
+     * Constructor for the DatabaseClient.
+     *
+     * @param dataSource        - the connection pool to the Users database
+     * @param idCacheSize       - the most user ids, and profile ids, cached
+     * @param idCacheTtlSeconds - how long a cached id is used
+     */
+    @Autowired
+    public DatabaseClient(DataSource dataSource,
+            @Value("${asteroids.db.idCacheSize:10000}") int idCacheSize,
+            @Value("${asteroids.db.idCacheTtlSeconds:600}") int idCacheTtlSeconds) {
+        this.dataSource = dataSource;
+        this.userIds = new IdCache(idCacheSize, TimeUnit.SECONDS.toNanos(idCacheTtlSeconds));
+        this.profileIds = new IdCache(idCacheSize, TimeUnit.SECONDS.toNanos(idCacheTtlSeconds));
+    }
+
+    /**
+     * Constructor for the DatabaseClient with the default id cache.
+     *
+     * @param dataSource - the connection pool to the Users database
+     */
+    public DatabaseClient(DataSource dataSource) {
+        this(dataSource, 10000, 600);
+    }
+
+    /**
+     * Constructor for a DatabaseClient with its own connection pool, for use
+     * outside of Spring. Note that url is meant to be a jdbc connection to a
+     * MySql server, e.g. "jdbc:mysql://localhost:3306"; the Users database is
+     * appended to it.
      * 
      * @param url    - url to use for the JDBC connection
      * @param dbUser - username to the database
      * @param dbPass - password to the database
      */
     public DatabaseClient(String url, String dbUser, String dbPass) {
-        this.url = url;
-        this.dbUser = dbUser;
-        this.dbPass = dbPass;
+        this(createPool(url + "/Users?cachePrepStmts=true&useServerPrepStmts=true", dbUser, dbPass));
     }
 
     /**
-     * Default constructor for the DatabaseClient.
+     * Creates a small connection pool.
      */
-    public DatabaseClient() {
-        this("jdbc:mysql://user_database:3306", "root", "password");
+    private static DataSource createPool(String url, String dbUser, String dbPass) {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(url);
+        config.setUsername(dbUser);
+        config.setPassword(dbPass);
+        config.setMaximumPoolSize(4);
+        return new HikariDataSource(config);
+    }
+
+    /**
+     * Borrows a connection from the pool and records how long it took. The
+     * connection must be closed to return it to the pool.
+     *
+     * @return - a connection to the Users database
+     * @throws SQLException - if no connection is available in time
+     */
+    private Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return dataSource.getConnection();
+        } finally {
+            long waited = System.nanoTime() - start;
+            acquisitions.incrementAndGet();
+            totalWaitNanos.addAndGet(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+        }
+    }
+
+    /**
+     * Converts the connection pool metrics to a json formatted string.
+     *
+     * @return - a json object with the following attributes:
+     *         active - int, connections in use
+     *         idle - int, connections waiting in the pool
+     *         total - int, open connections
+     *         waiting - int, threads waiting for a connection
+     *         acquisitions - int, connections borrowed so far
+     *         wait_micros_avg - int, average wait for a connection
+     *         wait_micros_max - int, longest wait for a connection
+     *         id_cache_hits - int, user and profile ids found in the cache
+     *         id_cache_misses - int, user and profile ids looked up
+     */
+    public String poolStatsJson() {
+        int active = 0;
+        int idle = 0;
+        int total = 0;
+        int waiting = 0;
+        if (dataSource instanceof HikariDataSource) {
+            // Null until the pool has been started by the first connection
+            HikariPoolMXBean pool = ((HikariDataSource) dataSource).getHikariPoolMXBean();
+            if (pool != null) {
+                active = pool.getActiveConnections();
+                idle = pool.getIdleConnections();
+                total = pool.getTotalConnections();
+                waiting = pool.getThreadsAwaitingConnection();
+            }
+        }
+        long count = acquisitions.get();
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"active\":").append(active).append(",")
+                .append("\"idle\":").append(idle).append(",")
+                .append("\"total\":").append(total).append(",")
+                .append("\"waiting\":").append(waiting).append(",")
+                .append("\"acquisitions\":").append(count).append(",")
+                .append("\"wait_micros_avg\":").append(count == 0 ? 0 : totalWaitNanos.get() / count / 1000)
+                .append(",")
+                .append("\"wait_micros_max\":").append(maxWaitNanos.get() / 1000).append(",")
+                .append("\"id_cache_hits\":").append(userIds.getHits() + profileIds.getHits()).append(",")
+                .append("\"id_cache_misses\":").append(userIds.getMisses() + profileIds.getMisses())
+                .append("}");
+        return json.toString();
     }
 
     /**
@@ -49,7 +213,8 @@ public class DatabaseClient {
     }
 
     /**
-     * Method to create a user into the database.
+     * Method to create a user into the database. Hashes the password on the
+     * calling thread; the server uses the Authenticator instead.
      *
      * @param username - username of the new User
      * @param password - password of the new User
@@ -57,33 +222,39 @@ public class DatabaseClient {
      * 
      */
     public String createUser(String username, String password) {
-        // Try with resources making a connection to the MySql database
-        // If not, close the database connection
-        try (
-                // Append Database /Users to the end of the url
-                Connection dbConn = DriverManager.getConnection(
-                        url + "/Users", dbUser, dbPass);) {
-            // Here we create the user
-            // Check if the user already exists
-            PreparedStatement stmt = dbConn.prepareStatement(
-                    "SELECT * FROM Users WHERE user_name = ?");
-            stmt.setString(1, username);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return "User already exists";
-            }
-            
-            // Hash the password before storing it
-            String hashedPassword = hashPassword(password);
+        String storedHash = getPasswordHash(username);
+        if (storedHash == null) {
+            return "Error creating user";
+        }
+        if (!storedHash.equals("")) {
+            return "User already exists";
+        }
+        return insertUser(username, hashPassword(password));
+    }
 
-            // If the user does not exist, create the user
-            stmt = dbConn.prepareStatement(
-                    "INSERT INTO Users (user_name, user_password) VALUES (?, ?)");
+    /**
+     * Inserts a user with an already hashed password into the database.
+     *
+     * @param username       - username of the new User
+     * @param hashedPassword - BCrypt hash of the password of the new User
+     * @return - String error message, is empty if method is successful
+     */
+    public String insertUser(String username, String hashedPassword) {
+        try (
+                // Borrow a connection to the Users database from the pool
+                Connection dbConn = getConnection();
+                PreparedStatement stmt = dbConn.prepareStatement(
+                        "INSERT INTO Users (user_name, user_password) VALUES (?, ?)");) {
             stmt.setString(1, username);
             stmt.setString(2, hashedPassword);
             stmt.executeUpdate();
+            // Drop an id cached for a user of this name before a database reset
+            userIds.remove(username);
             return "";
 
+        } catch (SQLIntegrityConstraintViolationException e) {
+            // User names are unique
+            return "User already exists";
         } catch (SQLException e) {
             System.out.println(
                     "Could not establish connection to MySQL database.");
@@ -93,42 +264,74 @@ public class DatabaseClient {
     }
 
     /**
-     * Method to log in a user into the database.
+     * Method to log in a user into the database. Checks the password on the
+     * calling thread; the server uses the Authenticator instead.
      * 
      * @param username - username of the User
      * @param password - password of the User
      * @return - String error message, is empty if method is successful
      */
     public String loginUser(String username, String password) {
-        // Try with resources making a connection to the MySql database
-        // If not, close the database connection
+        String storedHash = getPasswordHash(username);
+        if (storedHash == null) {
+            return "Error logging in";
+        }
+        // Check the plaintext password against the stored hash
+        if (storedHash.equals("") || !BCrypt.checkpw(password, storedHash)) {
+            return "Username or password is incorrect";
+        }
+        return ""; // Success
+    }
+
+    /**
+     * Fetches the password hash of a user from the database.
+     * 
+     * @param username - username of the User
+     * @return - the BCrypt hash, an empty string if the user does not exist, or
+     *         null if an error occurs
+     */
+    public String getPasswordHash(String username) {
         try (
-            // Append Database /Users to the end of the url
-            Connection dbConn = DriverManager.getConnection(url + "/Users", dbUser, dbPass);
-        ) {
-            // Here we log in the user
-            // Check if the user exists and the password is correct
+            // Borrow a connection to the Users database from the pool
+            Connection dbConn = getConnection();
             PreparedStatement stmt = dbConn.prepareStatement(
                     "SELECT user_password FROM Users WHERE user_name = ?");
+        ) {
             stmt.setString(1, username);
-            ResultSet rs = stmt.executeQuery();
-    
-            if (rs.next()) {
-                String storedHash = rs.getString("user_password");
-                // Check the plaintext password against the stored hash
-                if (BCrypt.checkpw(password, storedHash)) {
-                    return ""; // Success
-                } else {
-                    return "Username or password is incorrect";
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getString("user_password");
                 }
             }
-    
-            return "Username or password is incorrect"; // User not found
-    
+            return ""; // User not found
+
         } catch (SQLException e) {
             System.out.println("Could not establish connection to MySQL database.");
             e.printStackTrace();
-            return "Error logging in";
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the password hash of a user, e.g. with one of a different
+     * cost.
+     * 
+     * @param username       - username of the User
+     * @param hashedPassword - the new BCrypt hash of the password
+     * @return - String error message, is empty if method is successful
+     */
+    public String updatePasswordHash(String username, String hashedPassword) {
+        try (
+                Connection dbConn = getConnection();
+                PreparedStatement stmt = dbConn.prepareStatement(
+                        "UPDATE Users SET user_password = ? WHERE user_name = ?");) {
+            stmt.setString(1, hashedPassword);
+            stmt.setString(2, username);
+            stmt.executeUpdate();
+            return "";
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return "Error updating password";
         }
     }
 
@@ -142,8 +345,7 @@ public class DatabaseClient {
      */
     public String createProfile(String username, String profile_name) {
         try (
-                Connection dbConn = DriverManager.getConnection(
-                        url + "/Users", dbUser, dbPass);) {
+                Connection dbConn = getConnection();) {
             // Get the user_id from the Users table
             int userId = getUserId(dbConn, username);
             if (userId == -1) {
@@ -195,8 +397,7 @@ public class DatabaseClient {
      */
     public String renameProfile(String username, String profile_name, String new_profile_name) {
         try (
-                Connection dbConn = DriverManager.getConnection(
-                        url + "/Users", dbUser, dbPass);) {
+                Connection dbConn = getConnection();) {
             // Get the user_id from the Users table
             int userId = getUserId(dbConn, username);
             if (userId == -1) {
@@ -233,6 +434,8 @@ public class DatabaseClient {
             stmt.setInt(2, userId);
             stmt.setString(3, profile_name);
             int rowsUpdated = stmt.executeUpdate();
+            profileIds.remove(userId + " " + profile_name);
+            profileIds.remove(userId + " " + new_profile_name);
             if (rowsUpdated > 0) {
                 return "";
             } else {
@@ -254,8 +457,7 @@ public class DatabaseClient {
      */
     public String deleteProfile(String username, String profile_name) {
         try (
-                Connection dbConn = DriverManager.getConnection(
-                        url + "/Users", dbUser, dbPass);) {
+                Connection dbConn = getConnection();) {
             // Get the user_id from the Users table
             int userId = getUserId(dbConn, username);
             if (userId == -1) {
@@ -280,6 +482,7 @@ public class DatabaseClient {
             stmt.setInt(1, userId);
             stmt.setString(2, profile_name);
             int rowsDeleted = stmt.executeUpdate();
+            profileIds.remove(userId + " " + profile_name);
             if (rowsDeleted > 0) {
                 return "";
             } else {
@@ -300,9 +503,8 @@ public class DatabaseClient {
      */
     public String[] getProfiles(String username) {
         try (
-                // Append Database /Users to the end of the url
-                Connection dbConn = DriverManager.getConnection(
-                        url + "/Users", dbUser, dbPass);) {
+                // Borrow a connection to the Users database from the pool
+                Connection dbConn = getConnection();) {
             // Get the user_id from the Users table
             int userId = getUserId(dbConn, username);
             if (userId == -1) {
@@ -348,8 +550,7 @@ public class DatabaseClient {
      */
     public String uploadScore(String username, String profile_name, String difficulty, int score, int level, int duration) {
         try (
-                Connection dbConn = DriverManager.getConnection(
-                        url + "/Users", dbUser, dbPass);) {
+                Connection dbConn = getConnection();) {
             // Get the user_id from the Users table
             int userId = getUserId(dbConn, username);
             if (userId == -1) {
@@ -362,15 +563,37 @@ public class DatabaseClient {
                 return "Profile does not exist";
             }
 
-            // Upload the score
-            PreparedStatement stmt = dbConn.prepareStatement(
-                    "INSERT INTO Scores (profile_id, difficulty, score, level, duration_seconds) VALUES (?, ?, ?, ?, ?)");
-            stmt.setInt(1, profile_id);
-            stmt.setString(2, difficulty);
-            stmt.setInt(3, score);
-            stmt.setInt(4, level);
-            stmt.setInt(5, duration);
-            stmt.executeUpdate();
+            // The score and the profile statistics are written in one
+            // transaction, so the statistics always match the scores
+            dbConn.setAutoCommit(false);
+            try (
+                    PreparedStatement insertScore = dbConn.prepareStatement(
+                            "INSERT INTO Scores (profile_id, difficulty, score, level, duration_seconds) VALUES (?, ?, ?, ?, ?)");
+                    PreparedStatement updateStats = dbConn.prepareStatement(UPSERT_PROFILE_STATS);) {
+                insertScore.setInt(1, profile_id);
+                insertScore.setString(2, difficulty);
+                insertScore.setInt(3, score);
+                insertScore.setInt(4, level);
+                insertScore.setInt(5, duration);
+                insertScore.executeUpdate();
+
+                // One row for the difficulty and one for the ALL rollup
+                int i = 1;
+                for (String statsDifficulty : new String[] { difficulty, "ALL" }) {
+                    updateStats.setInt(i++, profile_id);
+                    updateStats.setString(i++, statsDifficulty);
+                    updateStats.setInt(i++, score);
+                    updateStats.setInt(i++, level);
+                    updateStats.setInt(i++, duration);
+                }
+                updateStats.executeUpdate();
+                dbConn.commit();
+            } catch (SQLException e) {
+                dbConn.rollback();
+                throw e;
+            } finally {
+                dbConn.setAutoCommit(true);
+            }
 
             return "";
         } catch (SQLException e) {
@@ -380,13 +603,169 @@ public class DatabaseClient {
     }
 
     /**
-     * Fetches the user id from the database.
+     * Checks that a profile exists before a score is queued for it. Ids that
+     * are cached are not looked up again, so a player uploading scores
+     * regularly costs no query.
+     *
+     * @param username     - username of the user
+     * @param profile_name - profile name of the user
+     * @return - Empty string if the profile exists, error message otherwise
+     */
+    public String checkProfile(String username, String profile_name) {
+        int userId = userIds.get(username);
+        int profileId = userId == -1 ? -1 : profileIds.get(userId + " " + profile_name);
+        if (profileId != -1) {
+            return "";
+        }
+        try (
+                Connection dbConn = getConnection();) {
+            if (userId == -1) {
+                userId = queryUserId(dbConn, username);
+                userIds.put(username, userId);
+                if (userId == -1) {
+                    return "User does not exist";
+                }
+            }
+            profileId = queryProfileId(dbConn, userId, profile_name);
+            profileIds.put(userId + " " + profile_name, profileId);
+            if (profileId == -1) {
+                return "Profile does not exist";
+            }
+            return "";
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return "Error uploading score";
+        }
+    }
+
+    /**
+     * Uploads many scores to the database in one transaction, using JDBC
+     * batches for the scores and the profile statistics. Scores of users or
+     * profiles that do not exist are skipped; a failed lookup fails the upload
+     * instead, so a score is never skipped because of a database error.
+     * 
+     * @param scores - the scores to upload
+     * @param stored - receives every score that was stored
+     * @return - Empty string if successful, UNAVAILABLE if the database could
+     *         not be reached, another error message otherwise. On error nothing
+     *         was stored.
+     */
+    public String uploadScores(List<ScoreUpload> scores, List<ScoreUpload> stored) {
+        try (
+                Connection dbConn = getConnection();) {
+            // Resolve the profiles, mostly from the id caches
+            List<ScoreUpload> known = new ArrayList<ScoreUpload>();
+            List<Integer> knownIds = new ArrayList<Integer>();
+            for (ScoreUpload upload : scores) {
+                int userId = getUserId(dbConn, upload.getUsername());
+                int profileId = userId == -1 ? -1 : getProfileId(dbConn, userId, upload.getProfileName());
+                if (profileId != -1) {
+                    known.add(upload);
+                    knownIds.add(profileId);
+                }
+            }
+            if (known.isEmpty()) {
+                return "";
+            }
+
+            dbConn.setAutoCommit(false);
+            try (
+                    PreparedStatement insertScore = dbConn.prepareStatement(
+                            "INSERT INTO Scores (profile_id, difficulty, score, level, duration_seconds) VALUES (?, ?, ?, ?, ?)");
+                    PreparedStatement updateStats = dbConn.prepareStatement(UPSERT_PROFILE_STATS);) {
+                for (int k = 0; k < known.size(); k++) {
+                    ScoreUpload upload = known.get(k);
+                    int profileId = knownIds.get(k);
+                    insertScore.setInt(1, profileId);
+                    insertScore.setString(2, upload.getDifficulty());
+                    insertScore.setInt(3, upload.getScore());
+                    insertScore.setInt(4, upload.getLevel());
+                    insertScore.setInt(5, upload.getDuration());
+                    insertScore.addBatch();
+
+                    int i = 1;
+                    for (String statsDifficulty : new String[] { upload.getDifficulty(), "ALL" }) {
+                        updateStats.setInt(i++, profileId);
+                        updateStats.setString(i++, statsDifficulty);
+                        updateStats.setInt(i++, upload.getScore());
+                        updateStats.setInt(i++, upload.getLevel());
+                        updateStats.setInt(i++, upload.getDuration());
+                    }
+                    updateStats.addBatch();
+                }
+                insertScore.executeBatch();
+                updateStats.executeBatch();
+                dbConn.commit();
+            } catch (SQLException e) {
+                dbConn.rollback();
+                throw e;
+            } finally {
+                dbConn.setAutoCommit(true);
+            }
+
+            stored.addAll(known);
+            return "";
+        } catch (SQLException e) {
+            e.printStackTrace();
+            if (isTransient(e)) {
+                return UNAVAILABLE;
+            }
+            // A cached id may be stale, e.g. a profile deleted by another server
+            for (ScoreUpload upload : scores) {
+                int userId = userIds.get(upload.getUsername());
+                userIds.remove(upload.getUsername());
+                if (userId != -1) {
+                    profileIds.remove(userId + " " + upload.getProfileName());
+                }
+            }
+            return "Error uploading scores";
+        }
+    }
+
+    /**
+     * Whether an error is one that may go away by itself, such as a lost
+     * connection, a timeout or a deadlock, rather than one caused by the
+     * statement or its data.
+     *
+     * @param e - the error
+     * @return - true if retrying the same statement later may succeed
+     */
+    static boolean isTransient(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLTransientException
+                    || t instanceof SQLRecoverableException
+                    || t instanceof SQLNonTransientConnectionException) {
+                return true;
+            }
+            if (t instanceof SQLException sql && sql.getSQLState() != null
+                    && (sql.getSQLState().startsWith("08") || sql.getSQLState().startsWith("40"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Fetches the user id from the cache, or from the database on a miss.
      * 
      * @param dbConn - Connection to the database
      * @param username - username of the User
-     * @return - The user id, returns -1 if user does not exist or an error occurs
+     * @return - The user id, returns -1 if user does not exist
+     * @throws SQLException - if the lookup fails
      */
-    private int getUserId(Connection dbConn, String username) {
+    private int getUserId(Connection dbConn, String username) throws SQLException {
+        int userId = userIds.get(username);
+        if (userId == -1) {
+            userId = queryUserId(dbConn, username);
+            userIds.put(username, userId);
+        }
+        return userId;
+    }
+
+    /**
+     * Fetches the user id from the database.
+     */
+    private int queryUserId(Connection dbConn, String username) throws SQLException {
         // Use try with resources to close the statement and result set
         try (PreparedStatement stmt = dbConn.prepareStatement("SELECT User_id FROM Users WHERE User_name = ?")) {
             stmt.setString(1, username);
@@ -395,9 +774,6 @@ public class DatabaseClient {
                     return rs.getInt("User_id");
                 }
             }
-        } catch (SQLException e) {
-            System.out.println("Error fetching user ID for " + username + ": " + e.getMessage());
-            e.printStackTrace();
         }
         
         return -1;
@@ -407,55 +783,53 @@ public class DatabaseClient {
      * Fetches the top n scores from the database. Filters by difficulty
      * Score must be one of the following: "score", "level", "duration_seconds".
      * 
-     * Caller must close the ResultSet and Statement.
-     * 
      * @param n     - number of scores to fetch, must be a positive integer
      * @param score - which score to fetch
      * @param difficulty - difficulty to filter by
      *                  Must be one of the following: "EASY", "MEDIUM", "HARD", "ALL"
-     * @return - a ResultSet of the top n scores or null if score is invalid or an
-     *         error occurred
+     * @return - the top n scores, best first, or null if an argument is invalid
+     *         or an error occurred
      */
-    public ResultSet fetchTopScores(int n, String score, String difficulty) {
-        if (!score.equals("score") && !score.equals("level") && !score.equals("duration_seconds")) {
+    public List<LeaderboardEntry> fetchTopScores(int n, String score, String difficulty) {
+        List<LeaderboardEntry> entries = new ArrayList<LeaderboardEntry>();
+        try {
+            String error = streamTopScores(n, score, difficulty, entries::add);
+            return error.equals("") ? entries : null;
+        } catch (IOException e) {
+            // Adding to a list never throws
             return null;
         }
+    }
+
+    /**
+     * Streams the top n scores from the database to a handler, one row at a
+     * time while the query runs. The connection, statement and result set are
+     * closed before this method returns, also when the handler throws.
+     * Score must be one of the following: "score", "level", "duration_seconds".
+     * 
+     * @param n          - number of scores to fetch, must be a positive integer
+     * @param score      - which score to fetch
+     * @param difficulty - difficulty to filter by
+     *                   Must be one of the following: "EASY", "MEDIUM", "HARD", "ALL"
+     * @param handler    - receives the rows, best first
+     * @return - Empty string if successful, error message otherwise
+     * @throws IOException - if the handler failed to write a row
+     */
+    public String streamTopScores(int n, String score, String difficulty, LeaderboardRowHandler handler)
+            throws IOException {
+        if (!score.equals("score") && !score.equals("level") && !score.equals("duration_seconds")) {
+            return "Invalid score";
+        }
         if (n <= 0) {
-            return null;
+            return "Invalid limit";
         }
         if (!difficulty.equals("EASY") && !difficulty.equals("MEDIUM") && !difficulty.equals("HARD") && !difficulty.equals("ALL")) {
-            return null;
+            return "Invalid difficulty";
         }
 
-        try {
-            Connection dbConn = DriverManager.getConnection(url + "/Users", dbUser, dbPass);
-            // If difficulty is ALL, do not filter by difficulty
-            String difficultyFilter = "";
-            if (!difficulty.equals("ALL")) {
-                difficultyFilter = "WHERE s.difficulty = ?";
-            }
-            // Gets the top n scores for distict users
-            PreparedStatement stmt = dbConn.prepareStatement(
-                    "WITH RankedScores AS (" +
-                        "SELECT " + 
-                            "u.user_name, " +
-                            "p.profile_name, " +
-                            "s.score_id, " +
-                            "s.score, " +
-                            "s.level, " +
-                            "s.duration_seconds, " +
-                            "s.time_played, " +
-                            "ROW_NUMBER() OVER (PARTITION BY u.user_id ORDER BY s." + score + " DESC, s.score_id) AS rn " +
-                        "FROM Scores s " +
-                        "JOIN Profiles p ON s.profile_id = p.profile_id " +
-                        "JOIN Users u ON p.user_id = u.user_id " +
-                        difficultyFilter +
-                    ") " +
-                    "SELECT * " +
-                    "FROM RankedScores " +
-                    "WHERE rn = 1 " +
-                    "ORDER BY " + score +  " DESC " +
-                    "LIMIT ?;");
+        try (
+                Connection dbConn = getConnection();
+                PreparedStatement stmt = dbConn.prepareStatement(topScoresQuery(score, difficulty));) {
             if (!difficulty.equals("ALL")) {
                 stmt.setString(1, difficulty);
                 stmt.setInt(2, n);
@@ -463,20 +837,73 @@ public class DatabaseClient {
                 stmt.setInt(1, n);
             }
 
-            return stmt.executeQuery();
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    handler.accept(new LeaderboardEntry(
+                            rs.getLong("score_id"),
+                            rs.getString("user_name"),
+                            rs.getString("profile_name"),
+                            rs.getInt("score"),
+                            rs.getInt("level"),
+                            rs.getInt("duration_seconds"),
+                            rs.getTimestamp("time_played")));
+                }
+            }
+            return "";
         } catch (SQLException e) {
             e.printStackTrace();
-            return null;
+            return "Failed to fetch leaderboard";
+        }
+    }
+
+    /**
+     * Builds the query of streamTopScores: the best game of every user,
+     * sorted by the given column, with the difficulty and the limit as
+     * parameters. The Scores indexes are built for it, see
+     * db/migration/V2__add_score_indexes.sql.
+     *
+     * @param score      - the column to sort by, already validated
+     * @param difficulty - the difficulty to filter by, "ALL" for no filter
+     * @return - the query
+     */
+    static String topScoresQuery(String score, String difficulty) {
+        // If difficulty is ALL, do not filter by difficulty
+        String difficultyFilter = "";
+        if (!difficulty.equals("ALL")) {
+            difficultyFilter = "WHERE s.difficulty = ?";
         }
+        // Gets the top n scores for distict users
+        return "WITH RankedScores AS (" +
+                    "SELECT " + 
+                        "u.user_name, " +
+                        "p.profile_name, " +
+                        "s.score_id, " +
+                        "s.score, " +
+                        "s.level, " +
+                        "s.duration_seconds, " +
+                        "s.time_played, " +
+                        "ROW_NUMBER() OVER (PARTITION BY u.user_id ORDER BY s." + score + " DESC, s.score_id) AS rn " +
+                    "FROM Scores s " +
+                    "JOIN Profiles p ON s.profile_id = p.profile_id " +
+                    "JOIN Users u ON p.user_id = u.user_id " +
+                    difficultyFilter +
+                ") " +
+                "SELECT * " +
+                "FROM RankedScores " +
+                "WHERE rn = 1 " +
+                "ORDER BY " + score +  " DESC " +
+                "LIMIT ?;";
     }
 
     /**
-     * Fetches statistics for a profile from the database. Has poor performance
-     * if there are a lot of scores in the database and there are many reads.
-     * Should be fine for this project. Can be filtered by difficulty.
+     * Fetches statistics for a profile from the database. Can be filtered by
+     * difficulty. The statistics are kept up to date by uploadScore in the
+     * ProfileStats table, so this is a single lookup by primary key.
      * 
      * @param username - username of the user
      * @param profile_name - profile name of the user
+     * @param difficulty - difficulty to filter by
+     *                  Must be one of the following: "EASY", "MEDIUM", "HARD", "ALL"
      * @return - an array of integers containing the statistics for the profile
      * is null if an error occurs
      *           [0] - highest score
@@ -490,54 +917,24 @@ public class DatabaseClient {
             return null;
         }
         try (
-            Connection dbConn = DriverManager.getConnection(
-                url + "/Users", dbUser, dbPass);) {
-            // Get the user_id from the Users table
-            int userId = getUserId(dbConn, username);
-            if (userId == -1) {
-                return null;
-            }
-
-            // Get the profile_id from the Profiles table
-            int profile_id = getProfileId(dbConn, userId, profile_name);
-            if (profile_id == -1) {
-                return null;
-            }
-            // If difficulty is ALL, do not filter by difficulty
-            String difficultyFilter = "";
-            if (!difficulty.equals("ALL")) {
-                difficultyFilter = " AND difficulty = ?";
-            }
-
-            // Get the statistics for the profile
-            PreparedStatement stmt = dbConn.prepareStatement(
-                "SELECT MAX(score) AS highest_score, " +
-                       "MAX(level) AS highest_level, " +
-                       "MAX(duration_seconds) AS highest_duration, " +
-                       "COUNT(*) AS games_played " +
-                    "FROM Scores " +
-                    "WHERE profile_id = ?"
-                    + difficultyFilter
-            );
-            if (!difficulty.equals("ALL")) {
-                stmt.setInt(1, profile_id);
-                stmt.setString(2, difficulty);
-            } else {
-                stmt.setInt(1, profile_id);
-            }
-
-            stmt.setInt(1, profile_id);
-            ResultSet rs = stmt.executeQuery();
+                Connection dbConn = getConnection();
+                PreparedStatement stmt = dbConn.prepareStatement(STATS_QUERY);) {
+            stmt.setString(1, difficulty);
+            stmt.setString(2, username);
+            stmt.setString(3, profile_name);
 
-            if (rs.next()) {
-                int[] stats = new int[4];
-                stats[0] = rs.getInt("highest_score");
-                stats[1] = rs.getInt("highest_level");
-                stats[2] = rs.getInt("highest_duration");
-                stats[3] = rs.getInt("games_played");
-                return stats;
-            } else {
-                return null;
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    int[] stats = new int[4];
+                    stats[0] = rs.getInt("highest_score");
+                    stats[1] = rs.getInt("highest_level");
+                    stats[2] = rs.getInt("highest_duration");
+                    stats[3] = rs.getInt("games_played");
+                    return stats;
+                } else {
+                    // The user or the profile does not exist
+                    return null;
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -546,15 +943,28 @@ public class DatabaseClient {
     }
         
     /**
-     * Fetches the profile id from the database.
+     * Fetches the profile id from the cache, or from the database on a miss.
      * 
      * @param dbConn       - Connection to the database
      * @param userId       - user id of the User
      * @param profile_name - profile name of the User
-     * @return - The profile id, returns -1 if profile does not exist or an error
-     *         occurs
+     * @return - The profile id, returns -1 if profile does not exist
+     * @throws SQLException - if the lookup fails
      */
-    private int getProfileId(Connection dbConn, int userId, String profile_name) {
+    private int getProfileId(Connection dbConn, int userId, String profile_name) throws SQLException {
+        String key = userId + " " + profile_name;
+        int profileId = profileIds.get(key);
+        if (profileId == -1) {
+            profileId = queryProfileId(dbConn, userId, profile_name);
+            profileIds.put(key, profileId);
+        }
+        return profileId;
+    }
+
+    /**
+     * Fetches the profile id from the database.
+     */
+    private int queryProfileId(Connection dbConn, int userId, String profile_name) throws SQLException {
         // Use try with resources to close the statement and result set
         try (PreparedStatement stmt = dbConn
                 .prepareStatement("SELECT profile_id FROM Profiles WHERE user_id = ? AND profile_name = ?")) {
@@ -565,9 +975,6 @@ public class DatabaseClient {
                     return rs.getInt("profile_id");
                 }
             }
-        } catch (SQLException e) {
-            System.out.println("Error fetching profile ID for " + profile_name + ": " + e.getMessage());
-            e.printStackTrace();
         }
 
         return -1;
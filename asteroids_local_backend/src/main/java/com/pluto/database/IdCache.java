@@ -0,0 +1,134 @@
+package com.pluto.database;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * A bounded cache from names to database ids, e.g. user names to user ids.
+ * When full, the least recently used entry is dropped, and entries expire
+ * after a time to live so that rows changed by another server are picked up
+ * eventually. Only ids that exist are cached; the DatabaseClient removes
+ * entries itself when it renames or deletes rows.
+ */
+class IdCache {
+    /**
+     * A cached id and when it expires.
+     */
+    private static class Entry {
+        private final int id;
+        private final long expiresNanos;
+
+        private Entry(int id, long expiresNanos) {
+            this.id = id;
+            this.expiresNanos = expiresNanos;
+        }
+    }
+
+    /* The entries in least recently used order, guarded by locking this cache */
+    private final LinkedHashMap<String, Entry> entries;
+
+    /* How long an entry is used before it is looked up again */
+    private final long ttlNanos;
+
+    /* Returns the current time in nanoseconds */
+    private final LongSupplier clock;
+
+    /* Number of lookups answered from the cache and from the database */
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Constructor for an IdCache.
+     *
+     * @param maxEntries - the most ids held at once
+     * @param ttlNanos   - how long an id is used before it is looked up again
+     */
+    IdCache(int maxEntries, long ttlNanos) {
+        this(maxEntries, ttlNanos, System::nanoTime);
+    }
+
+    /**
+     * Constructor for an IdCache reading the time from the given clock.
+     *
+     * @param maxEntries - the most ids held at once
+     * @param ttlNanos   - how long an id is used before it is looked up again
+     * @param clock      - returns the current time in nanoseconds
+     */
+    IdCache(int maxEntries, long ttlNanos, LongSupplier clock) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("The cache size must be positive");
+        }
+        this.ttlNanos = ttlNanos;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, IdCache.Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached id of a name.
+     *
+     * @param key - the name
+     * @return - the id, or -1 if it is not cached or expired
+     */
+    synchronized int get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null || clock.getAsLong() - entry.expiresNanos >= 0) {
+            if (entry != null) {
+                entries.remove(key);
+            }
+            misses.incrementAndGet();
+            return -1;
+        }
+        hits.incrementAndGet();
+        return entry.id;
+    }
+
+    /**
+     * Caches the id of a name. Ids of -1, meaning the row does not exist, are
+     * not cached.
+     *
+     * @param key - the name
+     * @param id  - the id
+     */
+    synchronized void put(String key, int id) {
+        if (id != -1) {
+            entries.put(key, new Entry(id, clock.getAsLong() + ttlNanos));
+        }
+    }
+
+    /**
+     * Drops the id of a name, if cached.
+     *
+     * @param key - the name
+     */
+    synchronized void remove(String key) {
+        entries.remove(key);
+    }
+
+    /**
+     * @return - the number of ids cached
+     */
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return - the number of lookups answered from the cache
+     */
+    long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return - the number of lookups that went to the database
+     */
+    long getMisses() {
+        return misses.get();
+    }
+}
@@ -0,0 +1,295 @@
+package com.pluto.database;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps every leaderboard in memory so that reading one costs O(limit)
+ * instead of a window query over the whole Scores table.
+ *
+ * There is one board per sort column ("score", "level", "duration_seconds")
+ * and difficulty ("EASY", "MEDIUM", "HARD", "ALL"). Each holds the best game of
+ * every user, sorted best first. A board is loaded from the database the
+ * first time it is read, and is then kept up to date by recordScore after
+ * every uploaded score. Renaming or deleting a profile can change entries
+ * anywhere on a board, so it invalidates the boards, and they are rebuilt
+ * from the database on their next read.
+ */
+@Component
+public class LeaderboardCache {
+    /* The columns a leaderboard can be sorted by */
+    private static final String[] SCORES = { "score", "level", "duration_seconds" };
+
+    /* The difficulties a leaderboard can be filtered by */
+    private static final String[] DIFFICULTIES = { "EASY", "MEDIUM", "HARD", "ALL" };
+
+    /**
+     * Loads a whole leaderboard, best first, from the database.
+     */
+    @FunctionalInterface
+    interface Loader {
+        /**
+         * @param score      - the column to sort by
+         * @param difficulty - the difficulty to filter by
+         * @param handler    - receives the best game of every user
+         * @return - Empty string if successful, error message otherwise
+         */
+        String load(String score, String difficulty, LeaderboardRowHandler handler) throws IOException;
+    }
+
+    /**
+     * The leaderboard for one sort column and difficulty. Guarded by its lock.
+     */
+    private static class Board {
+        /*
+         * Held while a board is loaded from the database, so a lock rather
+         * than synchronized: a virtual thread waiting on JDBC inside a
+         * synchronized block would pin its carrier thread.
+         */
+        private final ReentrantLock lock = new ReentrantLock();
+
+        /* The column this board is sorted by */
+        private final String score;
+
+        /* The best game of every user, best first */
+        private final TreeSet<LeaderboardEntry> ranking;
+
+        /* The best game of every user, by user name */
+        private final Map<String, LeaderboardEntry> bestByUser = new HashMap<String, LeaderboardEntry>();
+
+        /* Whether the board matches the database */
+        private boolean loaded;
+
+        private Board(String score) {
+            this.score = score;
+            // Highest value first; on a tie the older game, as in the query
+            this.ranking = new TreeSet<LeaderboardEntry>(
+                    Comparator.comparingInt((LeaderboardEntry entry) -> entry.getValue(score)).reversed()
+                            .thenComparingLong(LeaderboardEntry::getScoreId));
+        }
+
+        /**
+         * Makes the entry the best game of its user if it beats the current
+         * one. A tie keeps the older game.
+         */
+        private void offer(LeaderboardEntry entry) {
+            LeaderboardEntry best = bestByUser.get(entry.getUserName());
+            if (best != null) {
+                if (entry.getValue(score) <= best.getValue(score)) {
+                    return;
+                }
+                ranking.remove(best);
+            }
+            bestByUser.put(entry.getUserName(), entry);
+            ranking.add(entry);
+        }
+
+        private void clear() {
+            ranking.clear();
+            bestByUser.clear();
+            loaded = false;
+        }
+    }
+
+    /* Loads boards from the database */
+    private final Loader loader;
+
+    /* The boards, keyed by "score difficulty" */
+    private final Map<String, Board> boards = new HashMap<String, Board>();
+
+    /*
+     * Ids for games recorded since the boards were loaded. They only need to
+     * order those games after every loaded game and by upload time.
+     */
+    private final AtomicLong nextScoreId = new AtomicLong(Long.MAX_VALUE / 2);
+
+    /* Number of reads served from memory and number of boards loaded */
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+
+    /**
+     * Constructor for the LeaderboardCache.
+     *
+     * @param dbClient - the client the boards are loaded with
+     */
+    @Autowired
+    public LeaderboardCache(DatabaseClient dbClient) {
+        this((score, difficulty, handler) -> dbClient.streamTopScores(Integer.MAX_VALUE, score, difficulty, handler));
+    }
+
+    /**
+     * Constructor for a LeaderboardCache loading boards through the given
+     * loader.
+     *
+     * @param loader - loads a whole board
+     */
+    LeaderboardCache(Loader loader) {
+        this.loader = loader;
+        for (String score : SCORES) {
+            for (String difficulty : DIFFICULTIES) {
+                boards.put(score + " " + difficulty, new Board(score));
+            }
+        }
+    }
+
+    /**
+     * Streams the top n entries of a leaderboard to a handler, loading the
+     * board from the database first if needed.
+     *
+     * @param n          - number of entries, must be a positive integer
+     * @param score      - the column to sort by
+     *                   Must be one of the following: "score", "level", "duration_seconds"
+     * @param difficulty - the difficulty to filter by
+     *                   Must be one of the following: "EASY", "MEDIUM", "HARD", "ALL"
+     * @param handler    - receives the entries, best first
+     * @return - Empty string if successful, error message otherwise
+     * @throws IOException - if the handler failed to write an entry
+     */
+    public String streamTopScores(int n, String score, String difficulty, LeaderboardRowHandler handler)
+            throws IOException {
+        if (n <= 0) {
+            return "Invalid limit";
+        }
+        Board board = boards.get(score + " " + difficulty);
+        if (board == null) {
+            return "Invalid score or difficulty";
+        }
+        LeaderboardEntry[] top;
+        board.lock.lock();
+        try {
+            if (!board.loaded) {
+                String error = load(board, score, difficulty);
+                if (!error.equals("")) {
+                    return error;
+                }
+            } else {
+                hits.incrementAndGet();
+            }
+            // Copy out so the handler writes without holding the lock
+            top = new LeaderboardEntry[Math.min(n, board.ranking.size())];
+            int i = 0;
+            for (LeaderboardEntry entry : board.ranking) {
+                if (i == top.length) {
+                    break;
+                }
+                top[i++] = entry;
+            }
+        } finally {
+            board.lock.unlock();
+        }
+        for (LeaderboardEntry entry : top) {
+            handler.accept(entry);
+        }
+        return "";
+    }
+
+    /**
+     * Adds a game that was just stored in the database to the loaded boards
+     * of its difficulty and of ALL. Boards that are not loaded yet will read
+     * the game from the database.
+     *
+     * @param username     - username of the user
+     * @param profile_name - profile name of the user
+     * @param difficulty   - difficulty of the game: "EASY", "MEDIUM" or "HARD"
+     * @param score        - score reached
+     * @param level        - level reached
+     * @param duration     - duration of the game in seconds
+     */
+    public void recordScore(String username, String profile_name, String difficulty, int score, int level,
+            int duration) {
+        LeaderboardEntry entry = new LeaderboardEntry(nextScoreId.getAndIncrement(), username, profile_name,
+                score, level, duration, new Timestamp(System.currentTimeMillis()));
+        for (String column : SCORES) {
+            offer(boards.get(column + " " + difficulty), entry);
+            offer(boards.get(column + " ALL"), entry);
+        }
+    }
+
+    /**
+     * Drops every board, so that each is rebuilt from the database on its next
+     * read. Called when profiles are renamed or deleted.
+     */
+    public void invalidate() {
+        for (Board board : boards.values()) {
+            board.lock.lock();
+            try {
+                board.clear();
+            } finally {
+                board.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Converts the cache statistics to a json formatted string.
+     *
+     * @return - a json object with the following attributes:
+     *         loaded_boards - int, boards currently in memory
+     *         entries - int, entries across all loaded boards
+     *         hits - int, reads served from memory
+     *         loads - int, boards loaded from the database
+     */
+    public String toJson() {
+        int loaded = 0;
+        int entries = 0;
+        for (Board board : boards.values()) {
+            board.lock.lock();
+            try {
+                if (board.loaded) {
+                    loaded++;
+                    entries += board.ranking.size();
+                }
+            } finally {
+                board.lock.unlock();
+            }
+        }
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"loaded_boards\":").append(loaded).append(",")
+                .append("\"entries\":").append(entries).append(",")
+                .append("\"hits\":").append(hits.get()).append(",")
+                .append("\"loads\":").append(loads.get())
+                .append("}");
+        return json.toString();
+    }
+
+    /**
+     * Adds a game to a board if the board is loaded.
+     */
+    private static void offer(Board board, LeaderboardEntry entry) {
+        if (board == null) {
+            return;
+        }
+        board.lock.lock();
+        try {
+            if (board.loaded) {
+                board.offer(entry);
+            }
+        } finally {
+            board.lock.unlock();
+        }
+    }
+
+    /**
+     * Fills a locked board from the database.
+     */
+    private String load(Board board, String score, String difficulty) throws IOException {
+        board.clear();
+        String error = loader.load(score, difficulty, board::offer);
+        if (!error.equals("")) {
+            board.clear();
+            return error;
+        }
+        board.loaded = true;
+        loads.incrementAndGet();
+        return "";
+    }
+}
@@ -0,0 +1,130 @@
+package com.pluto.database;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+
+/**
+ * One row of the leaderboard: the best game of a user for the chosen score.
+ */
+public class LeaderboardEntry {
+    /* Id of the score row, which breaks ties in favour of the older game */
+    private final long scoreId;
+
+    /* The user and the profile the game was played on */
+    private final String userName;
+    private final String profileName;
+
+    /* The results of the game */
+    private final int score;
+    private final int level;
+    private final int durationSeconds;
+
+    /* When the game was played */
+    private final Timestamp timePlayed;
+
+    /**
+     * Constructor for a LeaderboardEntry.
+     *
+     * @param scoreId         - id of the score row
+     * @param userName        - name of the user
+     * @param profileName     - name of the profile
+     * @param score           - score reached
+     * @param level           - level reached
+     * @param durationSeconds - duration of the game in seconds
+     * @param timePlayed      - when the game was played
+     */
+    public LeaderboardEntry(long scoreId, String userName, String profileName, int score, int level,
+            int durationSeconds, Timestamp timePlayed) {
+        this.scoreId = scoreId;
+        this.userName = userName;
+        this.profileName = profileName;
+        this.score = score;
+        this.level = level;
+        this.durationSeconds = durationSeconds;
+        this.timePlayed = timePlayed;
+    }
+
+    /**
+     * @return - the id of the score row
+     */
+    public long getScoreId() {
+        return scoreId;
+    }
+
+    /**
+     * @return - the name of the user
+     */
+    public String getUserName() {
+        return userName;
+    }
+
+    /**
+     * @return - the name of the profile
+     */
+    public String getProfileName() {
+        return profileName;
+    }
+
+    /**
+     * @return - the score reached
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * @return - the level reached
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * @return - the duration of the game in seconds
+     */
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    /**
+     * @return - when the game was played
+     */
+    public Timestamp getTimePlayed() {
+        return timePlayed;
+    }
+
+    /**
+     * Returns the value of the given leaderboard column.
+     *
+     * @param score - one of "score", "level", "duration_seconds"
+     * @return - the value of that column
+     */
+    public int getValue(String score) {
+        switch (score) {
+            case "level":
+                return level;
+            case "duration_seconds":
+                return durationSeconds;
+            default:
+                return this.score;
+        }
+    }
+
+    /**
+     * Appends this entry as a json object to the given output, in the format
+     * of the leaderboard response.
+     *
+     * @param out - the output to append to
+     * @throws IOException - if the output cannot be written
+     */
+    public void appendJson(Appendable out) throws IOException {
+        out.append("{")
+                .append("\"user\":\"").append(userName).append("\",")
+                .append("\"profile\":\"").append(profileName).append("\",")
+                .append("\"score\":").append(Integer.toString(score)).append(",")
+                .append("\"level\":").append(Integer.toString(level)).append(",")
+                .append("\"duration\":").append(Integer.toString(durationSeconds)).append(",")
+                .append("\"time\":\"").append(String.valueOf(timePlayed)).append("\"")
+                .append("}");
+    }
+}
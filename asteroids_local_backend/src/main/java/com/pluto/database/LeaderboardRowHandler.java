@@ -0,0 +1,19 @@
+package com.pluto.database;
+
+import java.io.IOException;
+
+/**
+ * Receives the rows of a leaderboard query one at a time, while the query is
+ * still running. Used to stream the leaderboard straight into a response.
+ */
+@FunctionalInterface
+public interface LeaderboardRowHandler {
+    /**
+     * Handles one row of the leaderboard.
+     *
+     * @param entry - the row
+     * @throws IOException - if the row cannot be written out, which stops
+     *                     the query
+     */
+    void accept(LeaderboardEntry entry) throws IOException;
+}
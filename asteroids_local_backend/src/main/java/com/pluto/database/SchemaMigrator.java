@@ -0,0 +1,295 @@
+package com.pluto.database;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Brings the database schema up to date while the application starts, before
+ * the server accepts any request, so that no request runs against an old
+ * schema. A database that cannot be reached yet is retried for
+ * asteroids.db.migrateTimeoutSeconds; if it stays unreachable, or a
+ * migration fails, the application does not start.
+ *
+ * Migrations are the SQL files db/migration/V<version>__<description>.sql on
+ * the classpath. Each is applied once, in version order, and recorded in the
+ * SchemaVersion table; a database created from init.sql starts at no version.
+ * Data fixes that must run once, such as filling ProfileStats, are migrations
+ * too.
+ * Statements are separated by semicolons, and lines starting with -- are
+ * comments. MySQL commits every schema change on its own, so a migration that
+ * fails halfway must be finished by hand before the server is restarted.
+ * Only one server should migrate a database at a time. Disable it with
+ * asteroids.db.migrateOnStartup=false.
+ */
+@Component
+public class SchemaMigrator {
+    /* The classpath directory holding the migrations */
+    private static final String LOCATION = "classpath:db/migration";
+
+    /* How long to wait before trying an unreachable database again */
+    private static final long RETRY_MILLIS = 1000;
+
+    /* Returned by migrate when no connection to the database can be opened */
+    static final String UNREACHABLE = "Database unreachable";
+
+    /* The file name of a migration: its version and its description */
+    private static final Pattern FILE_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+
+    /**
+     * A migration read from its file.
+     */
+    static class Migration {
+        /* The version the schema is at once this migration is applied */
+        private final int version;
+
+        /* What the migration does, from its file name */
+        private final String description;
+
+        /* The statements of the migration, in order */
+        private final List<String> statements;
+
+        private Migration(int version, String description, List<String> statements) {
+            this.version = version;
+            this.description = description;
+            this.statements = statements;
+        }
+
+        int getVersion() {
+            return version;
+        }
+    }
+
+    /* The database to migrate */
+    private final DataSource dataSource;
+
+    /* The directory holding the migrations, as a Spring resource location */
+    private final String location;
+
+    /* Whether to migrate when the application starts */
+    private final boolean enabled;
+
+    /* How long startup waits for an unreachable database */
+    private final int timeoutSeconds;
+
+    /**
+     * Constructor for the SchemaMigrator.
+     *
+     * @param dataSource     - the connection pool to the Users database
+     * @param enabled        - whether to migrate when the application starts
+     * @param timeoutSeconds - how long startup waits for an unreachable
+     *                       database
+     */
+    @Autowired
+    public SchemaMigrator(DataSource dataSource,
+            @Value("${asteroids.db.migrateOnStartup:true}") boolean enabled,
+            @Value("${asteroids.db.migrateTimeoutSeconds:120}") int timeoutSeconds) {
+        this(dataSource, LOCATION, enabled, timeoutSeconds);
+    }
+
+    /**
+     * Constructor for a SchemaMigrator reading its migrations from the given
+     * location.
+     *
+     * @param dataSource - the database to migrate
+     * @param location   - the directory of the migrations, e.g.
+     *                   "classpath:db/migration"
+     * @param enabled    - whether to migrate when the application starts
+     */
+    SchemaMigrator(DataSource dataSource, String location, boolean enabled) {
+        this(dataSource, location, enabled, 0);
+    }
+
+    /**
+     * Constructor for a SchemaMigrator reading its migrations from the given
+     * location and waiting for an unreachable database on startup.
+     *
+     * @param dataSource     - the database to migrate
+     * @param location       - the directory of the migrations
+     * @param enabled        - whether to migrate when the application starts
+     * @param timeoutSeconds - how long startup waits for an unreachable
+     *                       database
+     */
+    SchemaMigrator(DataSource dataSource, String location, boolean enabled, int timeoutSeconds) {
+        this.dataSource = dataSource;
+        this.location = location;
+        this.enabled = enabled;
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    /**
+     * Migrates the schema if enabled. Runs while the application starts, so
+     * the web server only accepts requests once it returns. An unreachable
+     * database is tried again every RETRY_MILLIS until the timeout.
+     *
+     * @throws IllegalStateException - if a migration fails, or the database
+     *                               is still unreachable at the timeout
+     */
+    @PostConstruct
+    void migrateOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        String error = migrate();
+        while (error.equals(UNREACHABLE) && System.nanoTime() - deadline < 0) {
+            System.out.println("Database unreachable, retrying the migrations");
+            try {
+                Thread.sleep(RETRY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            error = migrate();
+        }
+        if (!error.equals("")) {
+            throw new IllegalStateException("Could not migrate the database: " + error);
+        }
+    }
+
+    /**
+     * Applies every migration the database does not have yet, in version
+     * order.
+     *
+     * @return - Empty string if successful, UNREACHABLE if no connection could
+     *         be opened, error message otherwise
+     */
+    public String migrate() {
+        List<Migration> migrations;
+        try {
+            migrations = load();
+        } catch (IOException | IllegalStateException e) {
+            e.printStackTrace();
+            return "Error reading migrations";
+        }
+        Connection dbConn;
+        try {
+            dbConn = dataSource.getConnection();
+        } catch (SQLException e) {
+            System.out.println("Could not connect to the database: " + e.getMessage());
+            return UNREACHABLE;
+        }
+        try (
+                dbConn;
+                Statement stmt = dbConn.createStatement();) {
+            stmt.executeUpdate(
+                    "CREATE TABLE IF NOT EXISTS SchemaVersion (" +
+                        "version INT NOT NULL, " +
+                        "description VARCHAR(200) NOT NULL, " +
+                        "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                        "PRIMARY KEY (version)" +
+                    ")");
+            Set<Integer> applied = appliedVersions(stmt);
+            for (Migration migration : migrations) {
+                if (applied.contains(migration.version)) {
+                    continue;
+                }
+                try {
+                    for (String statement : migration.statements) {
+                        stmt.executeUpdate(statement);
+                    }
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                    return "Error applying migration V" + migration.version;
+                }
+                try (PreparedStatement record = dbConn.prepareStatement(
+                        "INSERT INTO SchemaVersion (version, description) VALUES (?, ?)")) {
+                    record.setInt(1, migration.version);
+                    record.setString(2, migration.description);
+                    record.executeUpdate();
+                }
+                System.out.println("Applied migration V" + migration.version + " " + migration.description);
+            }
+            return "";
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return "Error migrating the database";
+        }
+    }
+
+    /**
+     * Reads every migration, sorted by version.
+     *
+     * @return - the migrations
+     * @throws IOException           - if a migration cannot be read
+     * @throws IllegalStateException - if two migrations have the same version
+     */
+    List<Migration> load() throws IOException {
+        List<Migration> migrations = new ArrayList<Migration>();
+        Resource[] files = new PathMatchingResourcePatternResolver().getResources(location + "/V*__*.sql");
+        for (Resource file : files) {
+            Matcher name = FILE_NAME.matcher(String.valueOf(file.getFilename()));
+            if (!name.matches()) {
+                continue;
+            }
+            String sql;
+            try (InputStream in = file.getInputStream()) {
+                sql = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            migrations.add(new Migration(Integer.parseInt(name.group(1)), name.group(2).replace('_', ' '),
+                    split(sql)));
+        }
+        migrations.sort(Comparator.comparingInt(Migration::getVersion));
+        for (int i = 1; i < migrations.size(); i++) {
+            if (migrations.get(i).version == migrations.get(i - 1).version) {
+                throw new IllegalStateException("Two migrations have version " + migrations.get(i).version);
+            }
+        }
+        return migrations;
+    }
+
+    /**
+     * Returns the versions recorded in the SchemaVersion table.
+     */
+    private static Set<Integer> appliedVersions(Statement stmt) throws SQLException {
+        Set<Integer> versions = new HashSet<Integer>();
+        try (ResultSet rs = stmt.executeQuery("SELECT version FROM SchemaVersion")) {
+            while (rs.next()) {
+                versions.add(rs.getInt(1));
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * Splits a migration into its statements, dropping comment lines.
+     */
+    private static List<String> split(String sql) {
+        StringBuilder code = new StringBuilder();
+        for (String line : sql.split("\n")) {
+            if (!line.trim().startsWith("--")) {
+                code.append(line).append('\n');
+            }
+        }
+        List<String> statements = new ArrayList<String>();
+        for (String statement : code.toString().split(";")) {
+            if (!statement.isBlank()) {
+                statements.add(statement.trim());
+            }
+        }
+        return statements;
+    }
+}
@@ -0,0 +1,471 @@
+package com.pluto.database;
+
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Accepts uploaded scores into a bounded in-memory queue and stores them on a
+ * dedicated writer thread, so that an upload is acknowledged without waiting
+ * for the database. The writer stores whatever has queued up in one batched
+ * transaction, see DatabaseClient.uploadScores.
+ *
+ * When the queue is full, uploads wait briefly for room and are then rejected,
+ * so a slow database pushes back on the clients instead of growing the heap.
+ * When the database cannot be reached, batches are appended to a local spill
+ * file and synced to disk. The file is replayed, oldest first, once the retry
+ * interval has passed, and is deleted when everything in it is stored.
+ *
+ * A batch the database rejects for another reason is split in halves until
+ * the scores causing it are found. Those are appended to the dead letter
+ * file, next to the spill file, and the rest are stored, so one bad score
+ * does not hold back every score after it.
+ *
+ * An accepted score is not yet stored: scores of users or profiles that do not
+ * exist are skipped by the writer and only show up in the metrics.
+ */
+@Component
+public class ScoreIngestionQueue {
+    /* Longest time the writer waits for a score before checking the spill file */
+    private static final long POLL_MILLIS = 1000;
+
+    /**
+     * Stores a batch of scores.
+     */
+    @FunctionalInterface
+    interface Writer {
+        /**
+         * @param scores - the scores to store
+         * @param stored - receives every score that was stored
+         * @return - Empty string if successful, DatabaseClient.UNAVAILABLE if
+         *         the database could not be reached, another error message if
+         *         the scores were rejected. On error nothing was stored.
+         */
+        String write(List<ScoreUpload> scores, List<ScoreUpload> stored);
+    }
+
+    /* Stores the batches */
+    private final Writer writer;
+
+    /* Called with every stored score, e.g. to update the leaderboards */
+    private final Consumer<ScoreUpload> onStored;
+
+    /* The scores waiting to be stored */
+    private final BlockingQueue<ScoreUpload> queue;
+    private final int capacity;
+
+    /* Most scores stored in one transaction */
+    private final int batchSize;
+
+    /* How long an upload waits for room in a full queue */
+    private final long offerTimeoutMillis;
+
+    /* Where batches go while the database cannot be reached */
+    private final Path spillFile;
+
+    /* Where scores the database rejected go */
+    private final Path deadLetterFile;
+
+    /* How long to wait after a failed write before writing to the database again */
+    private final long retryNanos;
+
+    /* Scores in the spill file, only written by the writer */
+    private volatile long spillPending;
+
+    /* When writing last failed, only used by the writer */
+    private long lastFailureNanos;
+
+    /* Number of scores accepted, rejected, stored, skipped, spilled and dead-lettered */
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong stored = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+
+    /* Number of batches written, and total and longest write time */
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushNanos = new AtomicLong();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+
+    /* Cleared on shutdown; the writer then empties the queue and exits */
+    private volatile boolean running = true;
+
+    /* The writer thread, or null if it was not started */
+    private Thread thread;
+
+    /**
+     * Constructor for the ScoreIngestionQueue. The writer thread is started
+     * by Spring once the queue is constructed, see start.
+     *
+     * @param dbClient           - the client the scores are stored with
+     * @param leaderboardCache   - the leaderboards updated with stored scores
+     * @param capacity           - the most scores waiting at once
+     * @param batchSize          - the most scores stored in one transaction
+     * @param offerTimeoutMillis - how long an upload waits for room
+     * @param spillFile          - the file batches go to while the database
+     *                           is unavailable, and next to which rejected
+     *                           scores go
+     * @param retrySeconds       - how long to wait before retrying the database
+     */
+    @Autowired
+    public ScoreIngestionQueue(DatabaseClient dbClient, LeaderboardCache leaderboardCache,
+            @Value("${asteroids.scores.queueCapacity:10000}") int capacity,
+            @Value("${asteroids.scores.batchSize:200}") int batchSize,
+            @Value("${asteroids.scores.offerTimeoutMillis:100}") long offerTimeoutMillis,
+            @Value("${asteroids.scores.spillFile:score-spill.log}") String spillFile,
+            @Value("${asteroids.scores.retrySeconds:5}") int retrySeconds) {
+        this(dbClient::uploadScores,
+                upload -> leaderboardCache.recordScore(upload.getUsername(), upload.getProfileName(),
+                        upload.getDifficulty(), upload.getScore(), upload.getLevel(), upload.getDuration()),
+                capacity, batchSize, offerTimeoutMillis, Paths.get(spillFile),
+                TimeUnit.SECONDS.toNanos(retrySeconds));
+    }
+
+    /**
+     * Constructor for a ScoreIngestionQueue storing scores through the given
+     * writer. The writer thread is not started.
+     *
+     * @param writer             - stores a batch of scores
+     * @param onStored           - called with every stored score
+     * @param capacity           - the most scores waiting at once
+     * @param batchSize          - the most scores stored in one transaction
+     * @param offerTimeoutMillis - how long an upload waits for room
+     * @param spillFile          - the file batches go to while the writer fails
+     *                           with DatabaseClient.UNAVAILABLE
+     * @param retryNanos         - how long to wait before retrying the writer
+     */
+    ScoreIngestionQueue(Writer writer, Consumer<ScoreUpload> onStored, int capacity, int batchSize,
+            long offerTimeoutMillis, Path spillFile, long retryNanos) {
+        if (capacity <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Queue capacity and batch size must be positive");
+        }
+        this.writer = writer;
+        this.onStored = onStored;
+        this.queue = new ArrayBlockingQueue<ScoreUpload>(capacity);
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.spillFile = spillFile;
+        this.deadLetterFile = spillFile.resolveSibling(spillFile.getFileName() + ".dead");
+        this.retryNanos = retryNanos;
+        // Scores spilled before a restart are replayed first
+        this.spillPending = readSpill().size();
+        this.lastFailureNanos = System.nanoTime() - retryNanos;
+    }
+
+    /**
+     * Queues a score to be stored.
+     *
+     * @param upload - the score
+     * @return - Empty string if the score was accepted, error message if the
+     *         queue is full
+     */
+    public String submit(ScoreUpload upload) {
+        if (!running) {
+            rejected.incrementAndGet();
+            return "Server is shutting down";
+        }
+        try {
+            if (!queue.offer(upload, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                rejected.incrementAndGet();
+                return "Server is busy, please try again";
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejected.incrementAndGet();
+            return "Server is busy, please try again";
+        }
+        accepted.incrementAndGet();
+        return "";
+    }
+
+    /**
+     * Converts the queue statistics to a json formatted string.
+     *
+     * @return - a json object with the following attributes:
+     *         queue_depth - int, scores waiting to be stored
+     *         queue_capacity - int, the most scores waiting at once
+     *         accepted - int, scores accepted
+     *         rejected - int, scores rejected because the queue was full
+     *         stored - int, scores stored in the database
+     *         skipped - int, scores of unknown users or profiles
+     *         spilled - int, scores written to the spill file
+     *         spill_pending - int, scores in the spill file
+     *         dead_lettered - int, scores the database rejected
+     *         flushes - int, batches written to the database
+     *         flush_millis_avg - float, mean time to write a batch
+     *         flush_millis_max - float, longest time to write a batch
+     */
+    public String toJson() {
+        long count = flushes.get();
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"queue_depth\":").append(queue.size()).append(",")
+                .append("\"queue_capacity\":").append(capacity).append(",")
+                .append("\"accepted\":").append(accepted.get()).append(",")
+                .append("\"rejected\":").append(rejected.get()).append(",")
+                .append("\"stored\":").append(stored.get()).append(",")
+                .append("\"skipped\":").append(skipped.get()).append(",")
+                .append("\"spilled\":").append(spilled.get()).append(",")
+                .append("\"spill_pending\":").append(spillPending).append(",")
+                .append("\"dead_lettered\":").append(deadLettered.get()).append(",")
+                .append("\"flushes\":").append(count).append(",")
+                .append("\"flush_millis_avg\":").append(count == 0 ? 0 : flushNanos.get() / count / 1e6).append(",")
+                .append("\"flush_millis_max\":").append(maxFlushNanos.get() / 1e6)
+                .append("}");
+        return json.toString();
+    }
+
+    /**
+     * Stops accepting scores and waits for the writer to store or spill the
+     * ones already queued.
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (thread != null) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Stores every queued score in batches, replaying the spill file first if
+     * it is due. Only called by the writer thread.
+     */
+    void flushPending() {
+        replaySpillIfDue();
+        List<ScoreUpload> batch = new ArrayList<ScoreUpload>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Starts the writer thread. Not called from the constructor, so the thread
+     * never sees a partly constructed queue.
+     */
+    @PostConstruct
+    void start() {
+        thread = new Thread(this::run, "score-ingestion");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * The writer loop: waits for scores and stores them until shut down.
+     */
+    private void run() {
+        while (running || !queue.isEmpty()) {
+            try {
+                ScoreUpload first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    List<ScoreUpload> batch = new ArrayList<ScoreUpload>(batchSize);
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    replaySpillIfDue();
+                    flush(batch);
+                }
+                flushPending();
+            } catch (InterruptedException e) {
+                running = false;
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Stores a batch, spilling what could not be stored if the database is
+     * unavailable, or all of it if older scores are still waiting in the spill
+     * file.
+     */
+    private void flush(List<ScoreUpload> batch) {
+        int done = spillPending > 0 ? 0 : store(batch);
+        if (done < batch.size()) {
+            spill(batch.subList(done, batch.size()));
+        }
+    }
+
+    /**
+     * Stores a batch, splitting it in halves while the database rejects it so
+     * that only the scores it rejects on their own are dead-lettered. Stops at
+     * the first score that could not be stored because the database is
+     * unavailable.
+     *
+     * @return - the number of scores, from the start of the batch, that were
+     *         stored, skipped or dead-lettered
+     */
+    private int store(List<ScoreUpload> batch) {
+        String error = write(batch);
+        if (error.equals("")) {
+            return batch.size();
+        }
+        if (error.equals(DatabaseClient.UNAVAILABLE)) {
+            lastFailureNanos = System.nanoTime();
+            return 0;
+        }
+        if (batch.size() == 1) {
+            deadLetter(batch.get(0), error);
+            return 1;
+        }
+        int half = batch.size() / 2;
+        int done = store(batch.subList(0, half));
+        if (done < half) {
+            return done;
+        }
+        return half + store(batch.subList(half, batch.size()));
+    }
+
+    /**
+     * Writes a batch to the database and records the metrics.
+     *
+     * @return - Empty string if the batch was written, error message otherwise
+     */
+    private String write(List<ScoreUpload> batch) {
+        List<ScoreUpload> written = new ArrayList<ScoreUpload>(batch.size());
+        long start = System.nanoTime();
+        String error = writer.write(batch, written);
+        long elapsed = System.nanoTime() - start;
+        if (!error.equals("")) {
+            System.out.println("Could not store " + batch.size() + " scores: " + error);
+            return error;
+        }
+        flushes.incrementAndGet();
+        flushNanos.addAndGet(elapsed);
+        maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+        stored.addAndGet(written.size());
+        skipped.addAndGet(batch.size() - written.size());
+        for (ScoreUpload upload : written) {
+            onStored.accept(upload);
+        }
+        return "";
+    }
+
+    /**
+     * Appends a batch to the spill file and syncs it to disk. If even that
+     * fails the batch is lost, which is logged.
+     */
+    private void spill(List<ScoreUpload> batch) {
+        try {
+            append(spillFile, batch);
+            spillPending += batch.size();
+            spilled.addAndGet(batch.size());
+        } catch (IOException e) {
+            System.out.println("Could not spill " + batch.size() + " scores, they are lost: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Appends a score the database rejected to the dead letter file, where it
+     * is kept for an operator instead of being retried.
+     */
+    private void deadLetter(ScoreUpload upload, String error) {
+        System.out.println("Rejected score " + upload.toLine() + ": " + error);
+        try {
+            append(deadLetterFile, List.of(upload));
+            deadLettered.incrementAndGet();
+        } catch (IOException e) {
+            System.out.println("Could not dead-letter a score, it is lost: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Appends scores to a file, one line each, and syncs it to disk.
+     */
+    private static void append(Path file, List<ScoreUpload> scores) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (ScoreUpload upload : scores) {
+            lines.append(upload.toLine()).append('\n');
+        }
+        try (FileOutputStream out = new FileOutputStream(file.toFile(), true)) {
+            out.write(lines.toString().getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        }
+    }
+
+    /**
+     * Writes the spill file to the database, oldest first, if it holds scores
+     * and the retry interval has passed since the last failure. Scores that
+     * could not be stored because the database is unavailable stay in the
+     * file.
+     */
+    private void replaySpillIfDue() {
+        if (spillPending == 0 || System.nanoTime() - lastFailureNanos < retryNanos) {
+            return;
+        }
+        List<ScoreUpload> pending = readSpill();
+        int done = 0;
+        while (done < pending.size()) {
+            List<ScoreUpload> batch = pending.subList(done, Math.min(done + batchSize, pending.size()));
+            int handled = store(batch);
+            done += handled;
+            if (handled < batch.size()) {
+                break;
+            }
+        }
+        try {
+            if (done == pending.size()) {
+                Files.deleteIfExists(spillFile);
+            } else if (done > 0) {
+                // Keep the rest, replacing the file in one step
+                Path rest = spillFile.resolveSibling(spillFile.getFileName() + ".tmp");
+                List<String> lines = new ArrayList<String>(pending.size() - done);
+                for (ScoreUpload upload : pending.subList(done, pending.size())) {
+                    lines.add(upload.toLine());
+                }
+                Files.write(rest, lines, StandardCharsets.UTF_8);
+                Files.move(rest, spillFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            spillPending = pending.size() - done;
+        } catch (IOException e) {
+            // The stored scores may be replayed again, which is logged
+            System.out.println("Could not update the spill file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads every score in the spill file, skipping malformed lines.
+     */
+    private List<ScoreUpload> readSpill() {
+        List<ScoreUpload> pending = new ArrayList<ScoreUpload>();
+        if (!Files.exists(spillFile)) {
+            return pending;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(spillFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                ScoreUpload upload = ScoreUpload.fromLine(line);
+                if (upload != null) {
+                    pending.add(upload);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Could not read the spill file: " + e.getMessage());
+        }
+        return pending;
+    }
+}
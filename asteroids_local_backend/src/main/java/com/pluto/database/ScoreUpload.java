@@ -0,0 +1,109 @@
+package com.pluto.database;
+
+/**
+ * A game result waiting to be stored in the Scores table.
+ */
+public class ScoreUpload {
+    /* The user and the profile the game was played on */
+    private final String username;
+    private final String profileName;
+
+    /* The difficulty of the game: "EASY", "MEDIUM" or "HARD" */
+    private final String difficulty;
+
+    /* The results of the game */
+    private final int score;
+    private final int level;
+    private final int duration;
+
+    /**
+     * Constructor for a ScoreUpload.
+     *
+     * @param username    - username of the user
+     * @param profileName - profile name of the user
+     * @param difficulty  - difficulty of the game
+     * @param score       - score reached
+     * @param level       - level reached
+     * @param duration    - duration of the game in seconds
+     */
+    public ScoreUpload(String username, String profileName, String difficulty, int score, int level,
+            int duration) {
+        this.username = username;
+        this.profileName = profileName;
+        this.difficulty = difficulty;
+        this.score = score;
+        this.level = level;
+        this.duration = duration;
+    }
+
+    /**
+     * @return - the username of the user
+     */
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * @return - the profile name of the user
+     */
+    public String getProfileName() {
+        return profileName;
+    }
+
+    /**
+     * @return - the difficulty of the game
+     */
+    public String getDifficulty() {
+        return difficulty;
+    }
+
+    /**
+     * @return - the score reached
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * @return - the level reached
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * @return - the duration of the game in seconds
+     */
+    public int getDuration() {
+        return duration;
+    }
+
+    /**
+     * Converts this upload to one tab separated line of the spill file. Names
+     * only contain letters, digits and underscores, so they need no escaping.
+     *
+     * @return - the line, without a line break
+     */
+    public String toLine() {
+        return username + "\t" + profileName + "\t" + difficulty + "\t" + score + "\t" + level + "\t" + duration;
+    }
+
+    /**
+     * Parses a line written by toLine.
+     *
+     * @param line - the line
+     * @return - the upload, or null if the line is malformed
+     */
+    public static ScoreUpload fromLine(String line) {
+        String[] fields = line.split("\t", -1);
+        if (fields.length != 6) {
+            return null;
+        }
+        try {
+            return new ScoreUpload(fields[0], fields[1], fields[2], Integer.parseInt(fields[3]),
+                    Integer.parseInt(fields[4]), Integer.parseInt(fields[5]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
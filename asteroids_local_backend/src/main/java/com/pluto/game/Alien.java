@@ -1,5 +1,7 @@
 package com.pluto.game;
 
+import java.util.SplittableRandom;
+
 /**
  * Class to represent Alien objects.
  */
@@ -30,15 +32,28 @@ public class Alien extends ShooterEnemy {
     /* Health of an Alien object */
     private static int ALIEN_HEALTH = 15;
 
+    /* The hitbox shared by every Alien */
+    private static final HitBox HITBOX = HitBox.circle(25);
+
+    /*
+     * The 8 directions of an explosive attack: n, s, e, w, ne, nw, se, sw.
+     * Stored as x and y components so no direction vectors are allocated.
+     */
+    private static final float[] EXPLODE_DIRECTION_X = { 0, 0, 1, -1, 1, -1, 1, -1 };
+    private static final float[] EXPLODE_DIRECTION_Y = { 1, -1, 0, 0, 1, 1, -1, -1 };
+
     /**
-     * Constructor for the Alien.
+     * Constructor for the Alien. Aliens follow their own path, so they have
+     * no velocity.
      *
-     * @param position - the position to spawn the Alien
-     * @param velocity - the velocity of this Alien, which is unused
+     * @param store  - the store holding the state of the game's entities
+     * @param x      - the x coordinate to spawn the Alien at
+     * @param y      - the y coordinate to spawn the Alien at
+     * @param random - the game's random generator, used to pick paths
      */
-    public Alien(Vector2D<Float> position, Vector2D<Float> velocity) {
-        super(position, velocity, 0.0f, null, EnemyType.ALIEN, ALIEN_HEALTH);
-        this.hitbox = new HitBox[] { new HitBox(position.x, position.y, 25) };
+    public Alien(EntityStore store, float x, float y, SplittableRandom random) {
+        super(store, x, y, 0.0f, 0.0f, 0.0f, HITBOX,
+                EnemyType.ALIEN, ALIEN_HEALTH, random);
         isCharging = false;
     }
 
@@ -61,12 +76,11 @@ public class Alien extends ShooterEnemy {
 
     /**
      * Explodes and shoots 8 bullets in the cardinal directions, if the Alien
-     * is able to. It otherwise returns an empty array.
+     * is able to.
      *
-     * @return - An array of bullets or an empty array, depending on the Alien's
-     *         internal time
+     * @param bullets - the pool of enemy bullets to fire from
      */
-    private Bullet[] explode() {
+    private void explode(BulletPool bullets) {
         // First check if we can explode
         if (chargingTime >= TOTAL_CHARGE_TIME) {
             // Reset timers
@@ -78,30 +92,10 @@ public class Alien extends ShooterEnemy {
             resetPath();
 
             // Shoot in 8 directions
-            Bullet[] bullets = new Bullet[8];
-            Vector2D<Float> n, s, e, w, ne, nw, se, sw;
-            n = new Vector2D<Float>(0.0f, 1.0f);
-            s = new Vector2D<Float>(0.0f, -1.0f);
-            e = new Vector2D<Float>(1.0f, 0.0f);
-            w = new Vector2D<Float>(-1.0f, 0.0f);
-            ne = new Vector2D<Float>(1.0f, 1.0f);
-            nw = new Vector2D<Float>(-1.0f, 1.0f);
-            se = new Vector2D<Float>(1.0f, -1.0f);
-            sw = new Vector2D<Float>(-1.0f, -1.0f);
-
-            bullets[0] = new Bullet(getPosition(), n, 1);
-            bullets[1] = new Bullet(getPosition(), s, 1);
-            bullets[2] = new Bullet(getPosition(), e, 1);
-            bullets[3] = new Bullet(getPosition(), w, 1);
-            bullets[4] = new Bullet(getPosition(), ne, 1);
-            bullets[5] = new Bullet(getPosition(), nw, 1);
-            bullets[6] = new Bullet(getPosition(), se, 1);
-            bullets[7] = new Bullet(getPosition(), sw, 1);
-            return bullets;
+            for (int i = 0; i < EXPLODE_DIRECTION_X.length; i++) {
+                bullets.fire(getX(), getY(), EXPLODE_DIRECTION_X[i], EXPLODE_DIRECTION_Y[i], 1);
+            }
         }
-
-        // Cannot explode yet. Return an empty array
-        return new Bullet[0];
     }
 
     /**
@@ -109,37 +103,34 @@ public class Alien extends ShooterEnemy {
      * shoot several, or none at all, depending on the internal timers of this
      * Alien object.
      *
-     * @param playerPosition - the position of the player to shoot at.
-     * @return - an array of bullets to be shot, which may be empty.
+     * @param playerX - the x coordinate of the player to shoot at.
+     * @param playerY - the y coordinate of the player to shoot at.
+     * @param bullets - the pool of enemy bullets to fire from
      */
     @Override
-    public Bullet[] shootPlayer(Vector2D<Float> playerPosition) {
+    void shootPlayer(float playerX, float playerY, BulletPool bullets) {
         // First check if we are charging
         if (isCharging) {
-            // Try to explode. Will return an empty array if we cannot
-            return explode();
+            // Try to explode. Does nothing if we cannot
+            explode(bullets);
+            return;
         }
 
         // If we are not charging, try to shoot
         if (timeLastShot >= SHOOT_TIME) {
-            Bullet[] bullets = new Bullet[1];
             // x and y are coordinates of the direction vector from
             // the alien to the player
-            float x = playerPosition.x - getPosition().x;
-            float y = playerPosition.y - getPosition().y;
-            Vector2D<Float> direction = new Vector2D<>(x, y);
-            bullets[0] = new Bullet(getPosition(), direction, 1);
+            float x = playerX - getX();
+            float y = playerY - getY();
+            bullets.fire(getX(), getY(), x, y, 1);
 
             // Reset time since last shot
             timeLastShot = 0;
-            return bullets;
+            return;
         }
 
         // Now check if we can charge up
         if (timeLastExplode >= EXPLODE_TIME)
             isCharging = true;
-
-        // Cannot shoot yet, return no bullets
-        return new Bullet[0];
     }
 }
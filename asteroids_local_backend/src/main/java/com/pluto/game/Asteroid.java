@@ -14,9 +14,19 @@ public class Asteroid extends Enemy {
     private static final int MEDIUM_ASTROID_HEALTH = 5;
     private static final int SMALL_ASTROID_HEALTH = 1;
 
-    /* These enums determine the sizes of the asteroid objects */
-    static enum AsteroidSize {
-        SMALL, MEDIUM, LARGE, COMET
+    /*
+     * These enums determine the sizes of the asteroid objects. Each size
+     * holds the hitbox shared by every asteroid of that size.
+     */
+    public static enum AsteroidSize {
+        SMALL(25.0f), MEDIUM(50.0f), LARGE(100.0f), COMET(60.0f);
+
+        /* The hitbox of an asteroid of this size */
+        final HitBox hitbox;
+
+        private AsteroidSize(float radius) {
+            this.hitbox = HitBox.circle(radius);
+        }
     }
 
     /* Determines this asteroids size */
@@ -31,37 +41,28 @@ public class Asteroid extends Enemy {
     /**
      * Constructor for the Asteroid class.
      * 
-     * @param position    - the position of the asteroid
+     * @param store       - the store holding the state of the game's entities
+     * @param x           - the x coordinate of the asteroid
+     * @param y           - the y coordinate of the asteroid
+     * @param vx          - the x velocity of the asteroid
+     * @param vy          - the y velocity of the asteroid
      * @param orientation - the orientation of the asteroid
-     * @param velocity    - the velocity of the asteroid
      * @param size        - the size of the asteroid
      * @param rotVelocity - the rotation velocity of the asteroid
      */
-    public Asteroid(Vector2D<Float> position, Vector2D<Float> velocity,
+    public Asteroid(EntityStore store, float x, float y, float vx, float vy,
             float orientation, AsteroidSize size, float rotVelocity) {
-        super(position, velocity, orientation, null, EnemyType.ASTEROID, 0);
+        super(store, x, y, vx, vy, orientation, size.hitbox, EnemyType.ASTEROID, 0);
         this.size = size;
         this.rotVelocity = rotVelocity;
 
         if (size == AsteroidSize.SMALL) {
-            this.hitbox = new HitBox[] {
-                    new HitBox(this.getPosition().x, this.getPosition().y, 25.0f)
-            };
             setHealth(SMALL_ASTROID_HEALTH);
         } else if (size == AsteroidSize.MEDIUM) {
-            this.hitbox = new HitBox[] {
-                    new HitBox(this.getPosition().x, this.getPosition().y, 50.0f)
-            };
             setHealth(MEDIUM_ASTROID_HEALTH);
         } else if (size == AsteroidSize.LARGE) {
-            this.hitbox = new HitBox[] {
-                    new HitBox(this.getPosition().x, this.getPosition().y, 100.0f)
-            };
             setHealth(LARGE_ASTROID_HEALTH);
         } else {
-            this.hitbox = new HitBox[] {
-                    new HitBox(this.getPosition().x, this.getPosition().y, 60.0f)
-            };
             setType(EnemyType.COMET); // Set this type to a comet now
             setHealth(COMET_HEALTH);
         }
@@ -75,26 +76,23 @@ public class Asteroid extends Enemy {
      */
     @Override
     public void moveObj(float dt) {
-        Vector2D<Float> newPos = new Vector2D<Float>(getPosition().x + getVelocity().x * dt,
-                getPosition().y + getVelocity().y * dt);
-        this.setPosition(newPos);
+        this.setPosition(getX() + getVelocityX() * dt, getY() + getVelocityY() * dt);
         this.rotate(rotVelocity * dt);
     }
 
     /**
-     * Converts the Asteroid object to a JSON string.
+     * Appends the Asteroid object as a JSON object to the given builder.
      * Needs to return the position, orientation, hitbox, and size of the asteroid.
      *
-     * @return - A json formatted string representing this Asteroid object
+     * @param json - the builder to append to
      */
     @Override
-    public String toJson() {
-        String parentJson = super.toJson();
-        StringBuilder json = new StringBuilder();
-        json.append(parentJson.substring(0, parentJson.length() - 1));
-        json.append(", \"size\": ");
-        json.append("\"" + this.size.toString() + "\"");
-        json.append("}");
-        return json.toString();
+    public void appendJson(StringBuilder json) {
+        super.appendJson(json);
+        // Reopen the enemy's json object to add the size
+        json.setLength(json.length() - 1);
+        json.append(", \"size\": \"");
+        json.append(this.size.toString());
+        json.append("\"}");
     }
 }
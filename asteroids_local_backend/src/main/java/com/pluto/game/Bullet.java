@@ -15,6 +15,9 @@ public class Bullet extends Enemy {
     /* Health of all bullet objects */
     private static int BULLET_HEALTH = 1;
 
+    /* The hitbox shared by every bullet */
+    private static final HitBox HITBOX = HitBox.circle(5.0f);
+
     /* The time the bullet has been alive */
     private float timeAlive;
 
@@ -24,17 +27,16 @@ public class Bullet extends Enemy {
     /**
      * Constructor for the Bullet class.
      * 
-     * @param position    - the position of the bullet
+     * @param store       - the store holding the state of the game's entities
+     * @param x           - the x coordinate of the bullet
+     * @param y           - the y coordinate of the bullet
      * @param orientation - the orientation of the bullet
+     * @param damage      - the damage of this bullet.
      */
-    public Bullet(Vector2D<Float> position, float orientation, int damage) {
-        super(position, null, orientation, null, EnemyType.BULLET, BULLET_HEALTH);
-        this.setVelocity(
-                new Vector2D<Float>((float) Math.cos(orientation) * SPEED,
-                        (float) Math.sin(orientation) * SPEED));
-        this.hitbox = new HitBox[] {
-                new HitBox(new Vector2D<Float>(this.getPosition().x,
-                        this.getPosition().y), 5.0f) };
+    public Bullet(EntityStore store, float x, float y, float orientation, int damage) {
+        super(store, x, y, (float) Math.cos(orientation) * SPEED,
+                (float) Math.sin(orientation) * SPEED, orientation,
+                HITBOX, EnemyType.BULLET, BULLET_HEALTH);
         this.timeAlive = 0.0f;
         this.damage = damage;
     }
@@ -43,14 +45,37 @@ public class Bullet extends Enemy {
      * Constructs a bullet object given the starting position and direction.
      * Note that the speed is still determed by the SPEED constant.
      *
-     * @param position  - the starting position of this bullet.
-     * @param direction - the direction vector this bullet follows
-     * @param damage    - the damage of this bullet.
+     * @param store      - the store holding the state of the game's entities
+     * @param x          - the starting x coordinate of this bullet.
+     * @param y          - the starting y coordinate of this bullet.
+     * @param directionX - the x component of the direction this bullet follows
+     * @param directionY - the y component of the direction this bullet follows
+     * @param damage     - the damage of this bullet.
      */
-    public Bullet(Vector2D<Float> position, Vector2D<Float> direction, int damage) {
+    public Bullet(EntityStore store, float x, float y, float directionX, float directionY,
+            int damage) {
         // Converts the direction vector into an orientation
-        this(position, (float) Math.atan2(direction.y, direction.x), damage);
+        this(store, x, y, (float) Math.atan2(directionY, directionX), damage);
+    }
 
+    /**
+     * Brings back this bullet after it has been despawned, as a new bullet
+     * fired from the given position. The bullet takes a new slot and id in
+     * the store, so nothing is allocated.
+     *
+     * @param x           - the x coordinate of the bullet
+     * @param y           - the y coordinate of the bullet
+     * @param orientation - the orientation of the bullet
+     * @param damage      - the damage of this bullet.
+     */
+    void respawn(float x, float y, float orientation, int damage) {
+        spawn(x, y, (float) Math.cos(orientation) * SPEED,
+                (float) Math.sin(orientation) * SPEED, orientation);
+        setHitbox(HITBOX);
+        setType(EnemyType.BULLET);
+        setHealth(BULLET_HEALTH);
+        this.timeAlive = 0.0f;
+        this.damage = damage;
     }
 
     /**
@@ -69,10 +94,7 @@ public class Bullet extends Enemy {
      * @param dt - the amount of time since the last update
      */
     public void moveObj(float dt) {
-        Vector2D<Float> newPos = new Vector2D<Float>(
-                getPosition().x + getVelocity().x * dt,
-                getPosition().y + getVelocity().y * dt);
-        this.setPosition(newPos);
+        this.setPosition(getX() + getVelocityX() * dt, getY() + getVelocityY() * dt);
         this.timeAlive += dt;
     }
 
@@ -0,0 +1,223 @@
+package com.pluto.game;
+
+import java.util.Arrays;
+
+/**
+ * A preallocated ring buffer of the bullets of one side of a game, i.e. the
+ * player's or the enemies'. Every bullet lives for the same time and bullets
+ * of one pool all age at the same rate, so they expire in the order they were
+ * fired: expiring only advances the head of the ring, and firing reuses the
+ * Bullet object and hitbox of a slot that expired earlier.
+ *
+ * A bullet that is destroyed early, e.g. when it hits something, is despawned
+ * in place and its ring slot is skipped once the head reaches it. The ring
+ * grows when every slot between the head and the tail is taken, so after the
+ * first few seconds of a game firing and expiring allocate nothing.
+ *
+ * A pool is not thread safe and belongs to exactly one GameManager.
+ */
+class BulletPool {
+    /* Number of ring slots a pool starts with before it has to grow */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /* The store holding the state of the game's entities */
+    private final EntityStore store;
+
+    /* The grid the bullets are filed in, null if they are not collided against */
+    private final SpatialGrid grid;
+
+    /* How long in seconds a bullet lives before it expires */
+    private final float lifetime;
+
+    /*
+     * The bullets in firing order, starting at head. The length is a power of
+     * two so that indices wrap with a mask. A slot holds null until it is
+     * first used, and a despawned Bullet once its bullet is gone.
+     */
+    private Bullet[] ring;
+
+    /* Index of the oldest ring slot still in use */
+    private int head;
+
+    /* Number of ring slots in use from head on, alive or not */
+    private int span;
+
+    /* Number of bullets alive */
+    private int live;
+
+    /**
+     * Constructor for a BulletPool with the default capacity.
+     *
+     * @param store    - the store holding the state of the game's entities
+     * @param grid     - the collision grid to file bullets in, null for none
+     * @param lifetime - how long in seconds a bullet lives
+     */
+    BulletPool(EntityStore store, SpatialGrid grid, float lifetime) {
+        this(store, grid, lifetime, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor for a BulletPool. The pool grows past the given capacity
+     * when needed, so it only avoids growing early on.
+     *
+     * @param store    - the store holding the state of the game's entities
+     * @param grid     - the collision grid to file bullets in, null for none
+     * @param lifetime - how long in seconds a bullet lives
+     * @param capacity - the number of ring slots to preallocate
+     */
+    BulletPool(EntityStore store, SpatialGrid grid, float lifetime, int capacity) {
+        this.store = store;
+        this.grid = grid;
+        this.lifetime = lifetime;
+        this.ring = new Bullet[Integer.highestOneBit(Math.max(capacity, 1) * 2 - 1)];
+    }
+
+    /**
+     * Fires a bullet at the given orientation. The bullet takes a new slot
+     * and id in the store, but reuses the Bullet object of an expired one
+     * when there is one.
+     *
+     * @param x           - the x coordinate of the bullet
+     * @param y           - the y coordinate of the bullet
+     * @param orientation - the orientation of the bullet
+     * @param damage      - the damage of the bullet
+     * @return - the fired bullet
+     */
+    Bullet fire(float x, float y, float orientation, int damage) {
+        if (span == ring.length) {
+            grow();
+        }
+        int index = (head + span) & (ring.length - 1);
+        Bullet bullet = ring[index];
+        if (bullet == null) {
+            bullet = new Bullet(store, x, y, orientation, damage);
+            ring[index] = bullet;
+        } else {
+            bullet.respawn(x, y, orientation, damage);
+        }
+        span++;
+        live++;
+        if (grid != null) {
+            grid.update(bullet.slot, bullet.getX(), bullet.getY(), store.radius[bullet.slot]);
+        }
+        return bullet;
+    }
+
+    /**
+     * Fires a bullet in the given direction.
+     *
+     * @param x          - the x coordinate of the bullet
+     * @param y          - the y coordinate of the bullet
+     * @param directionX - the x component of the direction of the bullet
+     * @param directionY - the y component of the direction of the bullet
+     * @param damage     - the damage of the bullet
+     * @return - the fired bullet
+     */
+    Bullet fire(float x, float y, float directionX, float directionY, int damage) {
+        return fire(x, y, (float) Math.atan2(directionY, directionX), damage);
+    }
+
+    /**
+     * Moves every bullet by one time step.
+     *
+     * @param dt - the amount of time since the last update
+     */
+    void move(float dt) {
+        for (int i = 0; i < span; i++) {
+            Bullet bullet = ring[(head + i) & (ring.length - 1)];
+            if (bullet.slot >= 0) {
+                bullet.moveObj(dt);
+            }
+        }
+    }
+
+    /**
+     * Despawns the bullets that have been alive longer than the lifetime.
+     * Only the oldest bullets are looked at, so this stops at the first
+     * bullet that is still young enough.
+     */
+    void expire() {
+        while (span > 0) {
+            Bullet bullet = ring[head];
+            if (bullet.slot >= 0) {
+                if (bullet.getTimeAlive() <= lifetime) {
+                    return;
+                }
+                release(bullet);
+            }
+            head = (head + 1) & (ring.length - 1);
+            span--;
+        }
+    }
+
+    /**
+     * Despawns a bullet of this pool before it expires. Releasing a bullet
+     * that is already gone does nothing.
+     *
+     * @param bullet - the bullet to despawn
+     */
+    void release(Bullet bullet) {
+        if (bullet.slot < 0) {
+            return;
+        }
+        if (grid != null) {
+            grid.remove(bullet.slot);
+        }
+        bullet.despawn();
+        live--;
+    }
+
+    /**
+     * Despawns every bullet.
+     */
+    void clear() {
+        for (int i = 0; i < span; i++) {
+            release(ring[(head + i) & (ring.length - 1)]);
+        }
+        head = 0;
+        span = 0;
+    }
+
+    /**
+     * Returns the number of bullets alive.
+     *
+     * @return - the number of bullets
+     */
+    int size() {
+        return live;
+    }
+
+    /**
+     * Returns the number of ring slots in use, alive or not. Together with
+     * get it walks the bullets in firing order without an iterator.
+     *
+     * @return - the number of slots to walk
+     */
+    int span() {
+        return span;
+    }
+
+    /**
+     * Returns the bullet in the given ring slot, counted from the oldest.
+     *
+     * @param i - the slot, from 0 to span() - 1
+     * @return - the bullet, or null if it is gone
+     */
+    Bullet get(int i) {
+        Bullet bullet = ring[(head + i) & (ring.length - 1)];
+        return bullet.slot >= 0 ? bullet : null;
+    }
+
+    /**
+     * Doubles the ring once every slot is in use, moving the slots to its
+     * start in firing order.
+     */
+    private void grow() {
+        Bullet[] grown = new Bullet[ring.length * 2];
+        for (int i = 0; i < span; i++) {
+            grown[i] = ring[(head + i) & (ring.length - 1)];
+        }
+        ring = grown;
+        head = 0;
+    }
+}
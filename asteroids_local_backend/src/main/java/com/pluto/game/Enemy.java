@@ -5,21 +5,21 @@ package com.pluto.game;
  * player has to defeat.
  */
 public abstract class Enemy extends SpawnableEntity {
-    /* Type of this enemy. */
-    private EnemyType enemyType;
-
-    /* Health of this Enemy object. */
-    private int health;
+    /*
+     * Cached copy of EnemyType.values(), which clones its array on every
+     * call. The type and health of an enemy are kept in its store slot.
+     */
+    private static final EnemyType[] TYPES = EnemyType.values();
 
     /**
      * Constructor for the Enemy class. Ensures that all data members are
      * initialized for derived classes.
      */
-    public Enemy(Vector2D<Float> position, Vector2D<Float> velocity,
-            float orientation, HitBox[] hitbox, EnemyType type, int health) {
-        super(position, velocity, orientation, hitbox);
-        this.enemyType = type;
-        this.health = health;
+    public Enemy(EntityStore store, float x, float y, float vx, float vy,
+            float orientation, HitBox hitbox, EnemyType type, int health) {
+        super(store, x, y, vx, vy, orientation, hitbox);
+        store.type[slot] = type.ordinal();
+        store.health[slot] = health;
     }
 
     /**
@@ -33,7 +33,7 @@ public abstract class Enemy extends SpawnableEntity {
         if (damage < 0) {
             return;
         }
-        this.health = Math.max(0, this.health - damage);
+        store.health[slot] = Math.max(0, store.health[slot] - damage);
     }
 
     /**
@@ -42,7 +42,18 @@ public abstract class Enemy extends SpawnableEntity {
      * @return - the health of this Enemy object.
      */
     protected int getHealth() {
-        return this.health;
+        return store.health[slot];
+    }
+
+    /**
+     * Whether this Enemy object has run out of health. A destroyed enemy
+     * stays in the game's lists until the end of the update that destroyed
+     * it, and is skipped by collisions until then.
+     *
+     * @return - true if the health of this Enemy object is 0
+     */
+    protected boolean isDestroyed() {
+        return store.health[slot] == 0;
     }
 
     /**
@@ -53,7 +64,7 @@ public abstract class Enemy extends SpawnableEntity {
      */
     protected void setHealth(int health) {
         health = Math.max(health, 0);
-        this.health = health;
+        store.health[slot] = health;
     }
 
     /**
@@ -65,7 +76,7 @@ public abstract class Enemy extends SpawnableEntity {
      * Returns the type of this enemy object.
      */
     public EnemyType type() {
-        return this.enemyType;
+        return TYPES[store.type[slot]];
     }
 
     /**
@@ -74,7 +85,7 @@ public abstract class Enemy extends SpawnableEntity {
      * @param type - the type of this enemy object.
      */
     public void setType(EnemyType type) {
-        this.enemyType = type;
+        store.type[slot] = type.ordinal();
     }
 
     /**
@@ -84,18 +95,23 @@ public abstract class Enemy extends SpawnableEntity {
      */
     public String toJson() {
         StringBuilder json = new StringBuilder();
+        appendJson(json);
+        return json.toString();
+    }
+
+    /**
+     * Appends this enemy object as a JSON object to the given builder. This
+     * is the same format as toJson, without building an intermediate string.
+     *
+     * @param json - the builder to append to
+     */
+    public void appendJson(StringBuilder json) {
         json.append("{\"type\": \"");
         json.append(this.type().toString());
-        json.append("\", \"position\": ");
-        json.append(this.getPosition().toJson());
-        json.append(", \"orientation\": ");
-        json.append(this.getOrientation());
-        json.append(", \"hitbox\": [");
-        for (int i = 0; i < this.hitbox.length; i++) {
-            json.append(this.hitbox[i].toJson());
-        }
-        json.append("]");
+        json.append("\", ");
+        appendPositionJson(json);
+        json.append(", \"hitbox\": ");
+        appendHitboxJson(json);
         json.append("}");
-        return json.toString();
     }
 }
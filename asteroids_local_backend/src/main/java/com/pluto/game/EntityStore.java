@@ -0,0 +1,197 @@
+package com.pluto.game;
+
+import java.util.Arrays;
+
+/**
+ * Structure-of-arrays storage for the simulation state of every entity in one
+ * game. Each entity owns a slot, and its position, velocity, orientation,
+ * bounding radius, type and health live at that index of the parallel
+ * primitive arrays below. SpawnableEntity objects are thin views that read and
+ * write their own slot, so moving the world each frame only touches primitive
+ * arrays and never boxes a Float or allocates a Vector2D.
+ *
+ * Slots are recycled through a free list, so a slot index stays valid for the
+ * whole lifetime of the entity that owns it. A store is not thread safe and
+ * belongs to exactly one GameManager.
+ */
+public class EntityStore {
+    /* Type code stored for entities that are not enemies, i.e. the player */
+    static final int NO_TYPE = -1;
+
+    /* Number of slots a store starts with before it has to grow */
+    private static final int DEFAULT_CAPACITY = 64;
+
+    /* Centre position of the entity in each slot */
+    float[] x;
+    float[] y;
+
+    /* Velocity of the entity in each slot */
+    float[] vx;
+    float[] vy;
+
+    /* Orientation in radians of the entity in each slot */
+    float[] orientation;
+
+    /*
+     * Distance from the centre of the entity to the furthest edge of its
+     * hitbox. Any collision with the entity happens within this radius.
+     */
+    float[] radius;
+
+    /* EnemyType ordinal of the entity in each slot, or NO_TYPE */
+    int[] type;
+
+    /* Health of the entity in each slot */
+    int[] health;
+
+    /*
+     * Id of the entity in each slot. Unlike slots, ids are never reused within
+     * a game, so clients can track an entity across snapshots by its id.
+     */
+    int[] id;
+
+    /* Id handed to the next entity */
+    private int nextId = 1;
+
+    /* The entity viewing each slot, null if the slot is free */
+    private SpawnableEntity[] owners;
+
+    /* Stack of slots below highWater that have been freed */
+    private int[] freeSlots;
+    private int freeCount;
+
+    /* One past the highest slot that has ever been handed out */
+    private int highWater;
+
+    /* Number of slots currently owned by an entity */
+    private int liveCount;
+
+    /**
+     * Constructor for an EntityStore with the default capacity.
+     */
+    public EntityStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor for an EntityStore. The store grows past the given capacity
+     * when needed, so it only avoids reallocating the arrays early on.
+     *
+     * @param capacity - the number of slots to preallocate
+     */
+    public EntityStore(int capacity) {
+        capacity = Math.max(capacity, 1);
+        x = new float[capacity];
+        y = new float[capacity];
+        vx = new float[capacity];
+        vy = new float[capacity];
+        orientation = new float[capacity];
+        radius = new float[capacity];
+        type = new int[capacity];
+        health = new int[capacity];
+        id = new int[capacity];
+        owners = new SpawnableEntity[capacity];
+        freeSlots = new int[capacity];
+    }
+
+    /**
+     * Hands out a slot for the given entity. The slot's values are cleared.
+     *
+     * @param owner - the entity that will view the slot
+     * @return - the index of the slot
+     */
+    int allocate(SpawnableEntity owner) {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (highWater == owners.length) {
+                grow();
+            }
+            slot = highWater++;
+        }
+        owners[slot] = owner;
+        x[slot] = 0;
+        y[slot] = 0;
+        vx[slot] = 0;
+        vy[slot] = 0;
+        orientation[slot] = 0;
+        radius[slot] = 0;
+        type[slot] = NO_TYPE;
+        health[slot] = 0;
+        id[slot] = nextId++;
+        liveCount++;
+        return slot;
+    }
+
+    /**
+     * Returns a slot to the store so that it can be reused by a later entity.
+     * Freeing a slot that is already free does nothing.
+     *
+     * @param slot - the index of the slot to free
+     */
+    void free(int slot) {
+        if (slot < 0 || slot >= highWater || owners[slot] == null) {
+            return;
+        }
+        owners[slot] = null;
+        freeSlots[freeCount++] = slot;
+        liveCount--;
+    }
+
+    /**
+     * Returns the entity viewing the given slot.
+     *
+     * @param slot - the index of the slot
+     * @return - the entity owning the slot, or null if the slot is free
+     */
+    SpawnableEntity owner(int slot) {
+        return owners[slot];
+    }
+
+    /**
+     * Returns one past the highest slot that has ever been handed out. Every
+     * live slot is below this value.
+     *
+     * @return - the upper bound of live slot indices
+     */
+    int highWater() {
+        return highWater;
+    }
+
+    /**
+     * Returns the number of entities currently held by this store.
+     *
+     * @return - the number of live slots
+     */
+    public int size() {
+        return liveCount;
+    }
+
+    /**
+     * Returns the number of slots this store can hold before it has to grow.
+     *
+     * @return - the length of the backing arrays
+     */
+    public int capacity() {
+        return owners.length;
+    }
+
+    /**
+     * Doubles the length of every backing array.
+     */
+    private void grow() {
+        int capacity = owners.length * 2;
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        vx = Arrays.copyOf(vx, capacity);
+        vy = Arrays.copyOf(vy, capacity);
+        orientation = Arrays.copyOf(orientation, capacity);
+        radius = Arrays.copyOf(radius, capacity);
+        type = Arrays.copyOf(type, capacity);
+        health = Arrays.copyOf(health, capacity);
+        id = Arrays.copyOf(id, capacity);
+        owners = Arrays.copyOf(owners, capacity);
+        freeSlots = Arrays.copyOf(freeSlots, capacity);
+    }
+}
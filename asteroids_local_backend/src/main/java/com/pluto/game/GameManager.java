@@ -1,13 +1,15 @@
 package com.pluto.game;
 
 import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.ListIterator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 
 /**
@@ -17,14 +19,43 @@ import java.nio.file.Paths;
  */
 public class GameManager {
 
+    /* Holds the position, velocity and health of every entity in this game */
+    private EntityStore store;
+
+    /* Broad phase for collisions against enemies, holds every enemy's slot */
+    private SpatialGrid grid;
+
+    /*
+     * Whether collisions are found through the spatial grid. If false, every
+     * pair is tested directly, which is kept for comparison.
+     */
+    private boolean useSpatialHash;
+
     /* The player object */
     private Spaceship player;
 
-    /* The list of asteroids */
-    private ArrayList<Enemy> enemies;
+    /*
+     * The enemies, one list per class so that every per-frame loop calls the
+     * same methods on every element and the JIT can inline them. Comets are
+     * asteroids that turn into aliens, so they share the asteroids list.
+     */
+    private ArrayList<Asteroid> asteroids;
+    private ArrayList<Alien> aliens;
+
+    /*
+     * Command buffer of the enemies spawned and destroyed during the current
+     * update. They join and leave the enemy lists once the update is done,
+     * so the lists never change while they are walked. Destroyed enemies leave
+     * the grid at once, so no later collision finds them.
+     */
+    private ArrayList<Enemy> spawned;
+    private ArrayList<Enemy> destroyed;
+
+    /* The bullets of the player */
+    private BulletPool playerBullets;
 
-    /* The list of bullets */
-    private ArrayList<Bullet> playerBullets;
+    /* The bullets of the enemies, filed in the grid like other enemies */
+    private BulletPool enemyBullets;
 
     /* The time in seconds the game has been running */
     private float time;
@@ -35,15 +66,24 @@ public class GameManager {
     /* The current level */
     private int level;
 
-    /* Contains data per each level */
-    private JSONObject levelData;
-
     /* Whether or not the game is running */
     public boolean is_running;
 
     /* The difficulty of the game */
     private Difficulty difficulty;
 
+    /*
+     * The seed of this game and the generator all of its randomness comes
+     * from. The generator is not thread safe; a game is only stepped by one
+     * thread at a time. Two games with the same seed, difficulty and inputs
+     * play out the same.
+     */
+    private long seed;
+    private SplittableRandom random;
+
+    /* Records every update to a replay log, null if the game is not recorded */
+    private ReplayLog.Recorder recorder;
+
     /*
      * Width and height of the screen. These are units that can be scaled to fit
      * window
@@ -51,6 +91,16 @@ public class GameManager {
     private static final int SCREEN_WIDTH = 1000;
     private static final int SCREEN_HEIGHT = 1000;
 
+    /* Width and height of one cell of the collision grid */
+    private static final int GRID_CELL_SIZE = 100;
+
+    /*
+     * System property that makes new games test every pair of entities for
+     * collisions instead of using the spatial grid, e.g.
+     * -Dasteroids.bruteForceCollisions=true
+     */
+    public static final String BRUTE_FORCE_COLLISIONS_PROPERTY = "asteroids.bruteForceCollisions";
+
     /* The maximum number of bullets allowed at a time */
     private static final int MAX_BULLETS = 10;
 
@@ -72,25 +122,64 @@ public class GameManager {
     /* How much score for completing a level */
     private static final int SCORE_PER_LEVEL = 100;
 
+    /*
+     * Rough heap cost of a game, used to estimate the memory held by live
+     * sessions: a fixed part for the manager, its lists and parsed level data,
+     * the cost of one store and grid slot, and the cost of the objects behind
+     * one live entity. Hitboxes are shared per shape, so an entity costs
+     * little more than its own object.
+     */
+    private static final long BASE_BYTES = 24 * 1024;
+    private static final long BYTES_PER_SLOT = 52;
+    private static final long BYTES_PER_ENTITY = 56;
+
     /* Default path to level data */
     private static final String LEVEL_DATA_PATH = 
         "src/main/java/com/pluto/game/LevelData.json";
 
+    /*
+     * Contains data per each level, null if it could not be read. It is read
+     * once and only ever read from, so every game shares it.
+     */
+    private static final JSONObject LEVEL_DATA = readLevelData(LEVEL_DATA_PATH);
+
     /**
      * Constructor for the GameManager class. Initializes the player, enemies, and
      * bullets.
-     * Spawns the starting asteroids and sets the game to running.
+     * Spawns the starting asteroids and sets the game to running. The game
+     * gets a random seed.
+     *
+     * @param difficulty - the difficulty of the game
      */
     public GameManager(Difficulty difficulty) {
-        this.player = new Spaceship();
-        this.enemies = new ArrayList<Enemy>();
-        this.playerBullets = new ArrayList<Bullet>();
+        this(difficulty, ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Constructor for a GameManager whose randomness comes from the given
+     * seed, so that the game can be replayed.
+     *
+     * @param difficulty - the difficulty of the game
+     * @param seed       - the seed of the game's random generator
+     */
+    public GameManager(Difficulty difficulty, long seed) {
+        this.seed = seed;
+        this.random = new SplittableRandom(seed);
+        this.store = new EntityStore();
+        this.grid = new SpatialGrid(SCREEN_WIDTH, SCREEN_HEIGHT, GRID_CELL_SIZE, store.capacity());
+        this.useSpatialHash = !Boolean.getBoolean(BRUTE_FORCE_COLLISIONS_PROPERTY);
+        this.player = new Spaceship(store);
+        this.asteroids = new ArrayList<Asteroid>();
+        this.aliens = new ArrayList<Alien>();
+        this.spawned = new ArrayList<Enemy>();
+        this.destroyed = new ArrayList<Enemy>();
+        this.playerBullets = new BulletPool(store, null, BULLET_LIFETIME, MAX_BULLETS);
+        this.enemyBullets = new BulletPool(store, grid, BULLET_LIFETIME);
         this.time = 0.0f;
         this.score = 0;
         this.level = 1;
         this.difficulty = difficulty;
         is_running = true;
-        readLevelData(LEVEL_DATA_PATH);
         startCurrentLevel();
     }
 
@@ -98,40 +187,43 @@ public class GameManager {
      * Updates the game by one frame. It updates the player, enemies, and bullets.
      * Checks for and handles collisions and updates the score and time.
      * 
-     * @param dt    - the amount of time in seconds since the last update
-     * @param input - the player inputs
+     * @param dt     - the amount of time in seconds since the last update
+     * @param inputs - the player inputs, as a bitmask of Spaceship.Input bits
      */
-    public void update(float dt, Spaceship.Input[] input) {
+    public void update(float dt, int inputs) {
         if (dt == 0) {
             return;
         }
+        if (recorder != null) {
+            try {
+                recorder.record(dt, inputs);
+            } catch (IOException e) {
+                System.out.println("Could not record the game: " + e.getMessage());
+                stopRecording();
+            }
+        }
 
-        // Move all objects
-        player.moveObj(dt, input);
-        for (Enemy enemy : enemies) {
-            enemy.moveObj(dt * difficulty.getEnemySpeedMultiplier());
+        // Move all objects. Indexed loops avoid allocating an iterator per
+        // frame.
+        player.moveObj(dt, inputs);
+        float enemyDt = dt * difficulty.getEnemySpeedMultiplier();
+        for (int i = 0; i < asteroids.size(); i++) {
+            asteroids.get(i).moveObj(enemyDt);
         }
-        for (Bullet bullet : playerBullets) {
-            bullet.moveObj(dt);
+        for (int i = 0; i < aliens.size(); i++) {
+            aliens.get(i).moveObj(enemyDt);
         }
+        enemyBullets.move(enemyDt);
+        playerBullets.move(dt);
 
         // Handle enemy shooting
-        ListIterator<Enemy> enemyIterator = enemies.listIterator();
-        while (enemyIterator.hasNext()) {
-            Enemy enemy = enemyIterator.next();
-            if (!(enemy instanceof ShooterEnemy))
-                continue;
-            Bullet[] enemyBullets = ((ShooterEnemy) enemy).shootPlayer(player.getPosition());
-            for (Bullet bullet : enemyBullets) {
-                enemyIterator.add(bullet);
-            }
+        for (int i = 0; i < aliens.size(); i++) {
+            aliens.get(i).shootPlayer(player.getX(), player.getY(), enemyBullets);
         }
 
         // Shoot bullets
-        for (Spaceship.Input i : input) {
-            if (i == Spaceship.Input.SHOOT) {
-                playerShoot();
-            }
+        if (Spaceship.Input.SHOOT.isIn(inputs)) {
+            playerShoot();
         }
 
         // Check for collisions
@@ -140,8 +232,11 @@ public class GameManager {
         // Despawn old bullets
         despawnBullets();
 
+        // Apply the spawns and kills of this frame
+        applyEnemyChanges();
+
         // Check if all enemies are destroyed and if so, handle new level
-        if (enemies.size() == 0) {
+        if (asteroids.isEmpty() && aliens.isEmpty() && enemyBullets.size() == 0) {
             playerBullets.clear();
             score += SCORE_PER_LEVEL * level * difficulty.getScoreMultiplier();
             level++;
@@ -151,32 +246,51 @@ public class GameManager {
         // Update time
         if (is_running) {
             time += dt;
+        } else {
+            stopRecording();
         }
     }
 
     /**
-     * Despawns old Bullet objects. A Bullet is considered old if its
-     * time alive is greater than BULLET_LIFETIME.
+     * Starts recording every update of this game to a new replay log, until
+     * the game is over or stopRecording is called. Must be called before the
+     * first update, since a replay starts from the beginning of the game.
+     *
+     * @see ReplayLog - for the log format
+     *
+     * @param file - the log file to create
+     * @throws IOException - if the file cannot be created
      */
-    private void despawnBullets() {
-        // Despawn player bullets, uses iterator to avoid concurrent modification
-        // exception
-        Iterator<Bullet> bulletIterator = playerBullets.iterator();
-        while (bulletIterator.hasNext()) {
-            Bullet bullet = bulletIterator.next();
-            if (bullet.getTimeAlive() > BULLET_LIFETIME) {
-                bulletIterator.remove();
-            }
+    public void startRecording(Path file) throws IOException {
+        if (time != 0 || recorder != null) {
+            throw new IllegalStateException("Recording must start before the first update");
         }
+        recorder = new ReplayLog.Recorder(file, difficulty, useSpatialHash, seed);
+    }
 
-        // Despawn enemy bullets
-        Iterator<Enemy> enemyIterator = enemies.iterator();
-        while (enemyIterator.hasNext()) {
-            Enemy enemy = enemyIterator.next();
-            if (enemy instanceof Bullet
-                    && ((Bullet) enemy).getTimeAlive() > BULLET_LIFETIME)
-                enemyIterator.remove();
+    /**
+     * Stops recording and closes the replay log, if the game is recorded.
+     */
+    public void stopRecording() {
+        if (recorder == null) {
+            return;
+        }
+        try {
+            recorder.close();
+        } catch (IOException e) {
+            System.out.println("Could not close the replay log: " + e.getMessage());
         }
+        recorder = null;
+    }
+
+    /**
+     * Despawns old Bullet objects. A Bullet is considered old if its
+     * time alive is greater than BULLET_LIFETIME. Bullets expire in the order
+     * they were fired, so only the oldest ones are looked at.
+     */
+    private void despawnBullets() {
+        playerBullets.expire();
+        enemyBullets.expire();
     }
 
     /**
@@ -184,37 +298,147 @@ public class GameManager {
      * If a collision is detected, the appropriate action is taken.
      */
     private void checkAndHandleCollisions() {
-        // Check for collisions between bullets and asteroids
-        // Uses iterators to avoid concurrent modification exception
-        Iterator<Bullet> bulletIterator = playerBullets.iterator();
-        while (bulletIterator.hasNext()) {
-            Bullet bullet = bulletIterator.next();
-            Iterator<Enemy> enemyIterator = enemies.iterator();
-            while (enemyIterator.hasNext()) {
-                Enemy enemy = enemyIterator.next();
-                if (!bullet.collidesWith(enemy)) {
-                    continue;
+        // Refile every enemy that moved into a new cell since the last frame.
+        // Destroyed enemies are taken out of the grid as it happens, and
+        // spawned ones are filed at the end of the frame.
+        if (useSpatialHash) {
+            for (int i = 0; i < asteroids.size(); i++) {
+                Asteroid asteroid = asteroids.get(i);
+                grid.update(asteroid.slot, asteroid.getX(), asteroid.getY(), store.radius[asteroid.slot]);
+            }
+            for (int i = 0; i < aliens.size(); i++) {
+                Alien alien = aliens.get(i);
+                grid.update(alien.slot, alien.getX(), alien.getY(), store.radius[alien.slot]);
+            }
+            for (int i = 0; i < enemyBullets.span(); i++) {
+                Bullet bullet = enemyBullets.get(i);
+                if (bullet != null) {
+                    grid.update(bullet.slot, bullet.getX(), bullet.getY(), store.radius[bullet.slot]);
                 }
+            }
+        }
 
-                // Hit enemy
-                enemy.takeDamage(bullet.dealsDamage() * difficulty.getBulletDamage());
-                if (enemy.getHealth() == 0)
-                    destroyEnemy(enemy);
-
-                bulletIterator.remove();
-                break;
+        // Check for collisions between bullets and enemies
+        for (int i = 0; i < playerBullets.span(); i++) {
+            Bullet bullet = playerBullets.get(i);
+            if (bullet == null) {
+                continue;
             }
+            Enemy enemy = findCollidingEnemy(bullet);
+            if (enemy == null) {
+                continue;
+            }
+
+            // Hit enemy
+            enemy.takeDamage(bullet.dealsDamage() * difficulty.getBulletDamage());
+            if (enemy.getHealth() == 0)
+                destroyEnemy(enemy);
+
+            playerBullets.release(bullet);
         }
 
         // Check for collisions between player and asteroids
-        for (Enemy enemy : enemies) {
-            if (player.collidesWith(enemy)) {
-                player.hit();
-                if (player.getLives() == 0) {
-                    gameOver();
+        if (useSpatialHash) {
+            int count = grid.query(player.getX(), player.getY(), store.radius[player.slot]);
+            int[] candidates = grid.candidates();
+            for (int i = 0; i < count; i++) {
+                handlePlayerCollision((Enemy) store.owner(candidates[i]));
+            }
+        } else {
+            for (int i = 0; i < asteroids.size(); i++) {
+                if (!asteroids.get(i).isDestroyed()) {
+                    handlePlayerCollision(asteroids.get(i));
+                }
+            }
+            for (int i = 0; i < aliens.size(); i++) {
+                if (!aliens.get(i).isDestroyed()) {
+                    handlePlayerCollision(aliens.get(i));
+                }
+            }
+            for (int i = 0; i < enemyBullets.span(); i++) {
+                Bullet bullet = enemyBullets.get(i);
+                if (bullet != null) {
+                    handlePlayerCollision(bullet);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds an enemy that collides with the given entity. Only enemies in the
+     * grid cells around the entity are tested, unless the spatial hash is
+     * disabled.
+     *
+     * Note that when the entity touches several enemies at once, the grid and
+     * the brute force search may return different ones of them.
+     *
+     * @param entity - the entity to test against every enemy
+     * @return - a colliding enemy, or null if there is none
+     */
+    private Enemy findCollidingEnemy(SpawnableEntity entity) {
+        if (!useSpatialHash) {
+            for (int i = 0; i < asteroids.size(); i++) {
+                Asteroid asteroid = asteroids.get(i);
+                if (!asteroid.isDestroyed() && entity.collidesWith(asteroid)) {
+                    return asteroid;
                 }
             }
+            for (int i = 0; i < aliens.size(); i++) {
+                Alien alien = aliens.get(i);
+                if (!alien.isDestroyed() && entity.collidesWith(alien)) {
+                    return alien;
+                }
+            }
+            for (int i = 0; i < enemyBullets.span(); i++) {
+                Bullet bullet = enemyBullets.get(i);
+                if (bullet != null && entity.collidesWith(bullet)) {
+                    return bullet;
+                }
+            }
+            return null;
+        }
+
+        int count = grid.query(entity.getX(), entity.getY(), store.radius[entity.slot]);
+        int[] candidates = grid.candidates();
+        for (int i = 0; i < count; i++) {
+            Enemy enemy = (Enemy) store.owner(candidates[i]);
+            if (entity.collidesWith(enemy)) {
+                return enemy;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Hits the player if it collides with the given enemy, and ends the game
+     * if the player runs out of lives.
+     *
+     * @param enemy - the enemy to test against the player
+     */
+    private void handlePlayerCollision(Enemy enemy) {
+        if (player.collidesWith(enemy)) {
+            player.hit();
+            if (player.getLives() == 0) {
+                gameOver();
+            }
+        }
+    }
+
+    /**
+     * Sets whether collisions are found through the spatial grid or by testing
+     * every pair of entities. They agree on whether an entity collides, but
+     * when it touches several enemies at once they may pick different ones,
+     * see findCollidingEnemy, so the same inputs can play out differently.
+     * The brute force path is kept to compare against. The mode is recorded
+     * in replay logs, so it cannot change while the game is recorded.
+     *
+     * @param useSpatialHash - true to use the spatial grid
+     */
+    public void setUseSpatialHash(boolean useSpatialHash) {
+        if (recorder != null && useSpatialHash != this.useSpatialHash) {
+            throw new IllegalStateException("The collision mode cannot change while recording");
         }
+        this.useSpatialHash = useSpatialHash;
     }
 
     /**
@@ -223,8 +447,7 @@ public class GameManager {
      */
     private void playerShoot() {
         if (playerBullets.size() < MAX_BULLETS) {
-            Bullet bullet = player.shootBullet();
-            playerBullets.add(bullet);
+            player.shootBullet(playerBullets);
         }
     }
 
@@ -236,13 +459,13 @@ public class GameManager {
         int numAsteroids;
         int numComets;
         int numAliens;
-        if (this.level > 22 || levelData == null) {
+        if (this.level > 22 || LEVEL_DATA == null) {
             numAsteroids = this.level;
             numComets = this.level / 5;
             numAliens = this.level / 15;
         } else {
             String lvl = this.level + "";
-            JSONObject currentLevelJson = this.levelData.getJSONObject(lvl);
+            JSONObject currentLevelJson = LEVEL_DATA.getJSONObject(lvl);
             // Get the number of enemies from the json file
             numAsteroids = currentLevelJson.getInt("ASTEROID");
             numComets = currentLevelJson.getInt("COMET");
@@ -257,6 +480,79 @@ public class GameManager {
         for (int i = 0; i < numAliens; i++) {
             spawnEnemy(EnemyType.ALIEN);
         }
+        applyEnemyChanges();
+    }
+
+    /**
+     * Spawns extra enemies of the given type on top of the current level.
+     * Used by benchmarks and tools to build worlds of a chosen size.
+     *
+     * @param type  - the EnemyType of the enemies to spawn
+     * @param count - the number of enemies to spawn
+     */
+    public void spawnEnemies(EnemyType type, int count) {
+        for (int i = 0; i < count; i++) {
+            spawnEnemy(type);
+        }
+        applyEnemyChanges();
+    }
+
+    /**
+     * Returns the number of enemies currently alive, including enemy bullets.
+     *
+     * @return - the number of enemies
+     */
+    public int getEnemyCount() {
+        return asteroids.size() + aliens.size() + enemyBullets.size();
+    }
+
+    /**
+     * Returns the asteroids and comets in play, in the order they are
+     * updated. The list is live and must not be modified.
+     *
+     * @return - the asteroids
+     */
+    List<Asteroid> getAsteroids() {
+        return asteroids;
+    }
+
+    /**
+     * Returns the seed of this game's random generator. A game created with
+     * the same seed and difficulty and given the same inputs plays out the
+     * same.
+     *
+     * @return - the seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Returns the current score.
+     *
+     * @return - the score
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Returns the current level.
+     *
+     * @return - the level
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Estimates the heap memory held by this game. The estimate follows the
+     * size of the entity store, so it grows with the number of entities.
+     *
+     * @return - the estimated size of this game in bytes
+     */
+    public long estimateMemoryBytes() {
+        return BASE_BYTES + BYTES_PER_SLOT * store.capacity() + BYTES_PER_ENTITY * store.size();
     }
 
     /**
@@ -271,49 +567,46 @@ public class GameManager {
         // PROTECTED_DISTANCE units away from the player
         // If not, it will try again up to 1000 times before giving up. The odds of this
         // happening are very very low.
-        float x = (float) (Math.random() * SCREEN_WIDTH);
-        float y = (float) (Math.random() * SCREEN_HEIGHT);
+        float x = (float) (random.nextDouble() * SCREEN_WIDTH);
+        float y = (float) (random.nextDouble() * SCREEN_HEIGHT);
         int maxAttempts = 1000;
         int attempts = 0;
         while (attempts < maxAttempts) {
-            x = (float) (Math.random() * SCREEN_WIDTH);
-            y = (float) (Math.random() * SCREEN_HEIGHT);
-            if (Math.sqrt(Math.pow(x - player.getPosition().x, 2)
-                    + Math.pow(y - player.getPosition().y, 2)) > PROTECTED_DISTANCE) {
+            x = (float) (random.nextDouble() * SCREEN_WIDTH);
+            y = (float) (random.nextDouble() * SCREEN_HEIGHT);
+            if (Math.sqrt(Math.pow(x - player.getX(), 2)
+                    + Math.pow(y - player.getY(), 2)) > PROTECTED_DISTANCE) {
                 break;
             }
             attempts++;
         }
-        float orientation = (float) (Math.random() * 2 * Math.PI);
-        float rotVelocity = (float) Math.random();
-        Vector2D<Float> pos = new Vector2D<Float>(x, y);
+        float orientation = (float) (random.nextDouble() * 2 * Math.PI);
+        float rotVelocity = (float) random.nextDouble();
 
         Enemy enemy;
         if (type == EnemyType.ASTEROID) {
-            // Math.random() returns a value between 0 and 1, so we multiply by 2 and
+            // nextDouble() returns a value between 0 and 1, so we multiply by 2 and
             // subtract 1 to get a value between -1 and 1
-            Vector2D<Float> velocity = new Vector2D<Float>(
-                    ((float) (Math.random() * 2) - 1) * MAX_ASTEROID_SPEED,
-                    ((float) (Math.random() * 2) - 1) * MAX_ASTEROID_SPEED);
-            enemy = new Asteroid(
-                    pos, velocity, orientation, Asteroid.AsteroidSize.LARGE, rotVelocity);
+            float vx = ((float) (random.nextDouble() * 2) - 1) * MAX_ASTEROID_SPEED;
+            float vy = ((float) (random.nextDouble() * 2) - 1) * MAX_ASTEROID_SPEED;
+            enemy = new Asteroid(store, x, y, vx, vy, orientation,
+                    Asteroid.AsteroidSize.LARGE, rotVelocity);
 
         } else if (type == EnemyType.COMET) {
             // Comets may be twice as fast as asteroids
-            Vector2D<Float> velocity = new Vector2D<Float>(
-                    ((float) (Math.random() * 2) - 1) * MAX_ASTEROID_SPEED * 2,
-                    ((float) (Math.random() * 2) - 1) * MAX_ASTEROID_SPEED * 2);
-            enemy = new Asteroid(
-                    pos, velocity, orientation, Asteroid.AsteroidSize.COMET, rotVelocity);
+            float vx = ((float) (random.nextDouble() * 2) - 1) * MAX_ASTEROID_SPEED * 2;
+            float vy = ((float) (random.nextDouble() * 2) - 1) * MAX_ASTEROID_SPEED * 2;
+            enemy = new Asteroid(store, x, y, vx, vy, orientation,
+                    Asteroid.AsteroidSize.COMET, rotVelocity);
 
         } else if (type == EnemyType.ALIEN) {
             // Aliens have built in velocity.
-            enemy = new Alien(pos, null);
+            enemy = new Alien(store, x, y, random);
         } else {
             return;
         }
 
-        enemies.add(enemy);
+        addEnemy(enemy);
     }
 
     /**
@@ -330,16 +623,16 @@ public class GameManager {
             case COMET:
                 // Destroyed comet, spawn Alien in its place
                 score += SCORE_PER_ASTEROID * level * difficulty.getScoreMultiplier();
-                Alien alien = new Alien(enemy.getPosition(), null);
-                enemies.remove(enemy);
-                enemies.add(alien);
+                Alien alien = new Alien(store, enemy.getX(), enemy.getY(), random);
+                removeEnemy(enemy);
+                addEnemy(alien);
                 break;
             case ALIEN:
                 score += SCORE_PER_ALIEN * level * difficulty.getScoreMultiplier();
                 destroyAlien((Alien) enemy);
                 break;
             case BULLET:
-                enemies.remove(enemy);
+                enemyBullets.release((Bullet) enemy);
                 break;
             default:
                 return;
@@ -357,7 +650,7 @@ public class GameManager {
         if (asteroid.size == Asteroid.AsteroidSize.MEDIUM) {
             new_size = Asteroid.AsteroidSize.SMALL;
         } else if (asteroid.size == Asteroid.AsteroidSize.SMALL) {
-            enemies.remove(asteroid);
+            removeEnemy(asteroid);
             return;
         }
 
@@ -365,40 +658,90 @@ public class GameManager {
         for (int i = 0; i < 2; i++) {
             // Adds random velocity to the destroyed asteroid's velocity, so smaller
             // asteroids can be faster
-            Vector2D<Float> velocity = new Vector2D<Float>(
-                    asteroid.getVelocity().x +
-                            ((float) (Math.random() * 2) - 1) * MAX_ASTEROID_SPEED,
-                    asteroid.getVelocity().y +
-                            ((float) (Math.random() * 2) - 1) * MAX_ASTEROID_SPEED);
-
-            enemies.add(new Asteroid(asteroid.getPosition(),
-                    velocity,
+            float vx = asteroid.getVelocityX() +
+                    ((float) (random.nextDouble() * 2) - 1) * MAX_ASTEROID_SPEED;
+            float vy = asteroid.getVelocityY() +
+                    ((float) (random.nextDouble() * 2) - 1) * MAX_ASTEROID_SPEED;
+
+            addEnemy(new Asteroid(store,
+                    asteroid.getX(), asteroid.getY(),
+                    vx, vy,
                     asteroid.getOrientation(),
                     new_size,
-                    (float) Math.random()));
+                    (float) random.nextDouble()));
         }
 
-        enemies.remove(asteroid);
+        removeEnemy(asteroid);
     }
 
     /**
      * Destroys an Alien object.
      */
     private void destroyAlien(Alien alien) {
-        enemies.remove(alien);
+        removeEnemy(alien);
+    }
+
+    /**
+     * Adds a newly created enemy to the game once the current update is done.
+     *
+     * @param enemy - the enemy to add
+     */
+    private void addEnemy(Enemy enemy) {
+        spawned.add(enemy);
+    }
+
+    /**
+     * Takes an enemy out of the collision grid and removes it from the game
+     * once the current update is done.
+     *
+     * @param enemy - the enemy to remove
+     */
+    private void removeEnemy(Enemy enemy) {
+        grid.remove(enemy.slot);
+        destroyed.add(enemy);
     }
 
     /**
-     * Reads a .json file into memory and creates a levelData json object.
+     * Applies the command buffer: drops the destroyed enemies from the
+     * enemy lists in one pass and releases them, then adds the spawned ones
+     * to their list and the grid. The remaining enemies keep their order, so a
+     * frame with many kills costs one pass instead of one shift per kill.
      */
-    private void readLevelData(String path) {
+    private void applyEnemyChanges() {
+        if (!destroyed.isEmpty()) {
+            asteroids.removeIf(Enemy::isDestroyed);
+            aliens.removeIf(Enemy::isDestroyed);
+        }
+        for (int i = 0; i < destroyed.size(); i++) {
+            destroyed.get(i).despawn();
+        }
+        destroyed.clear();
+        for (int i = 0; i < spawned.size(); i++) {
+            Enemy enemy = spawned.get(i);
+            if (enemy.type() == EnemyType.ALIEN) {
+                aliens.add((Alien) enemy);
+            } else {
+                asteroids.add((Asteroid) enemy);
+            }
+            grid.update(enemy.slot, enemy.getX(), enemy.getY(), store.radius[enemy.slot]);
+        }
+        spawned.clear();
+    }
+
+    /**
+     * Reads a .json file of the data per each level into memory.
+     *
+     * @param path - the path to the level data
+     * @return - the data per each level, null if it could not be read
+     */
+    private static JSONObject readLevelData(String path) {
         try {
             String jsonString = new String(Files.readAllBytes(Paths.get(path)));
-            levelData = new JSONObject(jsonString).getJSONObject("levels");
+            return new JSONObject(jsonString).getJSONObject("levels");
         } catch (IOException e) {
-            levelData = null;
+            return null;
         } catch (JSONException e) {
-            levelData = null;
+            return null;
         }
     }
 
@@ -421,21 +764,23 @@ public class GameManager {
         StringBuilder json = new StringBuilder();
         json.append("{");
         json.append("\"player\":");
-        json.append(player.toJson());
+        player.appendJson(json);
         json.append(",\"enemies\":[");
-        for (int i = 0; i < enemies.size(); i++) {
-            json.append(enemies.get(i).toJson());
-            if (i < enemies.size() - 1) {
+        for (int i = 0; i < asteroids.size(); i++) {
+            if (i > 0) {
                 json.append(",");
             }
+            asteroids.get(i).appendJson(json);
         }
-        json.append("],\"bullets\":[");
-        for (int i = 0; i < playerBullets.size(); i++) {
-            json.append(playerBullets.get(i).toJson());
-            if (i < playerBullets.size() - 1) {
+        for (int i = 0; i < aliens.size(); i++) {
+            if (i > 0 || !asteroids.isEmpty()) {
                 json.append(",");
             }
+            aliens.get(i).appendJson(json);
         }
+        appendBulletsJson(json, enemyBullets, !asteroids.isEmpty() || !aliens.isEmpty());
+        json.append("],\"bullets\":[");
+        appendBulletsJson(json, playerBullets, false);
         json.append("],\"score\":");
         json.append(score);
         json.append(",\"level\":");
@@ -447,4 +792,64 @@ public class GameManager {
         json.append("}");
         return json.toString();
     }
+
+    /**
+     * Appends the bullets of a pool as comma separated JSON objects.
+     *
+     * @param json  - the builder to append to
+     * @param pool  - the bullets to append
+     * @param comma - whether to put a comma before the first bullet
+     */
+    private static void appendBulletsJson(StringBuilder json, BulletPool pool, boolean comma) {
+        for (int i = 0; i < pool.span(); i++) {
+            Bullet bullet = pool.get(i);
+            if (bullet == null) {
+                continue;
+            }
+            if (comma) {
+                json.append(",");
+            }
+            bullet.appendJson(json);
+            comma = true;
+        }
+    }
+
+    /**
+     * Converts the game state to a binary snapshot holding only what changed
+     * since the snapshot the client acknowledged.
+     *
+     * @see SnapshotEncoder - for the snapshot layout
+     *
+     * @param encoder      - the encoder of the client, which remembers the
+     *                     snapshots it was sent
+     * @param acknowledged - the sequence number of the latest snapshot the
+     *                     client received, 0 if none
+     * @return - the encoded snapshot
+     */
+    public byte[] toSnapshot(SnapshotEncoder encoder, int acknowledged) {
+        encoder.begin();
+        encoder.add(player, SnapshotEncoder.KIND_PLAYER);
+        for (int i = 0; i < asteroids.size(); i++) {
+            Asteroid asteroid = asteroids.get(i);
+            encoder.add(asteroid, SnapshotEncoder.kindOf(asteroid));
+        }
+        for (int i = 0; i < aliens.size(); i++) {
+            encoder.add(aliens.get(i), SnapshotEncoder.KIND_ALIEN);
+        }
+        for (int i = 0; i < enemyBullets.span(); i++) {
+            Bullet bullet = enemyBullets.get(i);
+            if (bullet != null) {
+                encoder.add(bullet, SnapshotEncoder.KIND_ENEMY_BULLET);
+            }
+        }
+        for (int i = 0; i < playerBullets.span(); i++) {
+            Bullet bullet = playerBullets.get(i);
+            if (bullet != null) {
+                encoder.add(bullet, SnapshotEncoder.KIND_PLAYER_BULLET);
+            }
+        }
+        int flags = (is_running ? SnapshotEncoder.FLAG_RUNNING : 0)
+                | (player.isInvincible() ? SnapshotEncoder.FLAG_INVINCIBLE : 0);
+        return encoder.finish(acknowledged, score, level, time, flags, player.getLives());
+    }
 }
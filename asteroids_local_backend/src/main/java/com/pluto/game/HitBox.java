@@ -1,48 +1,119 @@
 package com.pluto.game;
 
 /**
- * A class that represents a hitbox for a game object. It contains the position
- * of the hitbox and the radius of the hitbox.
+ * A class that represents the hitbox of one shape of game object, e.g. a
+ * large asteroid or the player's ship. A hitbox is a set of circles whose
+ * centres are given relative to the object's centre at orientation 0.
+ *
+ * Hitboxes never change, so every object of a shape shares one. The world
+ * position of a circle is derived from the position and orientation of the
+ * object only when a collision test needs it, instead of moving and rotating
+ * every circle of every object every frame.
  */
-public class HitBox {
+public final class HitBox {
+    /* The centre of each circle, relative to the centre of the object */
+    private final float[] x;
+    private final float[] y;
+
+    /* The radius of each circle */
+    private final float[] radius;
+
     /*
-     * The center position of the hitbox. It is represented by a 2D vector.
+     * Distance from the centre of the object to the furthest edge of any
+     * circle. Any collision with the object happens within this radius.
      */
-    public Vector2D<Float> position;
+    private final float reach;
 
-    /*
-     * The radius of the hitbox. It is a double value.
+    /* Whether the only circle is at the centre, so rotation does not move it */
+    private final boolean centred;
+
+    /**
+     * Constructor for the HitBox class. The arrays are copied.
+     *
+     * @param x      - the x offset of the centre of each circle
+     * @param y      - the y offset of the centre of each circle
+     * @param radius - the radius of each circle
      */
-    public double radius;
+    public HitBox(float[] x, float[] y, float[] radius) {
+        if (x.length != y.length || x.length != radius.length) {
+            throw new IllegalArgumentException("Every circle needs an x, a y and a radius");
+        }
+        this.x = x.clone();
+        this.y = y.clone();
+        this.radius = radius.clone();
+        float reach = 0;
+        for (int i = 0; i < x.length; i++) {
+            reach = Math.max(reach, (float) Math.sqrt(x[i] * x[i] + y[i] * y[i]) + radius[i]);
+        }
+        this.reach = reach;
+        this.centred = x.length == 1 && x[0] == 0 && y[0] == 0;
+    }
 
     /**
-     * Constructor for the HitBox class.
-     * 
-     * @param position - the center position of the hitbox
-     * @param radius   - the radius of the hitbox
+     * Creates the hitbox of a round object, a single circle at its centre.
+     *
+     * @param radius - the radius of the circle
+     * @return - the hitbox
      */
-    public HitBox(Vector2D<Float> position, float radius) {
-        this.position = position;
-        this.radius = radius;
+    public static HitBox circle(float radius) {
+        return new HitBox(new float[] { 0 }, new float[] { 0 }, new float[] { radius });
     }
 
     /**
-     * Constructor for the HitBox class.
+     * Returns the number of circles of this hitbox.
      *
-     * @param x      - the x location of this hitbox
-     * @param y      - the y location of this hitbox
-     * @param radius - the radius of this hitbox
+     * @return - the number of circles
      */
-    public HitBox(float x, float y, float radius) {
-        this(new Vector2D<Float>(x, y), radius);
+    public int size() {
+        return radius.length;
     }
 
     /**
-     * Converts the HitBox object to a JSON string.
-     * 
-     * @return - the JSON string representation of the HitBox object
+     * Returns the x offset of a circle at orientation 0.
+     *
+     * @param i - the circle, from 0 to size() - 1
+     * @return - the x offset of the centre of the circle
+     */
+    public float x(int i) {
+        return x[i];
+    }
+
+    /**
+     * Returns the y offset of a circle at orientation 0.
+     *
+     * @param i - the circle, from 0 to size() - 1
+     * @return - the y offset of the centre of the circle
+     */
+    public float y(int i) {
+        return y[i];
+    }
+
+    /**
+     * Returns the radius of a circle.
+     *
+     * @param i - the circle, from 0 to size() - 1
+     * @return - the radius of the circle
+     */
+    public float radius(int i) {
+        return radius[i];
+    }
+
+    /**
+     * Returns how far this hitbox reaches from the centre of its object.
+     *
+     * @return - the distance to the furthest edge of any circle
+     */
+    public float reach() {
+        return reach;
+    }
+
+    /**
+     * Whether this hitbox is a single circle at the centre of its object, so
+     * that its world position does not depend on the orientation.
+     *
+     * @return - true if rotating the object does not move the hitbox
      */
-    public String toJson() {
-        return "{\"position\": " + this.position.toJson() + ", \"radius\": " + this.radius + "}";
+    public boolean isCentred() {
+        return centred;
     }
 }
@@ -0,0 +1,247 @@
+package com.pluto.game;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The recorded inputs of one game. A game is fully determined by its seed,
+ * its difficulty, its collision mode and the time step and inputs of every
+ * update, so a log holds only those and replays the game exactly.
+ *
+ * The file is written append-only, big endian:
+ * i32 magic "ASTR", u8 version, u8 difficulty ordinal, u8 collision mode
+ * (0 spatial grid, 1 brute force), i64 seed, and then per update f32 dt and
+ * u8 input bitmask, until the end of the file. The header
+ * is flushed when the log is created and the updates every FLUSH_INTERVAL
+ * updates, so a game cut off by a crash loses at most its last second or so.
+ */
+public final class ReplayLog {
+    /* Marks a replay log file */
+    public static final int MAGIC = 0x41535452;
+
+    /*
+     * Version of the file layout and of the simulation that plays it. It is
+     * bumped whenever the same inputs would play out differently, so an old
+     * log is rejected instead of replaying a different game. Version 2 adds
+     * the bullet pool, deferred spawns and kills, and the separate asteroid
+     * and alien lists. Version 3 records the collision mode, since the two
+     * modes can find different collisions.
+     */
+    public static final int VERSION = 3;
+
+    /* Bytes of the header */
+    private static final int HEADER_BYTES = 15;
+
+    /* Bytes written per update */
+    private static final int FRAME_BYTES = 5;
+
+    /* Updates buffered before they are flushed, one second at 60 ticks */
+    static final int FLUSH_INTERVAL = 60;
+
+    /* The game the log was recorded from */
+    private final Difficulty difficulty;
+    private final boolean useSpatialHash;
+    private final long seed;
+
+    /* The time step and input bitmask of every update */
+    private final float[] dts;
+    private final byte[] inputs;
+
+    private ReplayLog(Difficulty difficulty, boolean useSpatialHash, long seed, float[] dts, byte[] inputs) {
+        this.difficulty = difficulty;
+        this.useSpatialHash = useSpatialHash;
+        this.seed = seed;
+        this.dts = dts;
+        this.inputs = inputs;
+    }
+
+    /**
+     * Reads a log written by a Recorder.
+     *
+     * @param file - the log file
+     * @return - the log
+     * @throws IOException - if the file cannot be read or is not a replay log
+     */
+    public static ReplayLog read(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            DataInputStream data = new DataInputStream(in);
+            if (data.readInt() != MAGIC) {
+                throw new IOException(file + " is not a replay log");
+            }
+            int version = data.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException(file + " has unsupported version " + version);
+            }
+            int ordinal = data.readUnsignedByte();
+            if (ordinal >= Difficulty.values().length) {
+                throw new IOException(file + " has unknown difficulty " + ordinal);
+            }
+            int collisionMode = data.readUnsignedByte();
+            if (collisionMode > 1) {
+                throw new IOException(file + " has unknown collision mode " + collisionMode);
+            }
+            long seed = data.readLong();
+
+            int capacity = (int) Math.max(16, (Files.size(file) - HEADER_BYTES) / FRAME_BYTES);
+            float[] dts = new float[capacity];
+            byte[] inputs = new byte[capacity];
+            int frames = 0;
+            while (true) {
+                float dt;
+                byte frameInputs;
+                try {
+                    dt = data.readFloat();
+                    frameInputs = data.readByte();
+                } catch (EOFException e) {
+                    // The end of the log, or a partly written last update
+                    break;
+                }
+                if (frames == dts.length) {
+                    dts = Arrays.copyOf(dts, frames * 2);
+                    inputs = Arrays.copyOf(inputs, frames * 2);
+                }
+                dts[frames] = dt;
+                inputs[frames] = frameInputs;
+                frames++;
+            }
+            return new ReplayLog(Difficulty.values()[ordinal], collisionMode == 0, seed,
+                    Arrays.copyOf(dts, frames), Arrays.copyOf(inputs, frames));
+        }
+    }
+
+    /**
+     * @return - the difficulty of the recorded game
+     */
+    public Difficulty getDifficulty() {
+        return difficulty;
+    }
+
+    /**
+     * @return - true if the recorded game found collisions through the
+     *         spatial grid, false if it tested every pair
+     */
+    public boolean usesSpatialHash() {
+        return useSpatialHash;
+    }
+
+    /**
+     * @return - the seed of the recorded game
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return - the number of recorded updates
+     */
+    public int getFrameCount() {
+        return dts.length;
+    }
+
+    /**
+     * @param frame - the index of the update
+     * @return - the time step of the update
+     */
+    public float getDt(int frame) {
+        return dts[frame];
+    }
+
+    /**
+     * @param frame - the index of the update
+     * @return - the input bitmask of the update
+     */
+    public int getInputs(int frame) {
+        return inputs[frame] & 0xFF;
+    }
+
+    /**
+     * Creates the game the log was recorded from, before its first update,
+     * in the collision mode it was recorded in.
+     *
+     * @return - the new game
+     */
+    public GameManager newGame() {
+        GameManager game = new GameManager(difficulty, seed);
+        game.setUseSpatialHash(useSpatialHash);
+        return game;
+    }
+
+    /**
+     * Plays every recorded update on a game created by newGame.
+     *
+     * @param game - the game
+     */
+    public void replay(GameManager game) {
+        for (int i = 0; i < dts.length; i++) {
+            game.update(dts[i], inputs[i] & 0xFF);
+        }
+    }
+
+    /**
+     * Appends the updates of a game to a log file. Not thread safe; it is
+     * written by the thread stepping the game.
+     */
+    public static final class Recorder implements Closeable {
+        /* The buffered log file */
+        private final DataOutputStream out;
+
+        /* Updates written since the last flush */
+        private int unflushed;
+
+        /**
+         * Creates a log file and writes its header.
+         *
+         * @param file           - the file to create
+         * @param difficulty     - the difficulty of the game
+         * @param useSpatialHash - whether the game finds collisions through
+         *                       the spatial grid
+         * @param seed           - the seed of the game
+         * @throws IOException - if the file cannot be created
+         */
+        public Recorder(Path file, Difficulty difficulty, boolean useSpatialHash, long seed) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)));
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeByte(difficulty.ordinal());
+            out.writeByte(useSpatialHash ? 0 : 1);
+            out.writeLong(seed);
+            out.flush();
+        }
+
+        /**
+         * Appends one update, flushing the log every FLUSH_INTERVAL updates.
+         *
+         * @param dt     - the time step of the update
+         * @param inputs - the input bitmask of the update
+         * @throws IOException - if the file cannot be written
+         */
+        public void record(float dt, int inputs) throws IOException {
+            out.writeFloat(dt);
+            out.writeByte(inputs);
+            if (++unflushed == FLUSH_INTERVAL) {
+                out.flush();
+                unflushed = 0;
+            }
+        }
+
+        /**
+         * Flushes and closes the log file.
+         *
+         * @throws IOException - if the file cannot be written
+         */
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.pluto.game;
 
+import java.util.SplittableRandom;
+
 /**
  * Abstract class to represent enemies that can shoot objects at the player.
  */
@@ -13,17 +15,27 @@ public abstract class ShooterEnemy extends Enemy {
     /* The path of this ShooterEnemy */
     private Path path;
 
+    /* The game's random generator, used to pick paths */
+    private final SplittableRandom random;
+
     /**
      * Shoots a bullet or multiple bullets at the player.
+     *
+     * @param playerX - the x coordinate of the player
+     * @param playerY - the y coordinate of the player
+     * @param bullets - the pool of enemy bullets to fire from
      */
-    public abstract Bullet[] shootPlayer(Vector2D<Float> playerLocation);
+    abstract void shootPlayer(float playerX, float playerY, BulletPool bullets);
 
     /**
      * Constructor for this ShooterEnemy. Initializes the path data member.
+     *
+     * @param random - the game's random generator, used to pick paths
      */
-    public ShooterEnemy(Vector2D<Float> position, Vector2D<Float> velocity,
-            float orientation, HitBox[] hitbox, EnemyType type, int health) {
-        super(position, velocity, orientation, hitbox, type, health);
+    public ShooterEnemy(EntityStore store, float x, float y, float vx, float vy,
+            float orientation, HitBox hitbox, EnemyType type, int health, SplittableRandom random) {
+        super(store, x, y, vx, vy, orientation, hitbox, type, health);
+        this.random = random;
         this.path = createPath();
         this.pathTime = 0;
     }
@@ -37,7 +49,7 @@ public abstract class ShooterEnemy extends Enemy {
     @Override
     public void moveObj(float dt) {
         pathTime += dt;
-        this.setPosition(path.getLocation(pathTime));
+        this.setPosition(path.pathFunctionX(pathTime), path.pathFunctionY(pathTime));
     }
 
     /**
@@ -52,12 +64,12 @@ public abstract class ShooterEnemy extends Enemy {
      * Creates and updates the path object of this ShooterEnemy.
      */
     public Path createPath() {
-        // Generate random numbers in [-350, -25] or [25, 350]
-        int a = (int) Math.random() * 650;
-        a = (a > 325) ? a - 350 : a - 300;
-        int b = (int) Math.random() * 1200;
-        b = (b > 325) ? b - 350 : b - 300;
-        return new Path(this.getPosition(), a, b);
+        // Generate random numbers in [-350, -26] or [25, 349]
+        int a = random.nextInt(650);
+        a = (a >= 325) ? a - 300 : a - 350;
+        int b = random.nextInt(650);
+        b = (b >= 325) ? b - 300 : b - 350;
+        return new Path(getX(), getY(), a, b);
     }
 
     /**
@@ -76,20 +88,23 @@ public abstract class ShooterEnemy extends Enemy {
         private static float OMEGA = 2.50f;
 
         /* The initial position of the curve */
-        private Vector2D<Float> position;
+        private float startX;
+        private float startY;
 
         /**
          * Constructor of a Path object.
          *
-         * @param position - the initial position of the path, that is the
-         *                 position at time 0.
-         * @param a        - the horizontal radius of the eliptical path.
-         * @param b        - the vertical radius of the eliptical path.
+         * @param startX - the initial x coordinate of the path, that is the
+         *               x coordinate at time 0.
+         * @param startY - the initial y coordinate of the path.
+         * @param a      - the horizontal radius of the eliptical path.
+         * @param b      - the vertical radius of the eliptical path.
          */
-        public Path(Vector2D<Float> position, int a, int b) {
+        public Path(float startX, float startY, int a, int b) {
             this.a = a;
             this.b = b;
-            this.position = position;
+            this.startX = startX;
+            this.startY = startY;
         }
 
         /**
@@ -100,7 +115,7 @@ public abstract class ShooterEnemy extends Enemy {
          * @return - the x coordinate at the given time
          */
         private float pathFunctionX(float time) {
-            return (float) (a * Math.cos(time / OMEGA)) + (position.x - a);
+            return (float) (a * Math.cos(time / OMEGA)) + (startX - a);
         }
 
         /**
@@ -111,20 +126,7 @@ public abstract class ShooterEnemy extends Enemy {
          * @return - the y coordinate at the given time.
          */
         private float pathFunctionY(float time) {
-            return (float) (b * Math.sin(time / OMEGA)) + position.y;
-        }
-
-        /**
-         * Returns the position as a Vector2D along the curve at the specified
-         * time.
-         *
-         * @param time - time at which to find the position.
-         * @reutnr - the position along the curve at the give time.
-         */
-        public Vector2D<Float> getLocation(float time) {
-            float x = pathFunctionX(time);
-            float y = pathFunctionY(time);
-            return new Vector2D<Float>(x, y);
+            return (float) (b * Math.sin(time / OMEGA)) + startY;
         }
     }
 }
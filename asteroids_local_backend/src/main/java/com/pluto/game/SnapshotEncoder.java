@@ -0,0 +1,284 @@
+package com.pluto.game;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Encodes the state of a game as compact binary snapshots, the binary
+ * alternative to GameManager.toJson. Positions and angles are quantized to 16
+ * bit fixed point, hitboxes are left out since the client can derive them
+ * from the kind and orientation of each entity, and each snapshot only holds
+ * the entities that were added, removed or changed since a snapshot the
+ * client has acknowledged.
+ *
+ * An encoder remembers the last HISTORY snapshots it produced, so it belongs
+ * to exactly one client. A client acknowledges the sequence number of the
+ * latest snapshot it received; if that snapshot is too old or unknown, the
+ * next snapshot is a full one.
+ *
+ * All values are big endian. A snapshot has the following layout:
+ * u8  version - always VERSION
+ * i32 sequence - the number of this snapshot, starting at 1
+ * i32 baseline - the snapshot this one is relative to, 0 for a full snapshot
+ * i32 score
+ * i32 level
+ * f32 time
+ * u8  flags - FLAG_RUNNING if the game is running, FLAG_INVINCIBLE if the
+ *             player is invincible
+ * u8  lives
+ * i32 removed count, followed by the i32 id of every removed entity
+ * i32 changed count, followed by every added or changed entity:
+ *     i32 id
+ *     u8  kind - one of the KIND constants
+ *     u16 x - the x coordinate in units of SCREEN_SIZE / 65536
+ *     u16 y - the y coordinate in units of SCREEN_SIZE / 65536
+ *     u16 orientation - the orientation in units of 2pi / 65536
+ */
+public class SnapshotEncoder {
+    /* Version of the snapshot layout */
+    public static final int VERSION = 1;
+
+    /* Bits of the flags byte */
+    public static final int FLAG_RUNNING = 1;
+    public static final int FLAG_INVINCIBLE = 2;
+
+    /* Kinds of entities, which decide how the client draws them */
+    public static final int KIND_PLAYER = 0;
+    public static final int KIND_PLAYER_BULLET = 1;
+    public static final int KIND_ASTEROID_SMALL = 2;
+    public static final int KIND_ASTEROID_MEDIUM = 3;
+    public static final int KIND_ASTEROID_LARGE = 4;
+    public static final int KIND_COMET = 5;
+    public static final int KIND_ALIEN = 6;
+    public static final int KIND_ENEMY_BULLET = 7;
+
+    /* Width and height of the screen positions are quantized over */
+    private static final float SCREEN_SIZE = 1000;
+
+    /*
+     * Number of past snapshots kept. The next snapshot takes the slot of the
+     * oldest one, so a baseline can be at most HISTORY - 2 snapshots old.
+     */
+    static final int HISTORY = 32;
+
+    /* Size of the fixed header, and of one removed and one changed entity */
+    private static final int HEADER_BYTES = 1 + 4 + 4 + 4 + 4 + 4 + 1 + 1 + 4 + 4;
+    private static final int REMOVED_BYTES = 4;
+    private static final int CHANGED_BYTES = 4 + 1 + 2 + 2 + 2;
+
+    /**
+     * The entities of one snapshot, sorted by id. The state of each entity is
+     * its kind and quantized position and orientation packed into a long.
+     */
+    private static class Snapshot {
+        private int sequence;
+        private int count;
+        private int[] ids = new int[64];
+        private long[] states = new long[64];
+    }
+
+    /* Past snapshots, indexed by sequence number modulo HISTORY */
+    private final Snapshot[] history = new Snapshot[HISTORY];
+
+    /* Sequence number of the last snapshot produced */
+    private int sequence;
+
+    /* Entities added since begin(), as (id << 32 | index) for sorting */
+    private long[] order = new long[64];
+    private long[] pending = new long[64];
+    private int pendingCount;
+
+    /**
+     * Starts a new snapshot. Every entity of the game must then be added
+     * before calling finish.
+     */
+    void begin() {
+        pendingCount = 0;
+    }
+
+    /**
+     * Adds an entity to the snapshot being built.
+     *
+     * @param entity - the entity
+     * @param kind   - the KIND of the entity
+     */
+    void add(SpawnableEntity entity, int kind) {
+        if (pendingCount == pending.length) {
+            pending = Arrays.copyOf(pending, pendingCount * 2);
+            order = Arrays.copyOf(order, pendingCount * 2);
+        }
+        int slot = entity.slot;
+        EntityStore store = entity.store;
+        long state = ((long) kind << 48)
+                | ((long) quantizePosition(store.x[slot]) << 32)
+                | ((long) quantizePosition(store.y[slot]) << 16)
+                | quantizeAngle(store.orientation[slot]);
+        order[pendingCount] = ((long) store.id[slot] << 32) | pendingCount;
+        pending[pendingCount] = state;
+        pendingCount++;
+    }
+
+    /**
+     * Finishes the snapshot being built and encodes it relative to the
+     * acknowledged snapshot.
+     *
+     * @param acknowledged - the sequence number of the latest snapshot the
+     *                     client received, 0 if none
+     * @param score        - the current score
+     * @param level        - the current level
+     * @param time         - the time the game has been running in seconds
+     * @param flags        - the FLAG bits
+     * @param lives        - the player's lives
+     * @return - the encoded snapshot
+     */
+    byte[] finish(int acknowledged, int score, int level, float time, int flags, int lives) {
+        Snapshot baseline = baseline(acknowledged);
+        Snapshot current = store();
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES
+                + REMOVED_BYTES * (baseline == null ? 0 : baseline.count)
+                + CHANGED_BYTES * current.count);
+        buffer.put((byte) VERSION);
+        buffer.putInt(current.sequence);
+        buffer.putInt(baseline == null ? 0 : baseline.sequence);
+        buffer.putInt(score);
+        buffer.putInt(level);
+        buffer.putFloat(time);
+        buffer.put((byte) flags);
+        buffer.put((byte) lives);
+
+        // Both snapshots are sorted by id, so one merge pass finds every
+        // removed entity and the count position is patched afterwards
+        int removedAt = buffer.position();
+        buffer.putInt(0);
+        int removed = 0;
+        if (baseline != null) {
+            int j = 0;
+            for (int i = 0; i < baseline.count; i++) {
+                int id = baseline.ids[i];
+                while (j < current.count && current.ids[j] < id) {
+                    j++;
+                }
+                if (j == current.count || current.ids[j] != id) {
+                    buffer.putInt(id);
+                    removed++;
+                }
+            }
+        }
+        buffer.putInt(removedAt, removed);
+
+        int changedAt = buffer.position();
+        buffer.putInt(0);
+        int changed = 0;
+        int j = 0;
+        for (int i = 0; i < current.count; i++) {
+            int id = current.ids[i];
+            long state = current.states[i];
+            if (baseline != null) {
+                while (j < baseline.count && baseline.ids[j] < id) {
+                    j++;
+                }
+                if (j < baseline.count && baseline.ids[j] == id && baseline.states[j] == state) {
+                    continue;
+                }
+            }
+            buffer.putInt(id);
+            buffer.put((byte) (state >>> 48));
+            buffer.putShort((short) (state >>> 32));
+            buffer.putShort((short) (state >>> 16));
+            buffer.putShort((short) state);
+            changed++;
+        }
+        buffer.putInt(changedAt, changed);
+
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    /**
+     * Returns the sequence number of the last snapshot produced.
+     *
+     * @return - the sequence number, 0 before the first snapshot
+     */
+    public int getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns the kind of an enemy.
+     *
+     * @param enemy - the enemy
+     * @return - the KIND of the enemy
+     */
+    static int kindOf(Enemy enemy) {
+        switch (enemy.type()) {
+            case ASTEROID:
+                switch (((Asteroid) enemy).size) {
+                    case SMALL:
+                        return KIND_ASTEROID_SMALL;
+                    case MEDIUM:
+                        return KIND_ASTEROID_MEDIUM;
+                    default:
+                        return KIND_ASTEROID_LARGE;
+                }
+            case COMET:
+                return KIND_COMET;
+            case ALIEN:
+                return KIND_ALIEN;
+            default:
+                return KIND_ENEMY_BULLET;
+        }
+    }
+
+    /**
+     * Returns the remembered snapshot with the given sequence number, or null
+     * if it is unknown or too old. A snapshot HISTORY - 1 behind is too old,
+     * since the next snapshot is about to overwrite its slot.
+     */
+    private Snapshot baseline(int acknowledged) {
+        if (acknowledged <= 0 || acknowledged > sequence || sequence - acknowledged >= HISTORY - 1) {
+            return null;
+        }
+        Snapshot snapshot = history[acknowledged % HISTORY];
+        return snapshot != null && snapshot.sequence == acknowledged ? snapshot : null;
+    }
+
+    /**
+     * Sorts the pending entities by id into the next history slot.
+     */
+    private Snapshot store() {
+        sequence++;
+        // baseline() rejects the snapshot that used to be in this slot, so
+        // the baseline is never overwritten
+        Snapshot snapshot = history[sequence % HISTORY];
+        if (snapshot == null) {
+            snapshot = new Snapshot();
+            history[sequence % HISTORY] = snapshot;
+        }
+        if (snapshot.ids.length < pendingCount) {
+            snapshot.ids = new int[pendingCount];
+            snapshot.states = new long[pendingCount];
+        }
+        Arrays.sort(order, 0, pendingCount);
+        for (int i = 0; i < pendingCount; i++) {
+            snapshot.ids[i] = (int) (order[i] >>> 32);
+            snapshot.states[i] = pending[(int) order[i]];
+        }
+        snapshot.sequence = sequence;
+        snapshot.count = pendingCount;
+        return snapshot;
+    }
+
+    /**
+     * Quantizes a coordinate on the wrapped screen to 16 bits.
+     */
+    private static int quantizePosition(float coordinate) {
+        return Math.round(coordinate * (65536 / SCREEN_SIZE)) & 0xFFFF;
+    }
+
+    /**
+     * Quantizes an angle in radians to 16 bits.
+     */
+    private static int quantizeAngle(float radians) {
+        return (int) Math.round(radians * (65536 / (2 * Math.PI))) & 0xFFFF;
+    }
+}
@@ -9,9 +9,68 @@ import java.lang.Math;
  * manipulate the objects during the game.
  */
 public class Spaceship extends SpawnableEntity {
-    /* These enums are the different player inputs */
+    /*
+     * These enums are the different player inputs. A set of inputs is passed
+     * around as a bitmask holding the bit of each input, so that handling the
+     * inputs of a frame allocates nothing.
+     */
     public static enum Input {
-        UP, LEFT, RIGHT, SHOOT
+        UP, LEFT, RIGHT, SHOOT;
+
+        /* Cached, since values() copies the array on every call */
+        private static final Input[] VALUES = values();
+
+        /* The bit of this input in an input bitmask */
+        private final int bit;
+
+        private Input() {
+            this.bit = 1 << ordinal();
+        }
+
+        /**
+         * @return - the bit of this input in an input bitmask
+         */
+        public int bit() {
+            return bit;
+        }
+
+        /**
+         * Whether this input is in a bitmask.
+         *
+         * @param inputs - the input bitmask
+         * @return - true if the bit of this input is set
+         */
+        public boolean isIn(int inputs) {
+            return (inputs & bit) != 0;
+        }
+
+        /**
+         * Parses comma separated input names, e.g. "UP,SHOOT", into a bitmask
+         * without allocating or throwing. Unknown names are ignored.
+         *
+         * @param inputs - the input names
+         * @return - the input bitmask, 0 if there are none
+         */
+        public static int parseMask(String inputs) {
+            int mask = 0;
+            int length = inputs.length();
+            int start = 0;
+            while (start < length) {
+                int end = inputs.indexOf(',', start);
+                if (end < 0) {
+                    end = length;
+                }
+                for (Input input : VALUES) {
+                    String name = input.name();
+                    if (name.length() == end - start && inputs.regionMatches(start, name, 0, name.length())) {
+                        mask |= input.bit;
+                        break;
+                    }
+                }
+                start = end + 1;
+            }
+            return mask;
+        }
     }
 
     /* How much speed increases per second when moving forward */
@@ -26,6 +85,15 @@ public class Spaceship extends SpawnableEntity {
     /* The bullet damage this spaceship deals */
     private static final int BULLET_DAMAGE = 1;
 
+    /*
+     * The hitbox of the ship pointing right: a body of three large circles
+     * and small circles at the two wing tips and the nose.
+     */
+    private static final HitBox HITBOX = new HitBox(
+            new float[] { 0, -10, -10, -23, -23, 20 },
+            new float[] { 0, 10, -10, -23, 23, 0 },
+            new float[] { 15.0f, 15.0f, 15.0f, 3.0f, 3.0f, 3.0f });
+
     /* Number of lives the player has */
     private int lives;
 
@@ -36,19 +104,15 @@ public class Spaceship extends SpawnableEntity {
      * Constructor for the Spaceship class. Player spawns at the center of the
      * screen
      * with 3 lives. Hitbox will be a circle with radius 25 for now.
+     *
+     * @param store - the store holding the state of the game's entities
      */
-    public Spaceship() {
-        super(new Vector2D<Float>(500.0f, 500.0f), // Starting position
-                new Vector2D<Float>(0.0f, 0.0f), // Starting velocity
+    public Spaceship(EntityStore store) {
+        super(store,
+                500.0f, 500.0f, // Starting position
+                0.0f, 0.0f, // Starting velocity
                 0.0f, // Starting orientation
-                new HitBox[] {
-                        new HitBox(new Vector2D<Float>(500.f, 500.f), 15.0f),
-                        new HitBox(new Vector2D<Float>(500.f - 10, 500.f + 10), 15.0f),
-                        new HitBox(new Vector2D<Float>(500.f - 10, 500.f - 10), 15.0f),
-                        new HitBox(new Vector2D<Float>(500.f - 23, 500.f - 23), 3.0f),
-                        new HitBox(new Vector2D<Float>(500.f - 23, 500.f + 23), 3.0f),
-                        new HitBox(new Vector2D<Float>(500.f + 20, 500.f), 3.0f),
-                });
+                HITBOX);
         this.lives = 3;
     }
 
@@ -57,35 +121,27 @@ public class Spaceship extends SpawnableEntity {
      * orientation based on the object's velocity and rotation velocity and player
      * inputs.
      * 
-     * @param dt    - the amount of time in seconds since the last update
-     * @param input - the player inputs
+     * @param dt     - the amount of time in seconds since the last update
+     * @param inputs - the player inputs, as a bitmask of Input bits
      */
-    public void moveObj(float dt, Input[] input) {
-        Vector2D<Float> newVel = new Vector2D<Float>(getVelocity().x, getVelocity().y);
-        for (Input i : input) {
-            switch (i) {
-                case UP:
-                    newVel = new Vector2D<Float>(
-                            (newVel.x + ACCEL * dt * (float) Math.cos(getOrientation())),
-                            (newVel.y + ACCEL * dt * (float) Math.sin(getOrientation())));
-                    this.setVelocity(newVel);
-                    break;
-                case LEFT:
-                    this.rotate(-ROT_SPEED * dt);
-                    break;
-                case RIGHT:
-                    this.rotate(ROT_SPEED * dt);
-                    break;
-                case SHOOT: // Game manager handles shooting
-                    break;
-            }
+    public void moveObj(float dt, int inputs) {
+        float velX = getVelocityX();
+        float velY = getVelocityY();
+        // Thrust is applied before turning. SHOOT is handled by the game manager.
+        if (Input.UP.isIn(inputs)) {
+            velX = velX + ACCEL * dt * (float) Math.cos(getOrientation());
+            velY = velY + ACCEL * dt * (float) Math.sin(getOrientation());
+        }
+        if (Input.LEFT.isIn(inputs)) {
+            this.rotate(-ROT_SPEED * dt);
         }
-        newVel.x = newVel.x * (1 - DRAG * dt);
-        newVel.y = newVel.y * (1 - DRAG * dt);
-        this.setVelocity(newVel);
-        Vector2D<Float> newPos = new Vector2D<Float>(getPosition().x + getVelocity().x * dt,
-                getPosition().y + getVelocity().y * dt);
-        this.setPosition(newPos);
+        if (Input.RIGHT.isIn(inputs)) {
+            this.rotate(ROT_SPEED * dt);
+        }
+        velX = velX * (1 - DRAG * dt);
+        velY = velY * (1 - DRAG * dt);
+        this.setVelocity(velX, velY);
+        this.setPosition(getX() + velX * dt, getY() + velY * dt);
         invincibleTimer -= dt;
         if (invincibleTimer < 0) {
             invincibleTimer = 0;
@@ -101,6 +157,15 @@ public class Spaceship extends SpawnableEntity {
         return lives;
     }
 
+    /**
+     * Whether the player is currently invincible after being hit
+     * 
+     * @return true if the player cannot be hit right now
+     */
+    public boolean isInvincible() {
+        return invincibleTimer > 0;
+    }
+
     /**
      * Call when player gets hit by an asteroid. Decreases number of lives
      * by 1 and updates the player's position to the center of the screen.
@@ -118,14 +183,11 @@ public class Spaceship extends SpawnableEntity {
     /**
      * Shoots a bullet object with the specified damage.
      *
+     * @param bullets - the pool of the player's bullets to fire from
      * @return - A bullet object the player has shot.
      */
-    public Bullet shootBullet() {
-        Vector2D<Float> pos = new Vector2D<Float>(getPosition().x, getPosition().y);
-        float orientation = getOrientation();
-        Bullet bullet = new Bullet(pos, orientation, BULLET_DAMAGE);
-
-        return bullet;
+    Bullet shootBullet(BulletPool bullets) {
+        return bullets.fire(getX(), getY(), getOrientation(), BULLET_DAMAGE);
     }
 
     /**
@@ -138,23 +200,25 @@ public class Spaceship extends SpawnableEntity {
     @Override
     public String toJson() {
         StringBuilder json = new StringBuilder();
-        json.append("{\"position\": ");
-        json.append(this.getPosition().toJson());
-        json.append(", \"orientation\": ");
-        json.append(this.getOrientation());
+        appendJson(json);
+        return json.toString();
+    }
+
+    /**
+     * Appends the Spaceship object as a JSON object to the given builder. This
+     * is the same format as toJson, without building an intermediate string.
+     *
+     * @param json - the builder to append to
+     */
+    public void appendJson(StringBuilder json) {
+        json.append("{");
+        appendPositionJson(json);
         json.append(", \"hitbox\": ");
-        json.append("[");
-        for (int i = 0; i < hitbox.length; i++) {
-            json.append(hitbox[i].toJson());
-            if (i < hitbox.length - 1) {
-                json.append(",");
-            }
-        }
-        json.append("], \"lives\": ");
+        appendHitboxJson(json);
+        json.append(", \"lives\": ");
         json.append(this.lives);
         json.append(", \"is_invincible\": ");
         json.append(this.invincibleTimer > 0);
         json.append("}");
-        return json.toString();
     }
 }
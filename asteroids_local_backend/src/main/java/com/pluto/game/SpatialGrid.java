@@ -0,0 +1,216 @@
+package com.pluto.game;
+
+import java.util.Arrays;
+
+/**
+ * A uniform grid over the screen used as the broad phase of collision
+ * detection. Every entity is filed under the cell containing its centre, and
+ * a query returns the entities filed in the cells around a point, so that the
+ * exact hitbox test only runs on pairs that are close to each other.
+ *
+ * The grid wraps around the screen edges the same way entity positions do.
+ * Cells are kept as intrusive doubly linked lists indexed by EntityStore slot,
+ * so moving an entity between cells is O(1) and an entity that stays in its
+ * cell costs nothing when the grid is updated.
+ */
+class SpatialGrid {
+    /* Marks the end of a cell list, or a slot that is not in the grid */
+    private static final int NONE = -1;
+
+    /*
+     * Extra distance added to every query to absorb float rounding. A hitbox
+     * circle is placed by rotating its local offset in float, which can land
+     * a few ulps beyond the reach computed from the unrotated offset.
+     */
+    private static final float QUERY_SLACK = 1.0f;
+
+    /* Number of cells along each axis and the size of one cell */
+    private final int columns;
+    private final int rows;
+    private final float cellWidth;
+    private final float cellHeight;
+
+    /* First slot filed under each cell, or NONE */
+    private final int[] cellHead;
+
+    /* Neighbouring slots in the same cell list, indexed by slot */
+    private int[] next;
+    private int[] prev;
+
+    /* Cell each slot is filed under, or NONE if the slot is not in the grid */
+    private int[] cellOf;
+
+    /*
+     * Largest bounding radius of any entity inserted so far. Queries are
+     * widened by it, since entities are filed by their centre only.
+     */
+    private float maxRadius;
+
+    /* Reusable output buffer of the last query */
+    private int[] candidates;
+
+    /**
+     * Constructor for a SpatialGrid.
+     *
+     * @param width    - the width of the wrapped area
+     * @param height   - the height of the wrapped area
+     * @param cellSize - the desired width and height of one cell
+     * @param capacity - the number of store slots to size the grid for
+     */
+    SpatialGrid(float width, float height, float cellSize, int capacity) {
+        this.columns = Math.max(1, (int) (width / cellSize));
+        this.rows = Math.max(1, (int) (height / cellSize));
+        this.cellWidth = width / columns;
+        this.cellHeight = height / rows;
+        this.cellHead = new int[columns * rows];
+        Arrays.fill(cellHead, NONE);
+        this.next = new int[0];
+        this.prev = new int[0];
+        this.cellOf = new int[0];
+        this.candidates = new int[16];
+        ensureCapacity(capacity);
+    }
+
+    /**
+     * Files the given slot under the cell containing its position, inserting
+     * it if it is not in the grid yet. Does nothing if the slot has not left
+     * its cell since the last call.
+     *
+     * @param slot   - the store slot of the entity
+     * @param x      - the x coordinate of the entity's centre
+     * @param y      - the y coordinate of the entity's centre
+     * @param radius - the bounding radius of the entity
+     */
+    void update(int slot, float x, float y, float radius) {
+        ensureCapacity(slot + 1);
+        if (radius > maxRadius) {
+            maxRadius = radius;
+        }
+        int cell = cellIndex(x, y);
+        int current = cellOf[slot];
+        if (current == cell) {
+            return;
+        }
+        if (current != NONE) {
+            unlink(slot);
+        }
+        link(slot, cell);
+    }
+
+    /**
+     * Removes the given slot from the grid. Does nothing if it is not in the
+     * grid.
+     *
+     * @param slot - the store slot of the entity
+     */
+    void remove(int slot) {
+        if (slot < 0 || slot >= cellOf.length || cellOf[slot] == NONE) {
+            return;
+        }
+        unlink(slot);
+    }
+
+    /**
+     * Finds every slot that may be within the given distance of a point. The
+     * result is a superset of the slots whose bounding circle overlaps the
+     * circle of the given reach around the point.
+     *
+     * @param x     - the x coordinate of the point
+     * @param y     - the y coordinate of the point
+     * @param reach - the bounding radius of the querying entity
+     * @return - the number of candidates, which are stored at the start of the
+     *         array returned by candidates()
+     */
+    int query(float x, float y, float reach) {
+        reach += maxRadius + QUERY_SLACK;
+        int firstColumn = (int) Math.floor((x - reach) / cellWidth);
+        int firstRow = (int) Math.floor((y - reach) / cellHeight);
+        // Visit each cell at most once, even if the query wraps all the way
+        // around the screen
+        int spanColumns = Math.min(columns,
+                (int) Math.floor((x + reach) / cellWidth) - firstColumn + 1);
+        int spanRows = Math.min(rows,
+                (int) Math.floor((y + reach) / cellHeight) - firstRow + 1);
+
+        int count = 0;
+        for (int r = 0; r < spanRows; r++) {
+            int row = Math.floorMod(firstRow + r, rows);
+            for (int c = 0; c < spanColumns; c++) {
+                int column = Math.floorMod(firstColumn + c, columns);
+                for (int slot = cellHead[row * columns + column]; slot != NONE; slot = next[slot]) {
+                    if (count == candidates.length) {
+                        candidates = Arrays.copyOf(candidates, count * 2);
+                    }
+                    candidates[count++] = slot;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the buffer filled by the last query. It is reused by the next
+     * query, so callers must be done with it before querying again.
+     *
+     * @return - the candidate slots of the last query
+     */
+    int[] candidates() {
+        return candidates;
+    }
+
+    /**
+     * Returns the index of the cell containing the given point, wrapping it
+     * around the screen first.
+     */
+    private int cellIndex(float x, float y) {
+        int column = Math.floorMod((int) Math.floor(x / cellWidth), columns);
+        int row = Math.floorMod((int) Math.floor(y / cellHeight), rows);
+        return row * columns + column;
+    }
+
+    /**
+     * Pushes the slot onto the front of the given cell's list.
+     */
+    private void link(int slot, int cell) {
+        int head = cellHead[cell];
+        next[slot] = head;
+        prev[slot] = NONE;
+        if (head != NONE) {
+            prev[head] = slot;
+        }
+        cellHead[cell] = slot;
+        cellOf[slot] = cell;
+    }
+
+    /**
+     * Removes the slot from the list of the cell it is filed under.
+     */
+    private void unlink(int slot) {
+        int cell = cellOf[slot];
+        if (prev[slot] != NONE) {
+            next[prev[slot]] = next[slot];
+        } else {
+            cellHead[cell] = next[slot];
+        }
+        if (next[slot] != NONE) {
+            prev[next[slot]] = prev[slot];
+        }
+        cellOf[slot] = NONE;
+    }
+
+    /**
+     * Grows the per-slot arrays so that they can index the given number of
+     * slots.
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity <= cellOf.length) {
+            return;
+        }
+        int oldLength = cellOf.length;
+        int newLength = Math.max(capacity, oldLength * 2);
+        next = Arrays.copyOf(next, newLength);
+        prev = Arrays.copyOf(prev, newLength);
+        cellOf = Arrays.copyOf(cellOf, newLength);
+        Arrays.fill(cellOf, oldLength, newLength, NONE);
+    }
+}
@@ -6,6 +6,10 @@ import java.lang.Math;
  * An abstract class that represents entities that the game can spawn. It
  * contains all attributes that a game object needs, and the associated methods
  * the game needs to manipulate them and render them.
+ *
+ * The position, velocity and orientation of an entity are not fields of this
+ * class. They live in one slot of the game's EntityStore, and this object is a
+ * view onto that slot.
  */
 public abstract class SpawnableEntity {
 
@@ -16,96 +20,184 @@ public abstract class SpawnableEntity {
     private static final int SCREEN_WIDTH = 1000;
     private static final int SCREEN_HEIGHT = 1000;
 
+    /* The store holding this entity's state */
+    protected final EntityStore store;
+
+    /* The index of this entity's slot in the store, -1 once despawned */
+    int slot;
+
     /*
-     * An object's location on the screen. It must be within a predetermined
-     * range.
+     * This object's hitbox for determining collisions. It is shared by every
+     * object of the same shape and holds the circles relative to the object's
+     * centre, so moving or rotating the object does not touch it.
      */
-    private Vector2D<Float> position;
+    protected HitBox hitbox;
 
     /*
-     * This object's hitbox for determining collisions. It contains a list of
-     * circles that collectively form the object's hitbox. Each circle is
-     * represented by the hibox class, which contains the circle's position and
-     * radius.
+     * The orientation the cached cosine and sine below were computed for. NaN
+     * until they are first needed, since NaN is not equal to any orientation.
      */
-    protected HitBox[] hitbox;
+    private float trigOrientation = Float.NaN;
+    private float cos;
+    private float sin;
 
-    /*
-     * The orientation of this spawnable entity for drawing on screen. It is
-     * an angle measured in radians. We use the natural convention to
-     * represent angles.
+    /**
+     * Constructor for the SpawnableEntity. Ensures that all derived classes
+     * initialize SpawnableEntity data members. The entity takes a new slot in
+     * the given store.
+     *
+     * @param store       - the store holding the state of the game's entities
+     * @param x           - the x coordinate of the starting position
+     * @param y           - the y coordinate of the starting position
+     * @param vx          - the x component of the starting velocity
+     * @param vy          - the y component of the starting velocity
+     * @param orientation - the starting orientation in radians
+     * @param hitbox      - the shared hitbox of this entity's shape, may be
+     *                    null if the derived class sets it later
      */
-    private float orientation;
+    public SpawnableEntity(EntityStore store, float x, float y, float vx, float vy,
+            float orientation, HitBox hitbox) {
+        this.store = store;
+        spawn(x, y, vx, vy, orientation);
+        setHitbox(hitbox);
+    }
 
-    /*
-     * The velocity of this spawnable entity. It is represented by a vector.
-     * Note that the velocity is independent from the object's orientation.
+    /**
+     * Takes a new slot in the store and sets its starting state. Used by the
+     * constructor, and to bring back a despawned entity for reuse.
+     *
+     * @param x           - the x coordinate of the starting position
+     * @param y           - the y coordinate of the starting position
+     * @param vx          - the x component of the starting velocity
+     * @param vy          - the y component of the starting velocity
+     * @param orientation - the starting orientation in radians
      */
-    private Vector2D<Float> velocity;
+    void spawn(float x, float y, float vx, float vy, float orientation) {
+        this.slot = store.allocate(this);
+        store.x[slot] = x;
+        store.y[slot] = y;
+        store.vx[slot] = vx;
+        store.vy[slot] = vy;
+        store.orientation[slot] = orientation;
+    }
 
     /**
-     * Constructor for the SpawnableEntity. Ensures that all derived classes
-     * initialize SpawnableEntity data members.
+     * Releases this entity's slot in the store. The entity must not be used
+     * after it has been despawned.
      */
-    public SpawnableEntity(Vector2D<Float> position, Vector2D<Float> velocity,
-            float orientation, HitBox[] hitbox) {
-        this.position = position;
-        this.velocity = velocity;
-        this.orientation = orientation;
-        this.hitbox = hitbox;
+    public void despawn() {
+        store.free(slot);
+        slot = -1;
     }
 
     /**
-     * This method rotates the spawnable entity by an angle in radians. It
-     * updates this object's orientation and hitbox accordingly.
+     * This method rotates the spawnable entity by an angle in radians. The
+     * hitbox follows the orientation when it is next needed.
      *
      * @param radians - the amount to rotate this object by in radians
      */
     public void rotate(float radians) {
-        // First update the orientation
         setOrientation(radians + getOrientation());
-
-        // holds the local coordinates of a hitbox circle
-        float localX;
-        float localY;
-        // holds the rotated coordinates of a hitebox circle
-        float rotX;
-        float rotY;
-        for (HitBox circle : hitbox) {
-            // Convert the circle location to local object coordinates
-            localX = circle.position.x - position.x;
-            localY = circle.position.y - position.y;
-
-            // Rotate local coordinates by radians
-            rotX = (float) (localX * Math.cos(radians) - localY * Math.sin(radians));
-            rotY = (float) (localX * Math.sin(radians) + localY * Math.cos(radians));
-
-            // Convert back to global coordinates
-            circle.position.x = rotX + position.x;
-            circle.position.y = rotY + position.y;
-        }
     }
 
     /**
      * This method checks if this spawnable entity has collided with another
-     * spawnable entity.
-     * 
+     * spawnable entity. The world positions of the circles are derived here,
+     * with at most one cosine and sine per entity and orientation.
+     *
      * @return - true if this object has collided with another object, false
      *         otherwise
      */
     public boolean collidesWith(SpawnableEntity other) {
-        for (HitBox circle : hitbox) {
-            for (HitBox otherCircle : other.hitbox) {
-                if (Math.pow(circle.position.x - otherCircle.position.x, 2)
-                        + Math.pow(circle.position.y - otherCircle.position.y, 2) < Math
-                                .pow(circle.radius + otherCircle.radius, 2)) {
-                    return true;
-                }
+        if (other.hitbox.isCentred()) {
+            return reaches(other.store.x[other.slot], other.store.y[other.slot], other.hitbox.radius(0));
+        }
+        if (hitbox.isCentred()) {
+            return other.reaches(store.x[slot], store.y[slot], hitbox.radius(0));
+        }
+        updateTrig();
+        other.updateTrig();
+        for (int i = 0; i < hitbox.size(); i++) {
+            if (other.reaches(hitboxX(i), hitboxY(i), hitbox.radius(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if any circle of this entity's hitbox overlaps the given circle.
+     *
+     * @param x      - the world x coordinate of the centre of the circle
+     * @param y      - the world y coordinate of the centre of the circle
+     * @param radius - the radius of the circle
+     * @return - true if they overlap, false otherwise
+     */
+    private boolean reaches(float x, float y, float radius) {
+        float posX = store.x[slot];
+        float posY = store.y[slot];
+        if (hitbox.isCentred()) {
+            float dx = x - posX;
+            float dy = y - posY;
+            float reach = radius + hitbox.radius(0);
+            return dx * dx + dy * dy < reach * reach;
+        }
+        updateTrig();
+        for (int i = 0; i < hitbox.size(); i++) {
+            float dx = x - (posX + hitbox.x(i) * cos - hitbox.y(i) * sin);
+            float dy = y - (posY + hitbox.x(i) * sin + hitbox.y(i) * cos);
+            float reach = radius + hitbox.radius(i);
+            if (dx * dx + dy * dy < reach * reach) {
+                return true;
             }
         }
         return false;
     }
 
+    /**
+     * Returns the world x coordinate of the centre of a hitbox circle. The
+     * cached cosine and sine must be up to date, see updateTrig.
+     *
+     * @param i - the circle, from 0 to hitbox.size() - 1
+     * @return - the x coordinate of the circle
+     */
+    float hitboxX(int i) {
+        if (hitbox.isCentred()) {
+            return store.x[slot];
+        }
+        return store.x[slot] + hitbox.x(i) * cos - hitbox.y(i) * sin;
+    }
+
+    /**
+     * Returns the world y coordinate of the centre of a hitbox circle. The
+     * cached cosine and sine must be up to date, see updateTrig.
+     *
+     * @param i - the circle, from 0 to hitbox.size() - 1
+     * @return - the y coordinate of the circle
+     */
+    float hitboxY(int i) {
+        if (hitbox.isCentred()) {
+            return store.y[slot];
+        }
+        return store.y[slot] + hitbox.x(i) * sin + hitbox.y(i) * cos;
+    }
+
+    /**
+     * Recomputes the cached cosine and sine if the orientation changed since
+     * they were last computed. Centred hitboxes do not need them.
+     */
+    void updateTrig() {
+        if (hitbox.isCentred()) {
+            return;
+        }
+        float orientation = store.orientation[slot];
+        if (orientation != trigOrientation) {
+            cos = (float) Math.cos(orientation);
+            sin = (float) Math.sin(orientation);
+            trigOrientation = orientation;
+        }
+    }
+
     /**
      * This method converts the spawnable entity to a json formatted string.
      *
@@ -114,60 +206,82 @@ public abstract class SpawnableEntity {
     public abstract String toJson();
 
     /**
-     * This method gets the object's position.
+     * This method gets the object's position. It returns a copy, so it should
+     * not be used in per-frame code; use getX and getY there instead.
      *
      * @return - the position of this SpawnableEntity
      */
     public Vector2D<Float> getPosition() {
-        return position;
+        return new Vector2D<Float>(store.x[slot], store.y[slot]);
+    }
+
+    /**
+     * This method gets the id of the object. Ids are unique within a game and
+     * never change, so they identify the object across snapshots.
+     *
+     * @return - the id of this SpawnableEntity
+     */
+    public int getId() {
+        return store.id[slot];
+    }
+
+    /**
+     * This method gets the x coordinate of the object's position.
+     *
+     * @return - the x coordinate of this SpawnableEntity
+     */
+    public float getX() {
+        return store.x[slot];
+    }
+
+    /**
+     * This method gets the y coordinate of the object's position.
+     *
+     * @return - the y coordinate of this SpawnableEntity
+     */
+    public float getY() {
+        return store.y[slot];
     }
 
     /**
      * This method sets the SpawnableEntity's position. Wraps the position
      * around the screen if it goes out of bounds.
      *
-     * @param position - the position to set this object to
+     * @param x - the x coordinate to set this object to
+     * @param y - the y coordinate to set this object to
      */
-    public void setPosition(Vector2D<Float> position) {
-        if (this.position == null) {
-            this.position = position;
-            return;
-        }
-        
-        // We cannot simply wrap hitboxes around the screen, or they will be
-        // disconnected from the center of the object during rotation. 
-        // We must make them relative to the new position, possibly allowing 
-        // them to be negative.
-        float oldX = this.position.x; 
-        float oldY = this.position.y; 
-        this.position = position;
-        this.position.x = (this.position.x + SCREEN_WIDTH) % SCREEN_WIDTH;
-        this.position.y = (this.position.y + SCREEN_HEIGHT) % SCREEN_HEIGHT;
-        
-        float dx = this.position.x - oldX;
-        float dy = this.position.y - oldY;
-        for (HitBox circle : hitbox) {
-            circle.position.x += dx;
-            circle.position.y += dy;
-        }
+    public void setPosition(float x, float y) {
+        store.x[slot] = (x + SCREEN_WIDTH) % SCREEN_WIDTH;
+        store.y[slot] = (y + SCREEN_HEIGHT) % SCREEN_HEIGHT;
     }
 
     /**
-     * This method gets the spawnable entity's velocity.
+     * This method gets the x component of the spawnable entity's velocity.
      *
-     * @return - the velocity of this SpawnableEntity
+     * @return - the x velocity of this SpawnableEntity
      */
-    protected Vector2D<Float> getVelocity() {
-        return velocity;
+    protected float getVelocityX() {
+        return store.vx[slot];
+    }
+
+    /**
+     * This method gets the y component of the spawnable entity's velocity.
+     *
+     * @return - the y velocity of this SpawnableEntity
+     */
+    protected float getVelocityY() {
+        return store.vy[slot];
     }
 
     /**
      * This method sets the SpawnableEntity's velocity.
      *
-     * @param velocity - the velocity of this spawnable entity
+     * @param vx - the x component of the velocity of this spawnable entity
+     * @param vy - the y component of the velocity of this spawnable entity
      */
-    protected void setVelocity(Vector2D<Float> velocity) {
-        this.velocity = velocity;
+    protected void setVelocity(float vx, float vy) {
+        store.vx[slot] = vx;
+        store.vy[slot] = vy;
     }
 
     /**
@@ -176,7 +290,7 @@ public abstract class SpawnableEntity {
      * @return - the orientation of this SpawnableEntity
      */
     protected float getOrientation() {
-        return orientation;
+        return store.orientation[slot];
     }
 
     /**
@@ -187,6 +301,52 @@ public abstract class SpawnableEntity {
      */
     protected void setOrientation(float orientation) {
         orientation = (orientation + (float) (2 * Math.PI)) % (float) (2 * Math.PI);
-        this.orientation = orientation;
+        store.orientation[slot] = orientation;
+    }
+
+    /**
+     * This method sets the shared hitbox of the SpawnableEntity's shape and
+     * records how far it reaches from the entity's centre.
+     *
+     * @param hitbox - the hitbox, or null for none yet
+     */
+    protected void setHitbox(HitBox hitbox) {
+        this.hitbox = hitbox;
+        store.radius[slot] = hitbox != null ? hitbox.reach() : 0;
+    }
+
+    /**
+     * Appends the common JSON attributes of this entity, its position and
+     * orientation, to the given builder.
+     *
+     * @param json - the builder to append to
+     */
+    protected void appendPositionJson(StringBuilder json) {
+        json.append("\"position\": ");
+        Vector2D.appendJson(json, store.x[slot], store.y[slot]);
+        json.append(", \"orientation\": ");
+        json.append(store.orientation[slot]);
+    }
+
+    /**
+     * Appends the world position and radius of every hitbox circle as a JSON
+     * array to the given builder.
+     *
+     * @param json - the builder to append to
+     */
+    protected void appendHitboxJson(StringBuilder json) {
+        updateTrig();
+        json.append("[");
+        for (int i = 0; i < hitbox.size(); i++) {
+            if (i > 0) {
+                json.append(",");
+            }
+            json.append("{\"position\": ");
+            Vector2D.appendJson(json, hitboxX(i), hitboxY(i));
+            json.append(", \"radius\": ");
+            json.append(hitbox.radius(i));
+            json.append("}");
+        }
+        json.append("]");
     }
 }
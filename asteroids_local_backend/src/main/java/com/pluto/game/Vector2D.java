@@ -29,4 +29,20 @@ public class Vector2D<E extends Number> {
     public String toJson() {
         return "{\"x\": " + this.x + ", \"y\": " + this.y + "}";
     }
+
+    /**
+     * Appends a vector in the same JSON format as toJson to the given builder,
+     * without boxing the coordinates or building an intermediate string.
+     *
+     * @param json - the builder to append to
+     * @param x    - the x coordinate of the vector
+     * @param y    - the y coordinate of the vector
+     */
+    public static void appendJson(StringBuilder json, float x, float y) {
+        json.append("{\"x\": ");
+        json.append(x);
+        json.append(", \"y\": ");
+        json.append(y);
+        json.append("}");
+    }
 }
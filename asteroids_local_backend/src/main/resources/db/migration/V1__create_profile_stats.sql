@@ -0,0 +1,13 @@
+-- ProfileStats was added to init.sql after the first databases were created.
+-- It used to be created by the backend at startup; it is now the first
+-- migration, and does nothing on databases created from init.sql.
+CREATE TABLE IF NOT EXISTS `ProfileStats` (
+    `profile_id` INT NOT NULL,
+    `difficulty` ENUM('EASY', 'MEDIUM', 'HARD', 'ALL') NOT NULL,
+    `highest_score` INT NOT NULL,
+    `highest_level` INT NOT NULL,
+    `longest_duration` INT NOT NULL,
+    `total_games` INT NOT NULL,
+    PRIMARY KEY (`profile_id`, `difficulty`),
+    FOREIGN KEY (`profile_id`) REFERENCES `Profiles`(`profile_id`) ON DELETE CASCADE
+);
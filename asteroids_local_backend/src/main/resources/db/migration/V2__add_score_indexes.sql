@@ -0,0 +1,17 @@
+-- One index per leaderboard sort column. The difficulty filter and the sort
+-- column lead, and the other columns the leaderboard reads follow, so the
+-- query reads the best games of a difficulty from the index alone instead of
+-- scanning and sorting Scores. The ALL leaderboard scans an index instead of
+-- the table.
+CREATE INDEX `idx_scores_difficulty_score`
+    ON `Scores` (`difficulty`, `score`, `profile_id`, `level`, `duration_seconds`, `time_played`);
+CREATE INDEX `idx_scores_difficulty_level`
+    ON `Scores` (`difficulty`, `level`, `profile_id`, `score`, `duration_seconds`, `time_played`);
+CREATE INDEX `idx_scores_difficulty_duration`
+    ON `Scores` (`difficulty`, `duration_seconds`, `profile_id`, `score`, `level`, `time_played`);
+
+-- The games of a profile by difficulty, covering the statistics columns, for
+-- the ProfileStats backfill and any per-profile lookup. It also serves the
+-- profile_id foreign key.
+CREATE INDEX `idx_scores_profile_difficulty`
+    ON `Scores` (`profile_id`, `difficulty`, `score`, `level`, `duration_seconds`);
@@ -0,0 +1,24 @@
+-- Fills ProfileStats from the games uploaded before the table existed. Later
+-- uploads keep it up to date themselves, so this runs once; rows written by
+-- uploads since V1 are overwritten with the same exact values.
+-- Per difficulty
+INSERT INTO `ProfileStats`
+    (`profile_id`, `difficulty`, `highest_score`, `highest_level`, `longest_duration`, `total_games`)
+SELECT `profile_id`, `difficulty`, MAX(`score`), MAX(`level`), MAX(`duration_seconds`), COUNT(*)
+FROM `Scores` GROUP BY `profile_id`, `difficulty`
+ON DUPLICATE KEY UPDATE
+    `highest_score` = VALUES(`highest_score`),
+    `highest_level` = VALUES(`highest_level`),
+    `longest_duration` = VALUES(`longest_duration`),
+    `total_games` = VALUES(`total_games`);
+
+-- ALL rollup
+INSERT INTO `ProfileStats`
+    (`profile_id`, `difficulty`, `highest_score`, `highest_level`, `longest_duration`, `total_games`)
+SELECT `profile_id`, 'ALL', MAX(`score`), MAX(`level`), MAX(`duration_seconds`), COUNT(*)
+FROM `Scores` GROUP BY `profile_id`
+ON DUPLICATE KEY UPDATE
+    `highest_score` = VALUES(`highest_score`),
+    `highest_level` = VALUES(`highest_level`),
+    `longest_duration` = VALUES(`longest_duration`),
+    `total_games` = VALUES(`total_games`);
@@ -0,0 +1,154 @@
+package com.pluto.app;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.pluto.game.Difficulty;
+import com.pluto.game.GameManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies that the session registry replaces and evicts sessions correctly
+ */
+class GameSessionRegistryTest {
+
+	/* Steps the sessions of the registry under test */
+	private GameTickScheduler scheduler;
+
+	/**
+	 * Starts a scheduler for each test
+	 */
+	@BeforeEach
+	void setUp() {
+		scheduler = new GameTickScheduler(60, 1);
+	}
+
+	/**
+	 * Stops the scheduler after each test
+	 */
+	@AfterEach
+	void tearDown() {
+		scheduler.shutdown();
+	}
+
+	/**
+	 * Verifies that replacing a session stops ticking and notifies the old one
+	 */
+	@Test
+	void testPutReplacesSession() {
+		GameSessionRegistry registry = new GameSessionRegistry(scheduler, 100, 600);
+		try {
+			boolean[] evicted = new boolean[1];
+			GameSession first = newSession();
+			first.setOnEvicted(() -> evicted[0] = true);
+			registry.put("user profile", first);
+			GameSession second = newSession();
+			registry.put("user profile", second);
+
+			assertSame(second, registry.get("user profile"));
+			assertTrue(evicted[0]);
+			assertEquals(-1, first.shard);
+			assertEquals(1, registry.size());
+			assertEquals(1, scheduler.getSessionCount());
+
+			registry.remove("user profile", first);
+			assertEquals(1, registry.size());
+			registry.remove("user profile", second);
+			assertNull(registry.get("user profile"));
+			assertEquals(0, scheduler.getSessionCount());
+		} finally {
+			registry.shutdown();
+		}
+	}
+
+	/**
+	 * Verifies that the least recently used session is evicted once the
+	 * session limit is reached
+	 */
+	@Test
+	void testLeastRecentlyUsedSessionIsEvicted() {
+		// "Aa" and "BB" have the same hash code, so they share a shard
+		GameSessionRegistry registry = new GameSessionRegistry(scheduler, 1, 600);
+		try {
+			GameSession first = registry.getOrCreate("Aa", this::newSession);
+			assertSame(first, registry.getOrCreate("Aa", this::newSession));
+			GameSession second = registry.getOrCreate("BB", this::newSession);
+			assertNull(registry.get("Aa"));
+			assertSame(second, registry.get("BB"));
+			assertEquals(-1, first.shard);
+			assertEquals(1, registry.size());
+			assertTrue(registry.estimateMemoryBytes() > 0);
+			assertTrue(registry.toJson().contains("\"capacity_evictions\":1"), registry.toJson());
+		} finally {
+			registry.shutdown();
+		}
+	}
+
+	/**
+	 * Verifies that the session limit holds across all shards, so that keys
+	 * landing on the same shard do not evict each other early, and that a
+	 * full registry evicts from other shards
+	 */
+	@Test
+	void testSessionLimitIsGlobal() {
+		GameSessionRegistry registry = new GameSessionRegistry(scheduler, 2, 600);
+		try {
+			// "Aa" and "BB" share a shard, "C" lands on another one
+			GameSession first = registry.getOrCreate("Aa", this::newSession);
+			GameSession second = registry.getOrCreate("BB", this::newSession);
+			assertSame(first, registry.get("Aa"));
+			assertSame(second, registry.get("BB"));
+			assertEquals(2, registry.size());
+
+			GameSession third = registry.getOrCreate("C", this::newSession);
+			assertNull(registry.get("Aa"));
+			assertSame(second, registry.get("BB"));
+			assertSame(third, registry.get("C"));
+			assertEquals(-1, first.shard);
+			assertEquals(2, registry.size());
+			assertEquals(2, scheduler.getSessionCount());
+			assertTrue(registry.toJson().contains("\"max_sessions\":2"), registry.toJson());
+			assertTrue(registry.toJson().contains("\"capacity_evictions\":1"), registry.toJson());
+		} finally {
+			registry.shutdown();
+		}
+	}
+
+	/**
+	 * Verifies that sessions unused for the idle timeout are evicted, but not
+	 * sessions pushing their state to a client that only listens
+	 */
+	@Test
+	void testIdleSessionsAreEvicted() throws InterruptedException {
+		GameSessionRegistry registry = new GameSessionRegistry(scheduler, 100, 1);
+		try {
+			registry.put("idle", newSession());
+			GameSession streamed = new GameSession(new GameManager(Difficulty.EASY), frame -> {
+			});
+			registry.put("streamed", streamed);
+			registry.evictIdle();
+			assertEquals(2, registry.size());
+			Thread.sleep(1100);
+			registry.evictIdle();
+			assertNull(registry.get("idle"));
+			assertSame(streamed, registry.get("streamed"));
+			assertEquals(1, registry.size());
+			assertEquals(1, scheduler.getSessionCount());
+			assertTrue(registry.toJson().contains("\"idle_evictions\":1"), registry.toJson());
+		} finally {
+			registry.shutdown();
+		}
+	}
+
+	/**
+	 * Creates a polled session playing a new game
+	 */
+	private GameSession newSession() {
+		return new GameSession(new GameManager(Difficulty.EASY));
+	}
+}
@@ -0,0 +1,227 @@
+package com.pluto.app;
+
+import java.net.URI;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import com.pluto.game.Spaceship;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Verifies that the socket handler applies the client's messages to its game
+ * and drops the game when the socket closes
+ */
+class GameSocketHandlerTest {
+
+	/* The player key of every socket opened by the tests */
+	private static final String KEY = "user main";
+
+	/*
+	 * Steps the games of the handler under test. It ticks once a second, so
+	 * no tick runs during a test unless the test runs it itself.
+	 */
+	private GameTickScheduler scheduler;
+
+	/* Holds the games of the handler under test */
+	private GameSessionRegistry registry;
+
+	/* The handler under test */
+	private GameSocketHandler handler;
+
+	/**
+	 * Creates a handler for each test
+	 */
+	@BeforeEach
+	void setUp() {
+		scheduler = new GameTickScheduler(1, 1);
+		registry = new GameSessionRegistry(scheduler, 100, 600);
+		handler = new GameSocketHandler(registry);
+	}
+
+	/**
+	 * Stops the registry and the scheduler after each test
+	 */
+	@AfterEach
+	void tearDown() {
+		registry.shutdown();
+		scheduler.shutdown();
+	}
+
+	/**
+	 * Verifies that inputs are held from their press until their release, and
+	 * that a shot is queued once per press
+	 */
+	@Test
+	void testPressAndRelease() throws Exception {
+		WebSocketSession socket = open("");
+		GameSession game = registry.get(KEY);
+		assertNotNull(game);
+
+		send(socket, "+UP");
+		send(socket, "+LEFT");
+		assertEquals(Spaceship.Input.UP.bit() | Spaceship.Input.LEFT.bit(), game.getInputs());
+		send(socket, "-UP");
+		assertEquals(Spaceship.Input.LEFT.bit(), game.getInputs());
+		send(socket, " -LEFT\n");
+		assertEquals(0, game.getInputs());
+
+		send(socket, "+SHOOT");
+		assertEquals(Spaceship.Input.SHOOT.bit(), game.getInputs());
+		// Releasing does not cancel a shot that was already fired
+		send(socket, "-SHOOT");
+		assertEquals(Spaceship.Input.SHOOT.bit(), game.getInputs());
+	}
+
+	/**
+	 * Verifies that "new" replaces the game without closing the socket
+	 */
+	@Test
+	void testNewStartsAnotherGame() throws Exception {
+		WebSocketSession socket = open("");
+		GameSession first = registry.get(KEY);
+		send(socket, "+UP");
+
+		send(socket, "new");
+		GameSession second = registry.get(KEY);
+		assertNotSame(first, second);
+		assertEquals(0, second.getInputs());
+		assertEquals(1, scheduler.getSessionCount());
+		verify(socket, never()).close(any());
+
+		// Inputs now go to the new game
+		send(socket, "+RIGHT");
+		assertEquals(Spaceship.Input.RIGHT.bit(), second.getInputs());
+	}
+
+	/**
+	 * Verifies that a paused game is not stepped and sends no frames until it
+	 * is resumed
+	 */
+	@Test
+	void testPauseAndResume() throws Exception {
+		WebSocketSession socket = open("");
+		GameSession game = registry.get(KEY);
+		String initial = game.toJson();
+
+		send(socket, "pause");
+		game.tick(1 / 60f, System.nanoTime());
+		assertEquals(initial, game.toJson());
+		verify(socket, never()).sendMessage(any());
+
+		send(socket, "resume");
+		game.tick(1 / 60f, System.nanoTime());
+		verify(socket).sendMessage(any(TextMessage.class));
+	}
+
+	/**
+	 * Verifies that acknowledgements reach the game, clamped to the snapshots
+	 * actually sent
+	 */
+	@Test
+	void testAck() throws Exception {
+		WebSocketSession socket = open("&format=binary");
+		GameSession game = registry.get(KEY);
+		game.tick(1 / 60f, System.nanoTime());
+		game.tick(1 / 60f, System.nanoTime());
+		verify(socket, atLeastOnce()).sendMessage(any(BinaryMessage.class));
+
+		send(socket, "ack 1");
+		assertEquals(1, game.getAcknowledged());
+		send(socket, "ack 0");
+		assertEquals(1, game.getAcknowledged());
+		send(socket, "ack 1000");
+		assertEquals(2, game.getAcknowledged());
+	}
+
+	/**
+	 * Verifies that malformed messages are ignored and leave the game and the
+	 * socket as they were
+	 */
+	@Test
+	void testMalformedMessagesAreIgnored() throws Exception {
+		WebSocketSession socket = open("&format=binary");
+		GameSession game = registry.get(KEY);
+		game.tick(1 / 60f, System.nanoTime());
+		send(socket, "ack 1");
+		send(socket, "+UP");
+
+		String[] malformed = { "", " ", "+", "-", "UP", "*UP", "+up", "+JUMP", "-JUMP", "ack", "ack x",
+				"ack 99999999999", "newer", "hello" };
+		for (String message : malformed) {
+			send(socket, message);
+		}
+		assertEquals(Spaceship.Input.UP.bit(), game.getInputs());
+		assertEquals(1, game.getAcknowledged());
+		assertEquals(game, registry.get(KEY));
+		verify(socket, never()).close(any());
+	}
+
+	/**
+	 * Verifies that a socket opened with an unknown difficulty is closed
+	 * without a game
+	 */
+	@Test
+	void testInvalidDifficultyIsRejected() throws Exception {
+		WebSocketSession socket = open("&difficulty=IMPOSSIBLE");
+		verify(socket).close(CloseStatus.BAD_DATA.withReason("Invalid difficulty"));
+		assertNull(registry.get(KEY));
+	}
+
+	/**
+	 * Verifies that closing the socket removes its game from the registry and
+	 * the scheduler, and that later messages are ignored
+	 */
+	@Test
+	void testCloseUnregistersSession() throws Exception {
+		WebSocketSession socket = open("");
+		GameSession game = registry.get(KEY);
+		assertEquals(1, scheduler.getSessionCount());
+
+		handler.afterConnectionClosed(socket, CloseStatus.NORMAL);
+		assertNull(registry.get(KEY));
+		assertEquals(0, registry.size());
+		assertEquals(0, scheduler.getSessionCount());
+		assertEquals(-1, game.shard);
+
+		send(socket, "+UP");
+		send(socket, "new");
+		assertEquals(0, game.getInputs());
+		assertNull(registry.get(KEY));
+	}
+
+	/**
+	 * Opens a mocked socket for KEY with the given extra query parameters
+	 */
+	private WebSocketSession open(String query) throws Exception {
+		WebSocketSession socket = mock(WebSocketSession.class);
+		when(socket.getId()).thenReturn("socket-1");
+		when(socket.isOpen()).thenReturn(true);
+		when(socket.getUri()).thenReturn(
+				new URI("ws://localhost:8080/api/gameSocket?username=user&profile_name=main" + query));
+		handler.afterConnectionEstablished(socket);
+		return socket;
+	}
+
+	/**
+	 * Sends a text message from the client
+	 */
+	private void send(WebSocketSession socket, String message) throws Exception {
+		handler.handleTextMessage(socket, new TextMessage(message));
+	}
+}
@@ -0,0 +1,88 @@
+package com.pluto.app;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.pluto.game.Difficulty;
+import com.pluto.game.GameManager;
+import com.pluto.game.Spaceship;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies the fixed time step simulation and its tick statistics
+ */
+class GameTickSchedulerTest {
+
+	/**
+	 * Verifies that percentiles stay within one bucket of the true value
+	 */
+	@Test
+	void testHistogramPercentiles() {
+		TickHistogram histogram = new TickHistogram();
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i);
+		}
+		assertEquals(1000, histogram.count());
+		assertEquals(1000, histogram.max());
+		long p50 = histogram.percentile(50);
+		assertTrue(p50 >= 500 && p50 <= 500 * 1.13, "p50 was " + p50);
+		long p99 = histogram.percentile(99);
+		assertTrue(p99 >= 990 && p99 <= 1000, "p99 was " + p99);
+		assertEquals(0, new TickHistogram().percentile(99));
+	}
+
+	/**
+	 * Verifies that a pushing session steps once per tick, fires a queued shot
+	 * exactly once, and sends its state after each tick
+	 */
+	@Test
+	void testSessionTicksWithBufferedInputs() {
+		List<String> frames = new ArrayList<String>();
+		GameSession session = new GameSession(new GameManager(Difficulty.MEDIUM), frames::add);
+		session.press(Spaceship.Input.SHOOT);
+		session.tick(1 / 60f, System.nanoTime());
+		session.tick(1 / 60f, System.nanoTime());
+		assertEquals(2, frames.size());
+		assertTrue(frames.get(0).contains("\"bullets\":[{"), frames.get(0));
+		assertTrue(frames.get(1).contains("\"time\":0.033"), frames.get(1));
+	}
+
+	/**
+	 * Verifies that a polled session pauses when it is no longer polled
+	 */
+	@Test
+	void testPolledSessionPausesWhenNotPolled() {
+		GameSession session = new GameSession(new GameManager(Difficulty.MEDIUM));
+		session.poll(0);
+		long polled = System.nanoTime();
+		session.tick(0.5f, polled);
+		session.tick(0.5f, polled + 1_000_000_000L);
+		assertTrue(session.toJson().contains("\"time\":0.5,"), session.toJson());
+	}
+
+	/**
+	 * Verifies that sessions are spread evenly across the shards
+	 */
+	@Test
+	void testSessionsAreSpreadAcrossShards() {
+		GameTickScheduler scheduler = new GameTickScheduler(60, 2);
+		try {
+			GameSession[] sessions = new GameSession[4];
+			for (int i = 0; i < sessions.length; i++) {
+				sessions[i] = new GameSession(new GameManager(Difficulty.EASY));
+				scheduler.register(sessions[i]);
+			}
+			assertEquals(4, scheduler.getSessionCount());
+			assertTrue(scheduler.toJson().contains("\"shard_sessions\":[2,2]"), scheduler.toJson());
+			scheduler.unregister(sessions[0]);
+			assertEquals(3, scheduler.getSessionCount());
+			assertEquals(-1, sessions[0].shard);
+		} finally {
+			scheduler.shutdown();
+		}
+	}
+}
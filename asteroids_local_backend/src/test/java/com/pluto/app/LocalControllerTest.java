@@ -18,7 +18,9 @@ import org.json.JSONObject;
 /**
  * Verifies correctness of HTTP responses from local backend for user logins
  */
-@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.DEFINED_PORT) // May customize port here
+// The schema is not migrated, so the context starts without a database
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.DEFINED_PORT, // May customize port here
+		properties = "asteroids.db.migrateOnStartup=false")
 class LocalControllerTest {
 
 	/**
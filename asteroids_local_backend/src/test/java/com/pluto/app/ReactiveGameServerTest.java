@@ -0,0 +1,139 @@
+package com.pluto.app;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import com.pluto.database.LeaderboardEntry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies that the reactive endpoints answer like the servlet endpoints and
+ * that game streams push frames
+ */
+class ReactiveGameServerTest {
+
+	/* Steps the games of the server under test */
+	private GameTickScheduler scheduler;
+
+	/* Holds the games of the server under test */
+	private GameSessionRegistry registry;
+
+	/* The server under test, not bound to a port */
+	private ReactiveGameServer server;
+
+	/* Calls the routes of the server directly */
+	private WebTestClient client;
+
+	/**
+	 * Starts a server whose leaderboard holds two entries for each test
+	 */
+	@BeforeEach
+	void setUp() {
+		scheduler = new GameTickScheduler(60, 1);
+		registry = new GameSessionRegistry(scheduler, 100, 600);
+		server = new ReactiveGameServer(registry, (n, score, difficulty, handler) -> {
+			if (!score.equals("score")) {
+				return "Invalid score or difficulty";
+			}
+			handler.accept(new LeaderboardEntry(1, "alice", "main", 300, 3, 60, null));
+			handler.accept(new LeaderboardEntry(2, "bob", "main", 200, 2, 50, null));
+			return "";
+		}, 2, 10);
+		client = WebTestClient.bindToRouterFunction(server.routes()).build();
+	}
+
+	/**
+	 * Stops the server and the scheduler after each test
+	 */
+	@AfterEach
+	void tearDown() {
+		server.shutdown();
+		registry.shutdown();
+		scheduler.shutdown();
+	}
+
+	/**
+	 * Verifies that a game started with newGame is played with updateGame
+	 */
+	@Test
+	void testNewGameThenUpdateGame() {
+		String created = get("/api/newGame?username=alice&profile_name=main&seed=42");
+		assertEquals("{\"success\":\"true\",\"error\":\"\",\"seed\":\"42\"}", created);
+		assertEquals(1, registry.size());
+
+		String state = get("/api/updateGame?username=alice&profile_name=main&inputs=UP,SHOOT");
+		assertTrue(state.startsWith("{\"player\":"));
+		assertEquals("{\"success\":\"false\",\"error\":\"Invalid difficulty\"}",
+				get("/api/updateGame?username=carol&profile_name=main&difficulty=IMPOSSIBLE"));
+		assertNull(registry.get("carol main"));
+		assertEquals("{\"success\":\"false\",\"error\":\"Invalid seed\"}",
+				get("/api/newGame?username=alice&profile_name=main&seed=x"));
+		assertEquals("{\"success\":\"false\",\"error\":\"Invalid difficulty\"}",
+				get("/api/newGame?username=alice&profile_name=main&difficulty=IMPOSSIBLE"));
+	}
+
+	/**
+	 * Verifies that the leaderboard is returned in the format of the servlet
+	 * endpoint, and that errors are reported
+	 */
+	@Test
+	void testLeaderboard() {
+		String board = get("/api/leaderboard?limit=2");
+		assertTrue(board.startsWith("{\"leaderboard\":[{\"user\":\"alice\""));
+		assertTrue(board.contains("},{\"user\":\"bob\""));
+		assertTrue(board.endsWith("], \"success\":true, \"error\":\"\"}"));
+		assertEquals("{\"success\":\"false\",\"error\":\"Failed to fetch leaderboard\"}",
+				get("/api/leaderboard?score=level"));
+	}
+
+	/**
+	 * Verifies that a game stream pushes frames and removes its game soon
+	 * after the client disconnects
+	 */
+	@Test
+	void testGameStreamPushesFrames() throws InterruptedException {
+		assertEquals("{\"success\":\"false\",\"error\":\"No game to send inputs to\"}",
+				get("/api/gameInputs?username=bob&profile_name=main&inputs=UP"));
+
+		List<String> frames = client.get().uri("/api/gameStream?username=bob&profile_name=main")
+				.accept(MediaType.TEXT_EVENT_STREAM)
+				.exchange()
+				.expectStatus().isOk()
+				.returnResult(String.class)
+				.getResponseBody()
+				.take(3)
+				.collectList()
+				.block(Duration.ofSeconds(5));
+
+		assertEquals(3, frames.size());
+		for (String frame : frames) {
+			assertTrue(frame.startsWith("{\"player\":"));
+		}
+		// The game is removed off the event loop, shortly after the disconnect
+		long deadline = System.nanoTime() + 5_000_000_000L;
+		while (registry.get("bob main") != null && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertNull(registry.get("bob main"));
+	}
+
+	/**
+	 * Returns the body of a GET request
+	 */
+	private String get(String uri) {
+		return client.get().uri(uri).exchange()
+				.expectStatus().isOk()
+				.expectBody(String.class)
+				.returnResult()
+				.getResponseBody();
+	}
+}
@@ -0,0 +1,120 @@
+package com.pluto.database;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+import org.mindrot.jbcrypt.BCrypt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies that passwords are checked on the hashing pool, rehashed when the
+ * cost changes and rejected when the pool is full
+ */
+class AuthenticatorTest {
+
+	/**
+	 * A database client keeping users in memory
+	 */
+	private static class FakeDatabaseClient extends DatabaseClient {
+		private final List<String> updates = new ArrayList<String>();
+		private final CountDownLatch insertGate;
+		private String storedHash = "";
+
+		private FakeDatabaseClient(CountDownLatch insertGate) {
+			super(null);
+			this.insertGate = insertGate;
+		}
+
+		@Override
+		public String getPasswordHash(String username) {
+			return storedHash;
+		}
+
+		@Override
+		public String insertUser(String username, String hashedPassword) {
+			try {
+				insertGate.await();
+			} catch (InterruptedException e) {
+				return "Interrupted";
+			}
+			return "";
+		}
+
+		@Override
+		public String updatePasswordHash(String username, String hashedPassword) {
+			updates.add(hashedPassword);
+			storedHash = hashedPassword;
+			return "";
+		}
+	}
+
+	/**
+	 * Verifies that a login checks the password and upgrades a hash made
+	 * with another cost
+	 */
+	@Test
+	void testLoginRehashesOtherCost() {
+		FakeDatabaseClient dbClient = new FakeDatabaseClient(new CountDownLatch(0));
+		Authenticator authenticator = new Authenticator(dbClient, 1, 4, 4);
+		try {
+			assertEquals("Username or password is incorrect", authenticator.login("alice", "secret").join());
+
+			dbClient.storedHash = BCrypt.hashpw("secret", BCrypt.gensalt(5));
+			assertEquals("Username or password is incorrect", authenticator.login("alice", "wrong").join());
+			assertTrue(dbClient.updates.isEmpty());
+
+			assertEquals("", authenticator.login("alice", "secret").join());
+			assertEquals(1, dbClient.updates.size());
+			assertEquals(4, Authenticator.costOf(dbClient.storedHash));
+			assertTrue(BCrypt.checkpw("secret", dbClient.storedHash));
+
+			// Already at the configured cost, so not rehashed again
+			assertEquals("", authenticator.login("alice", "secret").join());
+			assertEquals(1, dbClient.updates.size());
+			assertTrue(authenticator.toJson().contains("\"rehashes\":1"));
+		} finally {
+			authenticator.shutdown();
+		}
+	}
+
+	/**
+	 * Verifies that registrations are rejected at once when every thread and
+	 * queue slot is taken
+	 */
+	@Test
+	void testRejectsWhenPoolIsFull() {
+		CountDownLatch insertGate = new CountDownLatch(1);
+		Authenticator authenticator = new Authenticator(new FakeDatabaseClient(insertGate), 1, 1, 4);
+		try {
+			CompletableFuture<String> running = authenticator.register("alice", "secret");
+			// Wait for the first registration to leave the queue
+			long deadline = System.currentTimeMillis() + 5000;
+			while (!authenticator.toJson().contains("\"queue_depth\":0") && System.currentTimeMillis() < deadline) {
+				Thread.onSpinWait();
+			}
+			CompletableFuture<String> queued = authenticator.register("bob", "secret");
+			assertEquals("Server is busy, please try again", authenticator.register("carol", "secret").join());
+
+			insertGate.countDown();
+			assertEquals("", running.join());
+			assertEquals("", queued.join());
+			assertTrue(authenticator.toJson().contains("\"rejected\":1"));
+		} finally {
+			authenticator.shutdown();
+		}
+	}
+
+	/**
+	 * Verifies that the cost is read from a hash
+	 */
+	@Test
+	void testCostOf() {
+		assertEquals(10, Authenticator.costOf("$2a$10$abcdefghijklmnopqrstuv"));
+		assertEquals(-1, Authenticator.costOf("plaintext"));
+	}
+}
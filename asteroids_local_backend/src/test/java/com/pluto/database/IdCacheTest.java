@@ -0,0 +1,49 @@
+package com.pluto.database;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Verifies that the id cache drops the least recently used and expired ids
+ */
+class IdCacheTest {
+
+	/**
+	 * Verifies that a full cache drops the least recently used id
+	 */
+	@Test
+	void testDropsLeastRecentlyUsed() {
+		IdCache cache = new IdCache(2, Long.MAX_VALUE / 2, () -> 0L);
+		cache.put("alice", 1);
+		cache.put("bob", 2);
+		assertEquals(1, cache.get("alice"));
+		cache.put("carol", 3);
+		assertEquals(-1, cache.get("bob"));
+		assertEquals(1, cache.get("alice"));
+		assertEquals(3, cache.get("carol"));
+		assertEquals(2, cache.size());
+
+		cache.put("dave", -1);
+		cache.remove("alice");
+		assertEquals(-1, cache.get("dave"));
+		assertEquals(-1, cache.get("alice"));
+		assertEquals(3, cache.getHits());
+		assertEquals(3, cache.getMisses());
+	}
+
+	/**
+	 * Verifies that ids expire after their time to live
+	 */
+	@Test
+	void testExpiresAfterTimeToLive() {
+		long[] now = { 0 };
+		IdCache cache = new IdCache(10, 100, () -> now[0]);
+		cache.put("alice", 1);
+		now[0] = 99;
+		assertEquals(1, cache.get("alice"));
+		now[0] = 100;
+		assertEquals(-1, cache.get("alice"));
+		assertEquals(0, cache.size());
+	}
+}
@@ -0,0 +1,76 @@
+package com.pluto.database;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Verifies that the in-memory leaderboards rank games like the leaderboard
+ * query does
+ */
+class LeaderboardCacheTest {
+
+	/**
+	 * Verifies that a board is loaded once, and that uploaded games only
+	 * replace a user's entry when they beat it
+	 */
+	@Test
+	void testRecordScoreUpdatesLoadedBoards() throws IOException {
+		int[] loads = new int[1];
+		LeaderboardCache cache = new LeaderboardCache((score, difficulty, handler) -> {
+			loads[0]++;
+			handler.accept(new LeaderboardEntry(1, "alice", "main", 300, 3, 60, null));
+			handler.accept(new LeaderboardEntry(2, "bob", "main", 200, 2, 50, null));
+			return "";
+		});
+
+		assertEquals(List.of("alice", "bob"), top(cache, 10, "score", "ALL"));
+		cache.recordScore("bob", "alt", "EASY", 400, 1, 10);
+		cache.recordScore("alice", "main", "HARD", 100, 9, 10);
+		cache.recordScore("carol", "main", "MEDIUM", 300, 1, 10);
+
+		// carol ties with alice but played later, so she ranks below her
+		assertEquals(List.of("bob", "alice", "carol"), top(cache, 10, "score", "ALL"));
+		assertEquals(List.of("bob", "alice"), top(cache, 2, "score", "ALL"));
+		assertEquals(1, loads[0]);
+
+		// The level board is loaded after the uploads and must not count them twice
+		assertEquals(List.of("alice", "bob"), top(cache, 10, "level", "ALL"));
+		cache.recordScore("alice", "main", "HARD", 100, 9, 10);
+		assertEquals(List.of("alice", "bob"), top(cache, 10, "level", "ALL"));
+		assertEquals(2, loads[0]);
+	}
+
+	/**
+	 * Verifies that invalidating reloads every board and that invalid
+	 * requests are rejected
+	 */
+	@Test
+	void testInvalidateReloadsAndRejectsInvalidRequests() throws IOException {
+		int[] loads = new int[1];
+		LeaderboardCache cache = new LeaderboardCache((score, difficulty, handler) -> {
+			loads[0]++;
+			return "";
+		});
+		top(cache, 5, "score", "EASY");
+		cache.invalidate();
+		top(cache, 5, "score", "EASY");
+		assertEquals(2, loads[0]);
+		assertEquals("Invalid limit", cache.streamTopScores(0, "score", "EASY", entry -> { }));
+		assertEquals("Invalid score or difficulty", cache.streamTopScores(5, "time", "EASY", entry -> { }));
+	}
+
+	/**
+	 * Returns the user names on the top n entries of a board
+	 */
+	private static List<String> top(LeaderboardCache cache, int n, String score, String difficulty)
+			throws IOException {
+		List<String> users = new ArrayList<String>();
+		assertEquals("", cache.streamTopScores(n, score, difficulty, entry -> users.add(entry.getUserName())));
+		return users;
+	}
+}
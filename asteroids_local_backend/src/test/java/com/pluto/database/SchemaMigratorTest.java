@@ -0,0 +1,283 @@
+package com.pluto.database;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Verifies that the migrations apply once and in order, and that the hot
+ * queries use the indexes they add instead of scanning tables. The plans are
+ * checked on H2 in MySQL mode, and also on a real MySQL server holding the
+ * init.sql schema when ASTEROIDS_TEST_MYSQL_URL (and ASTEROIDS_TEST_MYSQL_USER
+ * and ASTEROIDS_TEST_MYSQL_PASSWORD) are set, e.g.
+ * jdbc:mysql://localhost:3306/Users
+ */
+class SchemaMigratorTest {
+
+	/*
+	 * A table or index read by H2 without a condition, i.e. in full, such as
+	 * "/* public.scores.tableScan *\/". Indexed reads show their condition
+	 * after a colon.
+	 */
+	private static final Pattern H2_FULL_SCAN = Pattern.compile("/\\* public\\.[\\w.]+ \\*/");
+
+	/* The sort columns of the leaderboards */
+	private static final String[] SCORES = { "score", "level", "duration_seconds" };
+
+	/* A fresh in-memory database holding the init.sql schema */
+	private DataSource h2;
+
+	/**
+	 * Creates the init.sql schema in a new in-memory database for each test
+	 */
+	@BeforeEach
+	void setUp() throws IOException, SQLException {
+		JdbcDataSource dataSource = new JdbcDataSource();
+		dataSource.setURL("jdbc:h2:mem:" + System.nanoTime() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+		h2 = dataSource;
+		String schema = new String(Files.readAllBytes(Paths.get("../init.sql")));
+		try (Connection dbConn = h2.getConnection(); Statement stmt = dbConn.createStatement()) {
+			for (String statement : schema.split(";\\s*\\n")) {
+				if (!statement.isBlank()) {
+					stmt.execute(statement);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Verifies that every migration is applied once, in version order
+	 */
+	@Test
+	void testMigrationsApplyOnceInOrder() throws IOException, SQLException {
+		SchemaMigrator migrator = new SchemaMigrator(h2, "classpath:db/migration", true);
+		List<SchemaMigrator.Migration> migrations = migrator.load();
+		assertEquals(1, migrations.get(0).getVersion());
+		assertEquals(2, migrations.get(1).getVersion());
+		assertEquals(3, migrations.get(2).getVersion());
+
+		assertEquals("", migrator.migrate());
+		assertEquals(List.of(1, 2, 3), appliedVersions());
+		assertEquals("", migrator.migrate());
+		assertEquals(List.of(1, 2, 3), appliedVersions());
+	}
+
+	/**
+	 * Verifies that startup waits for a database that is not reachable yet,
+	 * and migrates it once it is
+	 */
+	@Test
+	void testStartupWaitsForDatabase() throws SQLException {
+		DataSource starting = mock(DataSource.class);
+		when(starting.getConnection())
+				.thenThrow(new SQLTransientConnectionException("Connection refused"))
+				.thenAnswer(invocation -> h2.getConnection());
+
+		new SchemaMigrator(starting, "classpath:db/migration", true, 10).migrateOnStartup();
+		verify(starting, times(2)).getConnection();
+		assertEquals(List.of(1, 2, 3), appliedVersions());
+	}
+
+	/**
+	 * Verifies that startup fails when the database stays unreachable, or a
+	 * migration fails, instead of serving requests on an old schema
+	 */
+	@Test
+	void testStartupFailsWithoutMigrations(@TempDir Path dir) throws IOException, SQLException {
+		DataSource down = mock(DataSource.class);
+		when(down.getConnection()).thenThrow(new SQLTransientConnectionException("Connection refused"));
+		assertThrows(IllegalStateException.class,
+				() -> new SchemaMigrator(down, "classpath:db/migration", true, 0).migrateOnStartup());
+
+		Files.writeString(dir.resolve("V1__broken.sql"), "CREATE TABLE Broken (;");
+		assertThrows(IllegalStateException.class,
+				() -> new SchemaMigrator(h2, dir.toUri().toString(), true, 10).migrateOnStartup());
+
+		// Disabled migrations never touch the database
+		new SchemaMigrator(down, "classpath:db/migration", false, 0).migrateOnStartup();
+		verify(down, times(1)).getConnection();
+	}
+
+	/**
+	 * Verifies that the statistics of games uploaded before ProfileStats
+	 * existed are filled in once, and not recomputed by later migrations
+	 */
+	@Test
+	void testProfileStatsAreBackfilledOnce() throws SQLException {
+		execute("INSERT INTO Users (user_id, user_name, user_password) VALUES (1, 'user', 'x')");
+		execute("INSERT INTO Profiles (profile_id, user_id, profile_name) VALUES (2, 1, 'main')");
+		execute("INSERT INTO Scores (profile_id, difficulty, score, level, duration_seconds) VALUES (2, 'EASY', 300, 3, 60)");
+		execute("INSERT INTO Scores (profile_id, difficulty, score, level, duration_seconds) VALUES (2, 'EASY', 100, 4, 20)");
+		execute("INSERT INTO Scores (profile_id, difficulty, score, level, duration_seconds) VALUES (2, 'HARD', 500, 2, 30)");
+
+		SchemaMigrator migrator = new SchemaMigrator(h2, "classpath:db/migration", true);
+		assertEquals("", migrator.migrate());
+		assertEquals(List.of(300, 4, 60, 2), stats("EASY"));
+		assertEquals(List.of(500, 2, 30, 1), stats("HARD"));
+		assertEquals(List.of(500, 4, 60, 3), stats("ALL"));
+
+		// A score written behind the statistics' back is not picked up again
+		execute("INSERT INTO Scores (profile_id, difficulty, score, level, duration_seconds) VALUES (2, 'HARD', 900, 9, 90)");
+		assertEquals("", migrator.migrate());
+		assertEquals(List.of(500, 4, 60, 3), stats("ALL"));
+	}
+
+	/**
+	 * Verifies that the leaderboard and statistics queries scan tables before
+	 * the migrations and use indexes after them
+	 */
+	@Test
+	void testHotQueriesUseIndexesOnH2() throws SQLException {
+		String before = h2Plan(DatabaseClient.topScoresQuery("score", "EASY"), "EASY", 10);
+		assertTrue(H2_FULL_SCAN.matcher(before).find(), before);
+
+		assertEquals("", new SchemaMigrator(h2, "classpath:db/migration", true).migrate());
+		for (String score : SCORES) {
+			String plan = h2Plan(DatabaseClient.topScoresQuery(score, "EASY"), "EASY", 10);
+			assertFalse(H2_FULL_SCAN.matcher(plan).find(), plan);
+			assertTrue(plan.contains("idx_scores_difficulty_"), plan);
+		}
+		String plan = h2Plan(DatabaseClient.STATS_QUERY, "ALL", "user", "main");
+		assertFalse(H2_FULL_SCAN.matcher(plan).find(), plan);
+	}
+
+	/**
+	 * Verifies that no hot query reads a whole table on a real MySQL server.
+	 * Skipped when no server is configured.
+	 */
+	@Test
+	void testHotQueriesUseIndexesOnMySql() throws SQLException {
+		String url = System.getenv("ASTEROIDS_TEST_MYSQL_URL");
+		assumeTrue(url != null && !url.isEmpty(), "ASTEROIDS_TEST_MYSQL_URL is not set");
+		DataSource mysql = new DriverManagerDataSource(url, System.getenv("ASTEROIDS_TEST_MYSQL_USER"),
+				System.getenv("ASTEROIDS_TEST_MYSQL_PASSWORD"));
+		assertEquals("", new SchemaMigrator(mysql, "classpath:db/migration", true).migrate());
+
+		try (Connection dbConn = mysql.getConnection()) {
+			for (String score : SCORES) {
+				for (String difficulty : new String[] { "EASY", "ALL" }) {
+					String query = DatabaseClient.topScoresQuery(score, difficulty);
+					if (difficulty.equals("ALL")) {
+						assertNoFullScan(dbConn, query, 10);
+					} else {
+						assertNoFullScan(dbConn, query, difficulty, 10);
+					}
+				}
+			}
+			assertNoFullScan(dbConn, DatabaseClient.STATS_QUERY, "ALL", "user", "main");
+		}
+	}
+
+	/**
+	 * Returns the versions recorded in SchemaVersion, in order
+	 */
+	private List<Integer> appliedVersions() throws SQLException {
+		List<Integer> versions = new ArrayList<Integer>();
+		try (Connection dbConn = h2.getConnection();
+				Statement stmt = dbConn.createStatement();
+				ResultSet rs = stmt.executeQuery("SELECT version FROM SchemaVersion ORDER BY version")) {
+			while (rs.next()) {
+				versions.add(rs.getInt(1));
+			}
+		}
+		return versions;
+	}
+
+	/**
+	 * Runs a statement on the H2 database
+	 */
+	private void execute(String sql) throws SQLException {
+		try (Connection dbConn = h2.getConnection(); Statement stmt = dbConn.createStatement()) {
+			stmt.executeUpdate(sql);
+		}
+	}
+
+	/**
+	 * Returns the highest score, highest level, longest duration and number of
+	 * games of profile 2 in ProfileStats
+	 */
+	private List<Integer> stats(String difficulty) throws SQLException {
+		try (Connection dbConn = h2.getConnection();
+				PreparedStatement stmt = dbConn.prepareStatement(
+						"SELECT highest_score, highest_level, longest_duration, total_games FROM ProfileStats "
+								+ "WHERE profile_id = 2 AND difficulty = ?")) {
+			stmt.setString(1, difficulty);
+			try (ResultSet rs = stmt.executeQuery()) {
+				assertTrue(rs.next());
+				return List.of(rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getInt(4));
+			}
+		}
+	}
+
+	/**
+	 * Returns the H2 plan of a query
+	 */
+	private String h2Plan(String query, Object... params) throws SQLException {
+		try (Connection dbConn = h2.getConnection();
+				PreparedStatement stmt = prepareExplain(dbConn, query, params);
+				ResultSet rs = stmt.executeQuery()) {
+			StringBuilder plan = new StringBuilder();
+			while (rs.next()) {
+				plan.append(rs.getString(1)).append('\n');
+			}
+			return plan.toString();
+		}
+	}
+
+	/**
+	 * Fails if the MySQL plan of a query reads any table with a full scan
+	 * (access type ALL). Derived tables, such as the leaderboard's ranking,
+	 * are built in memory and are not checked.
+	 */
+	private static void assertNoFullScan(Connection dbConn, String query, Object... params) throws SQLException {
+		try (PreparedStatement stmt = prepareExplain(dbConn, query, params);
+				ResultSet rs = stmt.executeQuery()) {
+			while (rs.next()) {
+				String table = rs.getString("table");
+				if (table != null && !table.startsWith("<")) {
+					assertFalse("ALL".equals(rs.getString("type")), "Full scan of " + table + " in " + query);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Prepares EXPLAIN of a query with its parameters
+	 */
+	private static PreparedStatement prepareExplain(Connection dbConn, String query, Object... params)
+			throws SQLException {
+		PreparedStatement stmt = dbConn.prepareStatement("EXPLAIN " + query.replace(";", ""));
+		for (int i = 0; i < params.length; i++) {
+			stmt.setObject(i + 1, params[i]);
+		}
+		return stmt;
+	}
+}
@@ -0,0 +1,190 @@
+package com.pluto.database;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+/**
+ * Verifies that queued scores are stored in batches, spilled while the
+ * database fails and replayed once it recovers
+ */
+class ScoreIngestionQueueTest {
+
+	@TempDir
+	Path dir;
+
+	/**
+	 * Verifies that scores are spilled while writing fails, and replayed in
+	 * order before newer scores once it succeeds
+	 */
+	@Test
+	void testSpillsWhileFailingAndReplaysInOrder() throws IOException {
+		boolean[] failing = { true };
+		List<Integer> batches = new ArrayList<Integer>();
+		List<Integer> stored = new ArrayList<Integer>();
+		Path spill = dir.resolve("spill.log");
+		ScoreIngestionQueue.Writer writer = (scores, written) -> {
+			if (failing[0]) {
+				return "Database unavailable";
+			}
+			batches.add(scores.size());
+			written.addAll(scores);
+			return "";
+		};
+		ScoreIngestionQueue queue = new ScoreIngestionQueue(writer, upload -> stored.add(upload.getScore()),
+				10, 2, 0, spill, 0);
+
+		for (int score = 1; score <= 3; score++) {
+			assertEquals("", queue.submit(new ScoreUpload("alice", "main", "EASY", score, 1, 10)));
+		}
+		queue.flushPending();
+		assertEquals(3, Files.readAllLines(spill).size());
+		assertTrue(stored.isEmpty());
+
+		failing[0] = false;
+		assertEquals("", queue.submit(new ScoreUpload("alice", "main", "EASY", 4, 1, 10)));
+		queue.flushPending();
+		assertEquals(List.of(1, 2, 3, 4), stored);
+		assertEquals(List.of(2, 1, 1), batches);
+		assertFalse(Files.exists(spill));
+
+		// A restarted queue finds nothing left to replay
+		ScoreIngestionQueue restarted = new ScoreIngestionQueue(writer, upload -> stored.add(upload.getScore()),
+				10, 2, 0, spill, 0);
+		restarted.flushPending();
+		assertEquals(4, stored.size());
+	}
+
+	/**
+	 * Verifies that uploads are rejected once the queue is full, and that
+	 * scores the writer skipped are not reported as stored
+	 */
+	@Test
+	void testRejectsWhenFullAndCountsSkipped() {
+		List<Integer> stored = new ArrayList<Integer>();
+		ScoreIngestionQueue queue = new ScoreIngestionQueue((scores, written) -> {
+			written.add(scores.get(0));
+			return "";
+		}, upload -> stored.add(upload.getScore()), 2, 10, 0, dir.resolve("spill.log"), 0);
+
+		assertEquals("", queue.submit(new ScoreUpload("alice", "main", "EASY", 1, 1, 10)));
+		assertEquals("", queue.submit(new ScoreUpload("bob", "main", "EASY", 2, 1, 10)));
+		assertEquals("Server is busy, please try again",
+				queue.submit(new ScoreUpload("carol", "main", "EASY", 3, 1, 10)));
+
+		queue.flushPending();
+		assertEquals(List.of(1), stored);
+		String json = queue.toJson();
+		assertTrue(json.contains("\"queue_depth\":0"));
+		assertTrue(json.contains("\"rejected\":1"));
+		assertTrue(json.contains("\"stored\":1"));
+		assertTrue(json.contains("\"skipped\":1"));
+	}
+
+	/**
+	 * Verifies that a score the database rejects is dead-lettered on its own,
+	 * while the rest of its batch and later batches are stored, not spilled
+	 */
+	@Test
+	void testDeadLettersRejectedScores() throws IOException {
+		List<Integer> stored = new ArrayList<Integer>();
+		Path spill = dir.resolve("spill.log");
+		ScoreIngestionQueue queue = new ScoreIngestionQueue((scores, written) -> {
+			for (ScoreUpload upload : scores) {
+				if (upload.getScore() == 3) {
+					return "Error uploading scores";
+				}
+			}
+			written.addAll(scores);
+			return "";
+		}, upload -> stored.add(upload.getScore()), 10, 5, 0, spill, 0);
+
+		for (int score = 1; score <= 5; score++) {
+			assertEquals("", queue.submit(new ScoreUpload("alice", "main", "EASY", score, 1, 10)));
+		}
+		queue.flushPending();
+		assertEquals(List.of(1, 2, 4, 5), stored);
+		assertEquals(List.of(new ScoreUpload("alice", "main", "EASY", 3, 1, 10).toLine()),
+				Files.readAllLines(dir.resolve("spill.log.dead")));
+		assertFalse(Files.exists(spill));
+
+		assertEquals("", queue.submit(new ScoreUpload("alice", "main", "EASY", 6, 1, 10)));
+		queue.flushPending();
+		assertEquals(List.of(1, 2, 4, 5, 6), stored);
+		assertFalse(Files.exists(spill));
+		String json = queue.toJson();
+		assertTrue(json.contains("\"stored\":5"));
+		assertTrue(json.contains("\"spilled\":0"));
+		assertTrue(json.contains("\"dead_lettered\":1"));
+	}
+
+	/**
+	 * Verifies that a score whose profile lookup fails is spilled and stored
+	 * later, rather than skipped as if the profile did not exist
+	 */
+	@Test
+	void testFailedLookupIsRetried() throws IOException, SQLException {
+		JdbcDataSource h2 = new JdbcDataSource();
+		h2.setURL("jdbc:h2:mem:" + System.nanoTime() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+		String schema = new String(Files.readAllBytes(Paths.get("../init.sql")));
+		try (Connection dbConn = h2.getConnection(); Statement stmt = dbConn.createStatement()) {
+			for (String statement : schema.split(";\\s*\\n")) {
+				if (!statement.isBlank()) {
+					stmt.execute(statement);
+				}
+			}
+		}
+		assertEquals("", new SchemaMigrator(h2, "classpath:db/migration", true).migrate());
+		DatabaseClient setup = new DatabaseClient(h2);
+		assertEquals("", setup.insertUser("alice", "x"));
+		assertEquals("", setup.createProfile("alice", "main"));
+
+		// The first connection loses the database during the user lookup
+		Connection failing = spy(h2.getConnection());
+		doThrow(new SQLTransientConnectionException("Connection reset"))
+				.when(failing).prepareStatement(startsWith("SELECT User_id"));
+		DataSource flaky = mock(DataSource.class);
+		when(flaky.getConnection()).thenReturn(failing).thenAnswer(invocation -> h2.getConnection());
+
+		List<Integer> stored = new ArrayList<Integer>();
+		Path spill = dir.resolve("spill.log");
+		ScoreIngestionQueue queue = new ScoreIngestionQueue(new DatabaseClient(flaky)::uploadScores,
+				upload -> stored.add(upload.getScore()), 10, 10, 0, spill, 0);
+		assertEquals("", queue.submit(new ScoreUpload("alice", "main", "EASY", 42, 1, 10)));
+		queue.flushPending();
+		assertEquals(1, Files.readAllLines(spill).size());
+		assertTrue(stored.isEmpty());
+
+		queue.flushPending();
+		assertEquals(List.of(42), stored);
+		try (Connection dbConn = h2.getConnection(); Statement stmt = dbConn.createStatement();
+				ResultSet rs = stmt.executeQuery("SELECT score FROM Scores")) {
+			assertTrue(rs.next());
+			assertEquals(42, rs.getInt("score"));
+			assertFalse(rs.next());
+		}
+	}
+}
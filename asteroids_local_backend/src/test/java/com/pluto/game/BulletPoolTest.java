@@ -0,0 +1,82 @@
+package com.pluto.game;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Verifies that bullets expire in firing order and that their objects and
+ * store slots are reused
+ */
+class BulletPoolTest {
+
+	/**
+	 * Verifies that only bullets older than the lifetime expire, and that a
+	 * bullet fired after one expired reuses its object with a new id
+	 */
+	@Test
+	void testExpiresOldestAndReusesBullets() {
+		EntityStore store = new EntityStore();
+		BulletPool pool = new BulletPool(store, null, 1.0f, 2);
+		Bullet first = pool.fire(100, 100, 0, 1);
+		int firstId = first.getId();
+		pool.move(0.6f);
+		Bullet second = pool.fire(200, 200, 0, 1);
+		pool.move(0.6f);
+		pool.expire();
+		assertEquals(1, pool.size());
+		assertEquals(-1, first.slot);
+		assertSame(second, pool.get(pool.span() - 1));
+		assertEquals(1, store.size());
+
+		Bullet third = pool.fire(300, 300, (float) Math.PI, 2);
+		assertSame(first, third);
+		assertNotEquals(firstId, third.getId());
+		assertEquals(300, third.getX());
+		assertEquals(300, third.hitboxX(0));
+		assertEquals(0, third.getTimeAlive());
+		assertEquals(2, third.dealsDamage());
+		assertEquals(EnemyType.BULLET, third.type());
+
+		pool.fire(400, 400, 0, 1);
+		assertEquals(3, pool.size());
+		assertEquals(3, store.size());
+		assertSame(second, pool.get(0));
+		assertSame(third, pool.get(1));
+	}
+
+	/**
+	 * Verifies that a bullet released early is skipped, and that the ring
+	 * grows without losing the firing order
+	 */
+	@Test
+	void testReleasedBulletsAreSkipped() {
+		EntityStore store = new EntityStore();
+		SpatialGrid grid = new SpatialGrid(1000, 1000, 100, store.capacity());
+		BulletPool pool = new BulletPool(store, grid, 1.0f, 2);
+		Bullet[] bullets = new Bullet[5];
+		for (int i = 0; i < bullets.length; i++) {
+			bullets[i] = pool.fire(100 * i + 50, 500, 0, 1);
+		}
+		pool.release(bullets[1]);
+		pool.release(bullets[1]);
+		assertEquals(4, pool.size());
+		assertEquals(5, pool.span());
+		assertNull(pool.get(1));
+		assertEquals(0, grid.query(150, 500, 5));
+		for (int i = 0; i < pool.span(); i++) {
+			if (i != 1) {
+				assertSame(bullets[i], pool.get(i));
+			}
+		}
+
+		pool.move(2.0f);
+		pool.expire();
+		assertEquals(0, pool.size());
+		assertEquals(0, pool.span());
+		assertEquals(0, store.size());
+	}
+}
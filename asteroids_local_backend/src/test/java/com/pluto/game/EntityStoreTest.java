@@ -0,0 +1,56 @@
+package com.pluto.game;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Verifies that entities read and write their state through the EntityStore
+ */
+class EntityStoreTest {
+
+	/**
+	 * Verifies that freed slots are reused and the store grows past its
+	 * initial capacity
+	 */
+	@Test
+	void testSlotsAreRecycledAndStoreGrows() {
+		EntityStore store = new EntityStore(2);
+		Bullet first = new Bullet(store, 10, 10, 0, 1);
+		Bullet second = new Bullet(store, 20, 20, 0, 1);
+		Bullet third = new Bullet(store, 30, 30, 0, 1);
+		assertEquals(3, store.size());
+		assertEquals(4, store.capacity());
+
+		int freed = second.slot;
+		second.despawn();
+		assertNull(store.owner(freed));
+		Bullet fourth = new Bullet(store, 40, 40, 0, 1);
+		assertEquals(freed, fourth.slot);
+		assertSame(fourth, store.owner(freed));
+		assertEquals(40, fourth.getX());
+		assertEquals(3, store.size());
+		assertEquals(10, first.getX());
+		assertEquals(30, third.getX());
+	}
+
+	/**
+	 * Verifies that moving an entity updates its slot, wraps around the
+	 * screen and carries its hitbox along
+	 */
+	@Test
+	void testMoveWrapsPositionAndHitbox() {
+		EntityStore store = new EntityStore();
+		Asteroid asteroid = new Asteroid(store, 990, 500, 20, 0, 0,
+				Asteroid.AsteroidSize.SMALL, 0);
+		asteroid.moveObj(1);
+		assertEquals(10, asteroid.getX(), 1e-3);
+		assertEquals(store.x[asteroid.slot], asteroid.getX());
+		assertEquals(10, asteroid.hitboxX(0), 1e-3);
+		assertEquals(25, store.radius[asteroid.slot]);
+		assertEquals(EnemyType.ASTEROID, asteroid.type());
+		assertEquals(1, asteroid.getHealth());
+	}
+}
@@ -0,0 +1,96 @@
+package com.pluto.game;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Verifies that games are reproducible from their seed, and that enemies
+ * spawned and destroyed during an update are applied once at its end
+ */
+class GameManagerTest {
+
+	/**
+	 * Verifies that two games with the same seed and inputs stay identical,
+	 * and that another seed gives another game
+	 */
+	@Test
+	void testSameSeedPlaysTheSame() {
+		GameManager first = new GameManager(Difficulty.HARD, 42);
+		GameManager second = new GameManager(Difficulty.HARD, 42);
+		GameManager other = new GameManager(Difficulty.HARD, 43);
+		assertEquals(42, first.getSeed());
+		assertNotEquals(first.toJson(), other.toJson());
+
+		int inputs = Spaceship.Input.UP.bit() | Spaceship.Input.LEFT.bit() | Spaceship.Input.SHOOT.bit();
+		for (int frame = 0; frame < 600; frame++) {
+			first.update(1 / 60f, inputs);
+			second.update(1 / 60f, inputs);
+		}
+		assertEquals(first.toJson(), second.toJson());
+	}
+
+	/**
+	 * Verifies that an asteroid destroyed mid-update leaves the game and its
+	 * two children join it exactly once, with the spatial grid and with brute
+	 * force collisions. The asteroid sits on the player, so it is hit by both
+	 * the new bullet and the ship in the same update.
+	 */
+	@Test
+	void testSplitAsteroidChildrenAppearOnce() {
+		for (boolean useSpatialHash : new boolean[] { true, false }) {
+			GameManager game = new GameManager(Difficulty.EASY, 42);
+			game.setUseSpatialHash(useSpatialHash);
+			List<Asteroid> asteroids = game.getAsteroids();
+			Asteroid target = null;
+			for (Asteroid asteroid : asteroids) {
+				if (asteroid.size == Asteroid.AsteroidSize.LARGE) {
+					target = asteroid;
+					break;
+				}
+			}
+			assertNotNull(target);
+			target.setPosition(500, 500);
+			target.setHealth(1);
+			List<Asteroid> before = new ArrayList<Asteroid>(asteroids);
+
+			game.update(1 / 60f, Spaceship.Input.SHOOT.bit());
+
+			assertFalse(asteroids.contains(target));
+			assertEquals(before.size() + 1, asteroids.size());
+			List<Asteroid> children = new ArrayList<Asteroid>(asteroids);
+			children.removeAll(before);
+			assertEquals(2, children.size());
+			for (Asteroid child : children) {
+				assertEquals(Asteroid.AsteroidSize.MEDIUM, child.size);
+				assertEquals(1, countSame(asteroids, child));
+			}
+
+			// The next update neither adds them again nor loses them
+			game.update(1 / 60f, 0);
+			for (Asteroid child : children) {
+				assertEquals(1, countSame(asteroids, child));
+			}
+			assertEquals(before.size() + 1, asteroids.size());
+		}
+	}
+
+	/**
+	 * Returns how many times the given object is in the list
+	 */
+	private static int countSame(List<Asteroid> asteroids, Asteroid asteroid) {
+		int count = 0;
+		for (Asteroid other : asteroids) {
+			if (other == asteroid) {
+				count++;
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,120 @@
+package com.pluto.game;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies that a recorded game replays to the same state
+ */
+class ReplayLogTest {
+
+	@TempDir
+	Path dir;
+
+	/**
+	 * Verifies that replaying a log rebuilds the recorded game exactly, even
+	 * when the last update was only partly written
+	 */
+	@Test
+	void testReplayMatchesRecordedGame() throws IOException {
+		Path file = dir.resolve("game.replay");
+		GameManager game = new GameManager(Difficulty.HARD, 7);
+		game.startRecording(file);
+		Spaceship.Input[] inputs = Spaceship.Input.values();
+		for (int frame = 0; frame < 600; frame++) {
+			int mask = inputs[frame / 30 % inputs.length].bit() | Spaceship.Input.SHOOT.bit();
+			game.update(frame % 7 == 0 ? 1 / 30f : 1 / 60f, mask);
+		}
+		game.stopRecording();
+		assertThrows(IllegalStateException.class, () -> game.startRecording(dir.resolve("late.replay")));
+
+		// A crash while writing leaves part of an update behind
+		Files.write(file, new byte[] { 1, 2 }, StandardOpenOption.APPEND);
+
+		ReplayLog log = ReplayLog.read(file);
+		assertEquals(Difficulty.HARD, log.getDifficulty());
+		assertEquals(7, log.getSeed());
+		assertTrue(log.usesSpatialHash());
+		assertEquals(600, log.getFrameCount());
+		GameManager replayed = log.newGame();
+		log.replay(replayed);
+		assertEquals(game.toJson(), replayed.toJson());
+		assertEquals(game.getScore(), replayed.getScore());
+	}
+
+	/**
+	 * Verifies that a game found by brute force collisions is replayed by
+	 * brute force, and that its mode cannot change while it is recorded
+	 */
+	@Test
+	void testReplayKeepsCollisionMode() throws IOException {
+		Path file = dir.resolve("brute.replay");
+		GameManager game = new GameManager(Difficulty.MEDIUM, 5);
+		game.setUseSpatialHash(false);
+		game.startRecording(file);
+		assertThrows(IllegalStateException.class, () -> game.setUseSpatialHash(true));
+		for (int frame = 0; frame < 300; frame++) {
+			game.update(1 / 60f, frame % 20 == 0 ? Spaceship.Input.SHOOT.bit() : Spaceship.Input.LEFT.bit());
+		}
+		game.stopRecording();
+
+		ReplayLog log = ReplayLog.read(file);
+		assertFalse(log.usesSpatialHash());
+		GameManager replayed = log.newGame();
+		log.replay(replayed);
+		assertEquals(game.toJson(), replayed.toJson());
+	}
+
+	/**
+	 * Verifies that a log that was never closed, as after a crash, holds its
+	 * header as soon as it is created and every flushed update
+	 */
+	@Test
+	void testUnclosedLogIsFlushed() throws IOException {
+		Path file = dir.resolve("crashed.replay");
+		GameManager game = new GameManager(Difficulty.EASY, 11);
+		game.startRecording(file);
+		assertEquals(0, ReplayLog.read(file).getFrameCount());
+
+		for (int frame = 0; frame < ReplayLog.FLUSH_INTERVAL * 2 + 5; frame++) {
+			game.update(1 / 60f, 0);
+		}
+		ReplayLog log = ReplayLog.read(file);
+		assertEquals(11, log.getSeed());
+		assertEquals(ReplayLog.FLUSH_INTERVAL * 2, log.getFrameCount());
+		game.stopRecording();
+	}
+
+	/**
+	 * Verifies that other files are rejected
+	 */
+	@Test
+	void testRejectsOtherFiles() throws IOException {
+		Path file = dir.resolve("other.bin");
+		Files.write(file, new byte[] { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13 });
+		assertThrows(IOException.class, () -> ReplayLog.read(file));
+	}
+
+	/**
+	 * Verifies that a log recorded by an older simulation is rejected
+	 */
+	@Test
+	void testRejectsOlderVersions() throws IOException {
+		Path file = dir.resolve("old.replay");
+		ByteBuffer header = ByteBuffer.allocate(15);
+		header.putInt(ReplayLog.MAGIC).put((byte) (ReplayLog.VERSION - 1)).put((byte) 0).put((byte) 0).putLong(3);
+		Files.write(file, header.array());
+		assertThrows(IOException.class, () -> ReplayLog.read(file));
+	}
+}
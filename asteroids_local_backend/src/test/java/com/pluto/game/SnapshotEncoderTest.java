@@ -0,0 +1,119 @@
+package com.pluto.game;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies that binary snapshots rebuild the same world as full snapshots
+ */
+class SnapshotEncoderTest {
+
+	/**
+	 * Verifies that a client applying delta snapshots ends up with the same
+	 * entities as a full snapshot of the game
+	 */
+	@Test
+	void testDeltasMatchFullSnapshot() {
+		GameManager game = new GameManager(Difficulty.HARD);
+		SnapshotEncoder encoder = new SnapshotEncoder();
+		Map<Integer, Long> client = new HashMap<Integer, Long>();
+
+		ByteBuffer first = ByteBuffer.wrap(game.toSnapshot(encoder, 0));
+		assertEquals(0, apply(first, client));
+		assertEquals(1 + game.getEnemyCount(), client.size());
+
+		int inputs = Spaceship.Input.UP.bit() | Spaceship.Input.LEFT.bit() | Spaceship.Input.SHOOT.bit();
+		for (int frame = 0; frame < 300; frame++) {
+			game.update(1 / 60f, inputs);
+			ByteBuffer delta = ByteBuffer.wrap(game.toSnapshot(encoder, encoder.getSequence()));
+			assertEquals(encoder.getSequence() - 1, apply(delta, client));
+		}
+
+		Map<Integer, Long> full = new HashMap<Integer, Long>();
+		assertEquals(0, apply(ByteBuffer.wrap(game.toSnapshot(new SnapshotEncoder(), 0)), full));
+		assertEquals(full, client);
+	}
+
+	/**
+	 * Verifies that nothing is resent when nothing changed, and that an
+	 * unknown acknowledgement falls back to a full snapshot
+	 */
+	@Test
+	void testUnchangedWorldSendsNoEntities() {
+		GameManager game = new GameManager(Difficulty.EASY);
+		SnapshotEncoder encoder = new SnapshotEncoder();
+		byte[] full = game.toSnapshot(encoder, 0);
+		byte[] delta = game.toSnapshot(encoder, 1);
+		ByteBuffer buffer = ByteBuffer.wrap(delta);
+		Map<Integer, Long> client = new HashMap<Integer, Long>();
+		assertEquals(1, apply(buffer, client));
+		assertTrue(client.isEmpty());
+		assertTrue(delta.length < full.length);
+
+		ByteBuffer fallback = ByteBuffer.wrap(game.toSnapshot(encoder, 99));
+		assertEquals(0, apply(fallback, client));
+		assertEquals(1 + game.getEnemyCount(), client.size());
+	}
+
+	/**
+	 * Verifies that the oldest snapshot still usable as a baseline is
+	 * HISTORY - 2 behind, and that one HISTORY - 1 behind, whose slot the
+	 * new snapshot takes, falls back to a full snapshot
+	 */
+	@Test
+	void testBaselineIsNeverOverwritten() {
+		GameManager game = new GameManager(Difficulty.EASY);
+		SnapshotEncoder encoder = new SnapshotEncoder();
+		for (int i = 0; i < SnapshotEncoder.HISTORY; i++) {
+			game.toSnapshot(encoder, 0);
+		}
+		Map<Integer, Long> client = new HashMap<Integer, Long>();
+		ByteBuffer stale = ByteBuffer.wrap(game.toSnapshot(encoder, encoder.getSequence() - (SnapshotEncoder.HISTORY - 1)));
+		assertEquals(0, apply(stale, client));
+		assertEquals(1 + game.getEnemyCount(), client.size());
+
+		int oldest = encoder.getSequence() - (SnapshotEncoder.HISTORY - 2);
+		ByteBuffer delta = ByteBuffer.wrap(game.toSnapshot(encoder, oldest));
+		assertEquals(oldest, apply(delta, client));
+	}
+
+	/**
+	 * Applies a snapshot to the entities known by a client, keyed by id
+	 *
+	 * @return the baseline sequence number of the snapshot
+	 */
+	private static int apply(ByteBuffer snapshot, Map<Integer, Long> entities) {
+		assertEquals(SnapshotEncoder.VERSION, snapshot.get());
+		snapshot.getInt(); // sequence
+		int baseline = snapshot.getInt();
+		if (baseline == 0) {
+			entities.clear();
+		}
+		snapshot.getInt(); // score
+		snapshot.getInt(); // level
+		snapshot.getFloat(); // time
+		snapshot.get(); // flags
+		snapshot.get(); // lives
+		int removed = snapshot.getInt();
+		for (int i = 0; i < removed; i++) {
+			entities.remove(snapshot.getInt());
+		}
+		int changed = snapshot.getInt();
+		for (int i = 0; i < changed; i++) {
+			int id = snapshot.getInt();
+			long state = ((long) (snapshot.get() & 0xFF) << 48)
+					| ((long) (snapshot.getShort() & 0xFFFF) << 32)
+					| ((long) (snapshot.getShort() & 0xFFFF) << 16)
+					| (snapshot.getShort() & 0xFFFF);
+			entities.put(id, state);
+		}
+		assertEquals(0, snapshot.remaining());
+		return baseline;
+	}
+}
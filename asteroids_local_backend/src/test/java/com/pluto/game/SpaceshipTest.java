@@ -0,0 +1,65 @@
+package com.pluto.game;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies the parsing and handling of player input bitmasks
+ */
+class SpaceshipTest {
+
+	/**
+	 * Verifies that input names are parsed into a bitmask, ignoring unknown
+	 * and empty names
+	 */
+	@Test
+	void testParseMask() {
+		assertEquals(0, Spaceship.Input.parseMask(""));
+		assertEquals(Spaceship.Input.UP.bit() | Spaceship.Input.SHOOT.bit(),
+				Spaceship.Input.parseMask("UP,SHOOT"));
+		assertEquals(Spaceship.Input.RIGHT.bit(), Spaceship.Input.parseMask(",RIGHT,,JUMP,up,RIGHTS"));
+		int all = Spaceship.Input.parseMask("SHOOT,RIGHT,LEFT,UP,UP");
+		for (Spaceship.Input input : Spaceship.Input.values()) {
+			assertTrue(input.isIn(all));
+		}
+		assertFalse(Spaceship.Input.LEFT.isIn(Spaceship.Input.parseMask("RIGHT")));
+	}
+
+	/**
+	 * Verifies that thrust moves the player forward and turning rotates it
+	 */
+	@Test
+	void testMoveObj() {
+		Spaceship player = new Spaceship(new EntityStore());
+		player.moveObj(0.1f, Spaceship.Input.UP.bit());
+		assertTrue(player.getX() > 500);
+		assertEquals(0, player.getOrientation());
+		player.moveObj(0.1f, Spaceship.Input.RIGHT.bit());
+		assertTrue(player.getOrientation() > 0);
+	}
+
+	/**
+	 * Verifies that the shared hitbox follows the player's orientation and
+	 * position, so a bullet at the nose only hits once the nose points at it
+	 */
+	@Test
+	void testHitboxFollowsRotation() {
+		EntityStore store = new EntityStore();
+		Spaceship player = new Spaceship(store);
+		Bullet bullet = new Bullet(store, 500, 527.5f, 0, 1);
+		assertFalse(player.collidesWith(bullet));
+
+		player.rotate((float) (Math.PI / 2));
+		player.updateTrig();
+		assertEquals(500, player.hitboxX(5), 1e-3);
+		assertEquals(520, player.hitboxY(5), 1e-3);
+		assertTrue(player.collidesWith(bullet));
+
+		player.setPosition(100, 100);
+		assertFalse(player.collidesWith(bullet));
+		assertEquals(Math.sqrt(23 * 23 * 2) + 3, store.radius[player.slot], 1e-3);
+	}
+}
@@ -0,0 +1,73 @@
+package com.pluto.game;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies that the collision grid never misses a pair that the brute force
+ * search would find
+ */
+class SpatialGridTest {
+
+	/**
+	 * Verifies that every colliding bullet and asteroid pair is returned as a
+	 * candidate
+	 */
+	@Test
+	void testQueryReturnsEveryCollidingPair() {
+		Random random = new Random(42);
+		EntityStore store = new EntityStore();
+		SpatialGrid grid = new SpatialGrid(1000, 1000, 100, store.capacity());
+		Asteroid[] asteroids = new Asteroid[200];
+		for (int i = 0; i < asteroids.length; i++) {
+			Asteroid.AsteroidSize size = Asteroid.AsteroidSize.values()[i % 4];
+			asteroids[i] = new Asteroid(store, random.nextFloat() * 1000, random.nextFloat() * 1000,
+					0, 0, 0, size, 0);
+			grid.update(asteroids[i].slot, asteroids[i].getX(), asteroids[i].getY(),
+					store.radius[asteroids[i].slot]);
+		}
+
+		for (int i = 0; i < 500; i++) {
+			Bullet bullet = new Bullet(store, random.nextFloat() * 1000, random.nextFloat() * 1000, 0, 1);
+			int count = grid.query(bullet.getX(), bullet.getY(), store.radius[bullet.slot]);
+			Set<Integer> candidates = new HashSet<Integer>();
+			for (int j = 0; j < count; j++) {
+				candidates.add(grid.candidates()[j]);
+			}
+			assertEquals(count, candidates.size());
+			for (Asteroid asteroid : asteroids) {
+				if (bullet.collidesWith(asteroid)) {
+					assertTrue(candidates.contains(asteroid.slot));
+				}
+			}
+			bullet.despawn();
+		}
+	}
+
+	/**
+	 * Verifies that removed and moved entities are refiled correctly
+	 */
+	@Test
+	void testUpdateAndRemove() {
+		EntityStore store = new EntityStore();
+		SpatialGrid grid = new SpatialGrid(1000, 1000, 100, store.capacity());
+		Alien alien = new Alien(store, 50, 50, new SplittableRandom(1));
+		grid.update(alien.slot, 50, 50, store.radius[alien.slot]);
+		assertEquals(1, grid.query(60, 60, 5));
+		assertEquals(0, grid.query(550, 550, 5));
+
+		grid.update(alien.slot, 550, 550, store.radius[alien.slot]);
+		assertEquals(0, grid.query(60, 60, 5));
+		assertEquals(1, grid.query(550, 550, 5));
+
+		grid.remove(alien.slot);
+		assertEquals(0, grid.query(550, 550, 5));
+	}
+}
@@ -63,10 +63,49 @@ const Game = () => {
   const lock = useRef(false); // Acts as a lock to avoid race conditions
   const timeLastShot = useRef(null); // Used to limit holding down shoot inputs
 
+  // The game socket, null once it failed or closed and the game is polled
+  // over REST instead
+  const socketRef = useRef(null);
+  const frameRef = useRef(null); // Latest game state pushed over the socket
+
+  /**
+   * Sends a message over the game socket if it is open. Returns whether it
+   * was sent.
+   */
+  const sendToSocket = useCallback((message) => {
+    const socket = socketRef.current;
+    if (socket && socket.readyState === WebSocket.OPEN) {
+      socket.send(message);
+      return true;
+    }
+    return false;
+  }, []);
+
+  /**
+   * Holds down a movement input. Over the socket only the change is sent, so
+   * key repeats of an input that is already held are not sent again.
+   */
+  const pressInput = useCallback((input) => {
+    if (!inputRef.current.has(input)) {
+      inputRef.current.add(input);
+      sendToSocket("+" + input);
+    }
+  }, [sendToSocket]);
+
+  /**
+   * Releases a movement input.
+   */
+  const releaseInput = useCallback((input) => {
+    if (inputRef.current.delete(input)) {
+      sendToSocket("-" + input);
+    }
+  }, [sendToSocket]);
+
   /**
    * Method for handling user input on a keydown event. All keys except shoot
    * are per frame. Shoot key is handled per keydown and keyup event. A locking
-   * mechanism is used to handle race conditions.
+   * mechanism is used to handle race conditions. Over the socket each shot is
+   * sent as it happens instead.
    */
   const handleKeyDown = useCallback((event) => {
     let currTime = Date.now();
@@ -76,7 +115,9 @@ const Game = () => {
     // check timer to see if we can shoot again.
     if ((event.key === "s" || event.code === "Space") && (!isHoldingShoot.current || dt > 200)) {
       timeLastShot.current = currTime;
-      if (!lock.current) {
+      if (sendToSocket("+SHOOT")) {
+        // The server queues the shot for its next tick
+      } else if (!lock.current) {
         // Handle shoot for current frame
         currFrameBuffer.current = true;
       } else {
@@ -87,22 +128,22 @@ const Game = () => {
     }
 
     // Process movement input
-    if (event.key === "w") inputRef.current.add("UP");
-    if (event.key === "a") inputRef.current.add("LEFT");
-    if (event.key === "d") inputRef.current.add("RIGHT");
-  }, []);
+    if (event.key === "w") pressInput("UP");
+    if (event.key === "a") pressInput("LEFT");
+    if (event.key === "d") pressInput("RIGHT");
+  }, [sendToSocket, pressInput]);
 
   /**
    * Method for handling user input on a keyup event.
    */
   const handleKeyUp = useCallback((event) => {
-    if (event.key === "w") inputRef.current.delete("UP");
-    if (event.key === "a") inputRef.current.delete("LEFT");
-    if (event.key === "d") inputRef.current.delete("RIGHT");
+    if (event.key === "w") releaseInput("UP");
+    if (event.key === "a") releaseInput("LEFT");
+    if (event.key === "d") releaseInput("RIGHT");
     if (event.key === "s" || event.code === "Space") {
       isHoldingShoot.current = false;
     }
-  }, []);
+  }, [releaseInput]);
 
   useEffect(() => {
     const canvas = canvasRef.current;
@@ -127,6 +168,32 @@ const Game = () => {
 
     window.addEventListener("beforeunload", handleBeforeUnload);
 
+    // Play over the game socket: the server steps the game and pushes every
+    // frame, and only input changes are sent. If the socket cannot be opened
+    // or closes, the game is polled over /api/updateGame instead.
+    const socket = new WebSocket(
+      `ws://137.184.232.147:5000/api/gameSocket?` +
+      `username=${encodeURIComponent(username)}&` +
+      `profile_name=${encodeURIComponent(profile_name)}`
+    );
+    socketRef.current = socket;
+    socket.onopen = () => {
+      // Report the inputs held down while the socket was connecting
+      inputRef.current.forEach((input) => {
+        if (input !== "SHOOT") socket.send("+" + input);
+      });
+      if (paused) socket.send("pause");
+    };
+    socket.onmessage = (event) => {
+      frameRef.current = JSON.parse(event.data);
+    };
+    socket.onclose = () => {
+      if (socketRef.current === socket) {
+        socketRef.current = null;
+        frameRef.current = null;
+      }
+    };
+
     const animate = async (timestamp) => {
       // If holding shoot key down, trigger a KeyboardEvent
       // Fixes the problem that if another key is pressed while holding shoot
@@ -173,14 +240,23 @@ const Game = () => {
         return;
       }
 
-      const response = await fetch(
-        `http://137.184.232.147:5000/api/updateGame?dt=${encodeURIComponent(dt)}&` +
-        `username=${encodeURIComponent(username)}&` +
-        `profile_name=${encodeURIComponent(profile_name)}&` +
-        `inputs=${encodeURIComponent(Array.from(inputRef.current).join(","))}`,
-      );
-
-      const data = await response.json();
+      let data;
+      if (socketRef.current) {
+        // Draw the latest frame pushed by the server, if one arrived yet
+        data = frameRef.current;
+        if (!data) {
+          requestRef.current = requestAnimationFrame(animate);
+          return;
+        }
+      } else {
+        const response = await fetch(
+          `http://137.184.232.147:5000/api/updateGame?dt=${encodeURIComponent(dt)}&` +
+          `username=${encodeURIComponent(username)}&` +
+          `profile_name=${encodeURIComponent(profile_name)}&` +
+          `inputs=${encodeURIComponent(Array.from(inputRef.current).join(","))}`,
+        );
+        data = await response.json();
+      }
       if (timestamp % 1000 < 16) console.log(data);
 
       // console.log(timestamp);
@@ -454,11 +530,16 @@ const Game = () => {
       suppressUploadRef.current = true; // prevent upload for a few frames
       sessionStorage.removeItem("scoreUploaded");
     
-      await fetch(
-        `http://137.184.232.147:5000/api/newGame?` +
-        `username=${encodeURIComponent(username)}&` +
-        `profile_name=${encodeURIComponent(profile_name)}`
-      );
+      if (sendToSocket("new")) {
+        // Wait for the first frame of the new game
+        frameRef.current = null;
+      } else {
+        await fetch(
+          `http://137.184.232.147:5000/api/newGame?` +
+          `username=${encodeURIComponent(username)}&` +
+          `profile_name=${encodeURIComponent(profile_name)}`
+        );
+      }
     
       // Allow upload again after a delay (e.g., 500ms or 2 animation frames)
       setTimeout(() => {
@@ -469,6 +550,7 @@ const Game = () => {
     pauseButtonRef.current.addEventListener("click", (event) => {
       event.target.blur(); // Remove focus to prevent spacebar from triggering button
       paused = !paused;
+      sendToSocket(paused ? "pause" : "resume");
       pauseButtonRef.current.innerText = paused ? "Resume" : "Pause";
     });
 
@@ -476,6 +558,8 @@ const Game = () => {
 
     return () => {
       cancelAnimationFrame(requestRef.current);
+      socketRef.current = null;
+      socket.close();
       // Clear inputs after rendering
       document.removeEventListener("keydown", handleKeyDown);
       document.removeEventListener("keyup", handleKeyUp);
@@ -29,6 +29,17 @@ CREATE TABLE IF NOT EXISTS `Scores` (
 );
 ALTER TABLE `Scores` AUTO_INCREMENT = 20001;
 
+CREATE TABLE IF NOT EXISTS `ProfileStats` (
+    `profile_id` INT NOT NULL,
+    `difficulty` ENUM('EASY', 'MEDIUM', 'HARD', 'ALL') NOT NULL,
+    `highest_score` INT NOT NULL,
+    `highest_level` INT NOT NULL,
+    `longest_duration` INT NOT NULL,
+    `total_games` INT NOT NULL,
+    PRIMARY KEY (`profile_id`, `difficulty`),
+    FOREIGN KEY (`profile_id`) REFERENCES `Profiles`(`profile_id`) ON DELETE CASCADE
+);
+
 CREATE TABLE IF NOT EXISTS `Settings` (
     `setting_id` INT NOT NULL AUTO_INCREMENT,
     `profile_id` INT NOT NULL,